@@ -46,6 +46,34 @@ public interface Config {
 
 	void setXkmsIdentTrustDomain(String xkmsIdentTrustDomain);
 
+	Integer getXkmsAuthCacheTtl();
+
+	void setXkmsAuthCacheTtl(Integer xkmsAuthCacheTtl);
+
+	Integer getXkmsIdentCacheTtl();
+
+	void setXkmsIdentCacheTtl(Integer xkmsIdentCacheTtl);
+
+	Integer getXkmsCacheSize();
+
+	void setXkmsCacheSize(Integer xkmsCacheSize);
+
+	Integer getXkmsTimeout();
+
+	void setXkmsTimeout(Integer xkmsTimeout);
+
+	Integer getXkmsMaxConcurrent();
+
+	void setXkmsMaxConcurrent(Integer xkmsMaxConcurrent);
+
+	Integer getXkmsFailureThreshold();
+
+	void setXkmsFailureThreshold(Integer xkmsFailureThreshold);
+
+	Integer getXkmsOpenTime();
+
+	void setXkmsOpenTime(Integer xkmsOpenTime);
+
 	String getHmacSecret();
 
 	void setHmacSecret(String hmacSecret);
@@ -62,6 +90,14 @@ public interface Config {
 
 	void setHttpProxyPort(Integer httpProxyPort);
 
+	Boolean getSharedArtifactStore();
+
+	void setSharedArtifactStore(Boolean sharedArtifactStore);
+
+	String getOpenIDAssociationSecret();
+
+	void setOpenIDAssociationSecret(String openIDAssociationSecret);
+
 	String getIssuer();
 
 	void setIssuer(String issuer);
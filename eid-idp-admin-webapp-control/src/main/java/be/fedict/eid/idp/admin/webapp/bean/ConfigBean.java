@@ -34,6 +34,7 @@ import javax.ejb.Stateful;
 import javax.faces.model.SelectItem;
 
 import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.io.FileUtils;
 import org.jboss.ejb3.annotation.LocalBinding;
 import org.jboss.seam.ScopeType;
@@ -57,6 +58,7 @@ import be.fedict.eid.idp.model.ConfigProperty;
 import be.fedict.eid.idp.model.Configuration;
 import be.fedict.eid.idp.model.CryptoUtil;
 import be.fedict.eid.idp.model.KeyStoreType;
+import be.fedict.eid.idp.model.TrustValidationCache;
 import be.fedict.eid.idp.model.XFrameOptions;
 
 @Stateful
@@ -70,6 +72,9 @@ public class ConfigBean implements Config {
 	@EJB
 	private Configuration configuration;
 
+	@EJB
+	private TrustValidationCache trustValidationCache;
+
 	@In
 	FacesMessages facesMessages;
 
@@ -95,10 +100,19 @@ public class ConfigBean implements Config {
 	private String xkmsUrl;
 	private String xkmsAuthTrustDomain;
 	private String xkmsIdentTrustDomain;
+	private Integer xkmsAuthCacheTtl;
+	private Integer xkmsIdentCacheTtl;
+	private Integer xkmsCacheSize;
+	private Integer xkmsTimeout;
+	private Integer xkmsMaxConcurrent;
+	private Integer xkmsFailureThreshold;
+	private Integer xkmsOpenTime;
 
 	private Boolean httpProxy;
 	private String httpProxyHost;
 	private Integer httpProxyPort;
+	private Boolean sharedArtifactStore;
+	private String openIDAssociationSecret;
 
 	private AppletConfigEntity appletConfig;
 	private Boolean removeCard;
@@ -132,6 +146,20 @@ public class ConfigBean implements Config {
 				ConfigProperty.XKMS_AUTH_TRUST_DOMAIN, String.class);
 		this.xkmsIdentTrustDomain = this.configuration.getValue(
 				ConfigProperty.XKMS_IDENT_TRUST_DOMAIN, String.class);
+		this.xkmsAuthCacheTtl = this.configuration.getValue(
+				ConfigProperty.XKMS_AUTH_CACHE_TTL, Integer.class);
+		this.xkmsIdentCacheTtl = this.configuration.getValue(
+				ConfigProperty.XKMS_IDENT_CACHE_TTL, Integer.class);
+		this.xkmsCacheSize = this.configuration.getValue(
+				ConfigProperty.XKMS_CACHE_SIZE, Integer.class);
+		this.xkmsTimeout = this.configuration.getValue(
+				ConfigProperty.XKMS_TIMEOUT, Integer.class);
+		this.xkmsMaxConcurrent = this.configuration.getValue(
+				ConfigProperty.XKMS_MAX_CONCURRENT, Integer.class);
+		this.xkmsFailureThreshold = this.configuration.getValue(
+				ConfigProperty.XKMS_FAILURE_THRESHOLD, Integer.class);
+		this.xkmsOpenTime = this.configuration.getValue(
+				ConfigProperty.XKMS_OPEN_TIME, Integer.class);
 
 		// Network Config
 		this.httpProxy = this.configuration.getValue(
@@ -140,6 +168,10 @@ public class ConfigBean implements Config {
 				ConfigProperty.HTTP_PROXY_HOST, String.class);
 		this.httpProxyPort = this.configuration.getValue(
 				ConfigProperty.HTTP_PROXY_PORT, Integer.class);
+		this.sharedArtifactStore = this.configuration.getValue(
+				ConfigProperty.SHARED_ARTIFACT_STORE, Boolean.class);
+		this.openIDAssociationSecret = this.configuration.getValue(
+				ConfigProperty.OPENID_ASSOCIATION_SECRET, String.class);
 
 		// Applet config
 		this.appletConfig = this.configuration.getAppletConfig();
@@ -167,6 +199,21 @@ public class ConfigBean implements Config {
 				this.xkmsAuthTrustDomain);
 		this.configuration.setValue(ConfigProperty.XKMS_IDENT_TRUST_DOMAIN,
 				this.xkmsIdentTrustDomain);
+		this.configuration.setValue(ConfigProperty.XKMS_AUTH_CACHE_TTL,
+				this.xkmsAuthCacheTtl);
+		this.configuration.setValue(ConfigProperty.XKMS_IDENT_CACHE_TTL,
+				this.xkmsIdentCacheTtl);
+		this.configuration.setValue(ConfigProperty.XKMS_CACHE_SIZE,
+				this.xkmsCacheSize);
+		this.configuration.setValue(ConfigProperty.XKMS_TIMEOUT,
+				this.xkmsTimeout);
+		this.configuration.setValue(ConfigProperty.XKMS_MAX_CONCURRENT,
+				this.xkmsMaxConcurrent);
+		this.configuration.setValue(ConfigProperty.XKMS_FAILURE_THRESHOLD,
+				this.xkmsFailureThreshold);
+		this.configuration.setValue(ConfigProperty.XKMS_OPEN_TIME,
+				this.xkmsOpenTime);
+		this.trustValidationCache.clear();
 
 		this.selectedTab = ConfigurationTab.tab_xkms.name();
 
@@ -217,6 +264,25 @@ public class ConfigBean implements Config {
 		this.configuration.setValue(ConfigProperty.HTTP_PROXY_PORT,
 				this.httpProxyPort);
 
+		// Cluster Config
+		if (null != this.openIDAssociationSecret
+				&& !this.openIDAssociationSecret.trim().isEmpty()) {
+			try {
+				Hex.decodeHex(this.openIDAssociationSecret.toCharArray());
+			} catch (DecoderException e) {
+				this.log.error("Failed to decode OpenID association secret: "
+						+ e.getMessage(), e);
+				this.facesMessages.addToControl("openidassociationsecret",
+						"Failed to decode secret");
+				return null;
+			}
+		}
+
+		this.configuration.setValue(ConfigProperty.SHARED_ARTIFACT_STORE,
+				this.sharedArtifactStore);
+		this.configuration.setValue(ConfigProperty.OPENID_ASSOCIATION_SECRET,
+				this.openIDAssociationSecret);
+
 		this.selectedTab = ConfigurationTab.tab_network.name();
 
 		return "success";
@@ -302,6 +368,76 @@ public class ConfigBean implements Config {
 		this.xkmsIdentTrustDomain = xkmsIdentTrustDomain;
 	}
 
+	@Override
+	public Integer getXkmsAuthCacheTtl() {
+		return this.xkmsAuthCacheTtl;
+	}
+
+	@Override
+	public void setXkmsAuthCacheTtl(Integer xkmsAuthCacheTtl) {
+		this.xkmsAuthCacheTtl = xkmsAuthCacheTtl;
+	}
+
+	@Override
+	public Integer getXkmsIdentCacheTtl() {
+		return this.xkmsIdentCacheTtl;
+	}
+
+	@Override
+	public void setXkmsIdentCacheTtl(Integer xkmsIdentCacheTtl) {
+		this.xkmsIdentCacheTtl = xkmsIdentCacheTtl;
+	}
+
+	@Override
+	public Integer getXkmsCacheSize() {
+		return this.xkmsCacheSize;
+	}
+
+	@Override
+	public void setXkmsCacheSize(Integer xkmsCacheSize) {
+		this.xkmsCacheSize = xkmsCacheSize;
+	}
+
+	@Override
+	public Integer getXkmsTimeout() {
+		return this.xkmsTimeout;
+	}
+
+	@Override
+	public void setXkmsTimeout(Integer xkmsTimeout) {
+		this.xkmsTimeout = xkmsTimeout;
+	}
+
+	@Override
+	public Integer getXkmsMaxConcurrent() {
+		return this.xkmsMaxConcurrent;
+	}
+
+	@Override
+	public void setXkmsMaxConcurrent(Integer xkmsMaxConcurrent) {
+		this.xkmsMaxConcurrent = xkmsMaxConcurrent;
+	}
+
+	@Override
+	public Integer getXkmsFailureThreshold() {
+		return this.xkmsFailureThreshold;
+	}
+
+	@Override
+	public void setXkmsFailureThreshold(Integer xkmsFailureThreshold) {
+		this.xkmsFailureThreshold = xkmsFailureThreshold;
+	}
+
+	@Override
+	public Integer getXkmsOpenTime() {
+		return this.xkmsOpenTime;
+	}
+
+	@Override
+	public void setXkmsOpenTime(Integer xkmsOpenTime) {
+		this.xkmsOpenTime = xkmsOpenTime;
+	}
+
 	@Override
 	public String getHmacSecret() {
 		return this.hmacSecret;
@@ -342,6 +478,26 @@ public class ConfigBean implements Config {
 		this.httpProxyPort = httpProxyPort;
 	}
 
+	@Override
+	public Boolean getSharedArtifactStore() {
+		return this.sharedArtifactStore;
+	}
+
+	@Override
+	public void setSharedArtifactStore(Boolean sharedArtifactStore) {
+		this.sharedArtifactStore = sharedArtifactStore;
+	}
+
+	@Override
+	public String getOpenIDAssociationSecret() {
+		return this.openIDAssociationSecret;
+	}
+
+	@Override
+	public void setOpenIDAssociationSecret(String openIDAssociationSecret) {
+		this.openIDAssociationSecret = openIDAssociationSecret;
+	}
+
 	@Override
 	public AppletConfigEntity getAppletConfig() {
 		return this.appletConfig;
@@ -0,0 +1,154 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.common.saml2;
+
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Result;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.w3c.dom.Node;
+
+/**
+ * Thread-safe DOM serialization.
+ * <p/>
+ * Looking up a {@link TransformerFactory} goes through the JAXP service
+ * lookup, which is slow and contended. So we keep a single factory and pool
+ * the identity transformers it creates, as a {@link Transformer} itself is not
+ * thread-safe.
+ */
+public class DomSerializer {
+
+	private static final int MAX_POOLED_TRANSFORMERS = 32;
+
+	private static final TransformerFactory transformerFactory = TransformerFactory
+			.newInstance();
+
+	private static final Queue<Transformer> transformers = new ConcurrentLinkedQueue<Transformer>();
+
+	private DomSerializer() {
+		super();
+	}
+
+	/**
+	 * Writes the given DOM node, including XML declaration.
+	 * 
+	 * @param node
+	 *            the DOM node
+	 * @param outputStream
+	 *            the output stream, not closed.
+	 * @throws TransformerException
+	 *             on serialization error.
+	 */
+	public static void write(Node node, OutputStream outputStream)
+			throws TransformerException {
+
+		transform(node, new StreamResult(outputStream), false, false);
+	}
+
+	/**
+	 * Writes the given DOM node, including XML declaration.
+	 * 
+	 * @param node
+	 *            the DOM node
+	 * @param writer
+	 *            the writer, not closed.
+	 * @throws TransformerException
+	 *             on serialization error.
+	 */
+	public static void write(Node node, Writer writer)
+			throws TransformerException {
+
+		transform(node, new StreamResult(writer), false, false);
+	}
+
+	/**
+	 * Gives back the string representation of the given DOM node, without XML
+	 * declaration.
+	 * 
+	 * @param node
+	 *            the DOM node
+	 * @param indent
+	 *            indent or not
+	 * @return the string representation.
+	 * @throws TransformerException
+	 *             on serialization error.
+	 */
+	public static String toString(Node node, boolean indent)
+			throws TransformerException {
+
+		StringWriter stringWriter = new StringWriter();
+		transform(node, new StreamResult(stringWriter), true, indent);
+		return stringWriter.toString();
+	}
+
+	private static void transform(Node node, Result result,
+			boolean omitXmlDeclaration, boolean indent)
+			throws TransformerException {
+
+		Transformer transformer = borrowTransformer();
+		try {
+			if (omitXmlDeclaration) {
+				transformer.setOutputProperty(
+						OutputKeys.OMIT_XML_DECLARATION, "yes");
+			}
+			if (indent) {
+				transformer.setOutputProperty(
+						"{http://xml.apache.org/xslt}indent-amount", "4");
+				transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+			}
+			transformer.transform(new DOMSource(node), result);
+		} finally {
+			returnTransformer(transformer);
+		}
+	}
+
+	private static Transformer borrowTransformer()
+			throws TransformerConfigurationException {
+
+		Transformer transformer = transformers.poll();
+		if (null != transformer) {
+			return transformer;
+		}
+		// a TransformerFactory is not guaranteed to be thread-safe
+		synchronized (transformerFactory) {
+			return transformerFactory.newTransformer();
+		}
+	}
+
+	private static void returnTransformer(Transformer transformer) {
+
+		// back to the state right after creation, including output properties
+		transformer.reset();
+		// size() is not constant time, but the pool stays small
+		if (transformers.size() < MAX_POOLED_TRANSFORMERS) {
+			transformers.offer(transformer);
+		}
+	}
+}
@@ -21,7 +21,6 @@ package be.fedict.eid.idp.common.saml2;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.StringReader;
-import java.io.StringWriter;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.KeyStore;
 import java.security.NoSuchAlgorithmException;
@@ -38,7 +37,11 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.crypto.SecretKey;
 import javax.xml.bind.JAXBContext;
@@ -60,20 +63,11 @@ import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Result;
-import javax.xml.transform.Source;
-import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.TransformerFactoryConfigurationError;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.xml.security.utils.Constants;
-import org.apache.xpath.XPathAPI;
 import org.joda.time.DateTime;
 import org.joda.time.chrono.ISOChronology;
 import org.opensaml.Configuration;
@@ -191,6 +185,26 @@ public abstract class Saml2Util {
 
 	private static final Log LOG = LogFactory.getLog(Saml2Util.class);
 
+	/*
+	 * JAXB contexts are expensive to create but thread-safe, so we keep one
+	 * per JAXB class. Marshallers and unmarshallers are not thread-safe, so
+	 * these are pooled per JAXB class.
+	 */
+	private static final int MAX_POOLED_JAXB_INSTANCES = 32;
+
+	private static final ConcurrentMap<Class<?>, JAXBContext> jaxbContexts = new ConcurrentHashMap<Class<?>, JAXBContext>();
+
+	private static final ConcurrentMap<Class<?>, Queue<javax.xml.bind.Marshaller>> marshallers = new ConcurrentHashMap<Class<?>, Queue<javax.xml.bind.Marshaller>>();
+
+	private static final ConcurrentMap<Class<?>, Queue<javax.xml.bind.Unmarshaller>> unmarshallers = new ConcurrentHashMap<Class<?>, Queue<javax.xml.bind.Unmarshaller>>();
+
+	private static final DocumentBuilderFactory documentBuilderFactory;
+
+	static {
+		documentBuilderFactory = DocumentBuilderFactory.newInstance();
+		documentBuilderFactory.setNamespaceAware(true);
+	}
+
 	static {
 		/*
 		 * Next is because Sun loves to endorse crippled versions of Xerces.
@@ -1334,10 +1348,7 @@ public abstract class Saml2Util {
 			OutputStream documentOutputStream)
 			throws TransformerFactoryConfigurationError, TransformerException,
 			IOException {
-		Result result = new StreamResult(documentOutputStream);
-		Transformer xformer = TransformerFactory.newInstance().newTransformer();
-		Source source = new DOMSource(document);
-		xformer.transform(source, result);
+		DomSerializer.write(document, documentOutputStream);
 	}
 
 	/**
@@ -1350,10 +1361,7 @@ public abstract class Saml2Util {
 	public static Document parseDocument(String documentString) {
 
 		try {
-			DocumentBuilderFactory domFactory = DocumentBuilderFactory
-					.newInstance();
-			domFactory.setNamespaceAware(true);
-			DocumentBuilder domBuilder = domFactory.newDocumentBuilder();
+			DocumentBuilder domBuilder = newDocumentBuilder();
 			StringReader stringReader = new StringReader(documentString);
 			InputSource inputSource = new InputSource(stringReader);
 			return domBuilder.parse(inputSource);
@@ -1378,28 +1386,106 @@ public abstract class Saml2Util {
 	public static String domToString(Node domNode, boolean indent) {
 
 		try {
-			Source source = new DOMSource(domNode);
-			StringWriter stringWriter = new StringWriter();
-			Result result = new StreamResult(stringWriter);
-
-			TransformerFactory transformerFactory = TransformerFactory
-					.newInstance();
-			Transformer transformer = transformerFactory.newTransformer();
-
-			transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION,
-					"yes");
-			transformer.setOutputProperty(
-					"{http://xml.apache.org/xslt}indent-amount", "4");
-			transformer.setOutputProperty(OutputKeys.INDENT, indent ? "yes"
-					: "no");
-			transformer.transform(source, result);
-
-			return stringWriter.toString();
+			return DomSerializer.toString(domNode, indent);
 		} catch (TransformerException e) {
 			throw new RuntimeException(e);
 		}
 	}
 
+	/**
+	 * @return a new namespace aware DOM builder.
+	 * @throws ParserConfigurationException
+	 *             on parser configuration error.
+	 */
+	public static DocumentBuilder newDocumentBuilder()
+			throws ParserConfigurationException {
+
+		// a DocumentBuilderFactory is not guaranteed to be thread-safe
+		synchronized (documentBuilderFactory) {
+			return documentBuilderFactory.newDocumentBuilder();
+		}
+	}
+
+	/**
+	 * Gives back the cached JAXB context for the given JAXB class.
+	 * 
+	 * @param wsType
+	 *            the JAXB class
+	 * @return the JAXB context.
+	 * @throws JAXBException
+	 *             on JAXB context creation error.
+	 */
+	public static JAXBContext getJAXBContext(Class<?> wsType)
+			throws JAXBException {
+
+		JAXBContext jaxbContext = jaxbContexts.get(wsType);
+		if (null == jaxbContext) {
+			jaxbContext = JAXBContext.newInstance(wsType);
+			JAXBContext existingJaxbContext = jaxbContexts.putIfAbsent(wsType,
+					jaxbContext);
+			if (null != existingJaxbContext) {
+				jaxbContext = existingJaxbContext;
+			}
+		}
+		return jaxbContext;
+	}
+
+	private static <V> Queue<V> getPool(
+			ConcurrentMap<Class<?>, Queue<V>> pools, Class<?> wsType) {
+
+		Queue<V> pool = pools.get(wsType);
+		if (null == pool) {
+			pool = new ConcurrentLinkedQueue<V>();
+			Queue<V> existingPool = pools.putIfAbsent(wsType, pool);
+			if (null != existingPool) {
+				pool = existingPool;
+			}
+		}
+		return pool;
+	}
+
+	private static <V> void release(Queue<V> pool, V value) {
+
+		// size() is not constant time, but the pool stays small
+		if (pool.size() < MAX_POOLED_JAXB_INSTANCES) {
+			pool.offer(value);
+		}
+	}
+
+	private static javax.xml.bind.Marshaller borrowMarshaller(Class<?> wsType)
+			throws JAXBException {
+
+		javax.xml.bind.Marshaller marshaller = getPool(marshallers, wsType)
+				.poll();
+		if (null == marshaller) {
+			marshaller = getJAXBContext(wsType).createMarshaller();
+		}
+		return marshaller;
+	}
+
+	private static void returnMarshaller(Class<?> wsType,
+			javax.xml.bind.Marshaller marshaller) {
+
+		release(getPool(marshallers, wsType), marshaller);
+	}
+
+	private static javax.xml.bind.Unmarshaller borrowUnmarshaller(
+			Class<?> wsType) throws JAXBException {
+
+		javax.xml.bind.Unmarshaller unmarshaller = getPool(unmarshallers,
+				wsType).poll();
+		if (null == unmarshaller) {
+			unmarshaller = getJAXBContext(wsType).createUnmarshaller();
+		}
+		return unmarshaller;
+	}
+
+	private static void returnUnmarshaller(Class<?> wsType,
+			javax.xml.bind.Unmarshaller unmarshaller) {
+
+		release(getPool(unmarshallers, wsType), unmarshaller);
+	}
+
 	/**
 	 * Convert specified opensaml {@link XMLObject} to specified JAXB type.
 	 * 
@@ -1418,8 +1504,13 @@ public abstract class Saml2Util {
 			Element element = Configuration.getMarshallerFactory()
 					.getMarshaller(openSAMLObject).marshall(openSAMLObject);
 
-			return ((JAXBElement<T>) JAXBContext.newInstance(wsType)
-					.createUnmarshaller().unmarshal(element)).getValue();
+			javax.xml.bind.Unmarshaller unmarshaller = borrowUnmarshaller(wsType);
+			try {
+				return ((JAXBElement<T>) unmarshaller.unmarshal(element))
+						.getValue();
+			} finally {
+				returnUnmarshaller(wsType, unmarshaller);
+			}
 		} catch (MarshallingException e) {
 			throw new RuntimeException(
 					"Marshaling from OpenSAML object failed.", e);
@@ -1448,14 +1539,14 @@ public abstract class Saml2Util {
 			Class<F> wsType, QName samlElementName) {
 
 		try {
-			Document root = DocumentBuilderFactory.newInstance()
-					.newDocumentBuilder().newDocument();
-			JAXBContext
-					.newInstance(wsType)
-					.createMarshaller()
-					.marshal(
-							new JAXBElement<F>(samlElementName, wsType,
-									wsObject), root);
+			Document root = newDocumentBuilder().newDocument();
+			javax.xml.bind.Marshaller marshaller = borrowMarshaller(wsType);
+			try {
+				marshaller.marshal(new JAXBElement<F>(samlElementName, wsType,
+						wsObject), root);
+			} finally {
+				returnMarshaller(wsType, marshaller);
+			}
 
 			return (T) unmarshall(root.getDocumentElement());
 		} catch (ParserConfigurationException e) {
@@ -1503,27 +1594,7 @@ public abstract class Saml2Util {
 	 */
 	public static Node find(Document document, String xpath) {
 
-		try {
-			return XPathAPI.selectSingleNode(document, xpath,
-					getNSElement(document));
-		} catch (TransformerException e) {
-			throw new RuntimeException("XPath error: " + e.getMessage());
-		}
-	}
-
-	private static Element getNSElement(Document document) {
-
-		Element nsElement = document.createElement("nsElement");
-		nsElement.setAttributeNS(Constants.NamespaceSpecNS, "xmlns:soap",
-				"http://schemas.xmlsoap.org/soap/envelope/");
-		nsElement.setAttributeNS(Constants.NamespaceSpecNS, "xmlns:ds",
-				"http://www.w3.org/2000/09/xmldsig#");
-		nsElement.setAttributeNS(Constants.NamespaceSpecNS, "xmlns:samlp",
-				"urn:oasis:names:tc:SAML:2.0:protocol");
-		nsElement.setAttributeNS(Constants.NamespaceSpecNS, "xmlns:saml",
-				"urn:oasis:names:tc:SAML:2.0:assertion");
-
-		return nsElement;
+		return XPathUtil.find(document, xpath);
 	}
 
 	/**
@@ -0,0 +1,244 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.common.saml2;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+import org.w3c.dom.Node;
+
+/**
+ * XPath lookups against SAML2 and SOAP messages.
+ * <p/>
+ * All expressions share a fixed set of namespace prefixes, see
+ * {@link #NAMESPACE_CONTEXT}. Expressions that only consist of child element
+ * steps, like <code>/soap:Envelope/soap:Body/samlp:ArtifactResolve</code>, are
+ * resolved by walking the DOM directly. Other expressions are compiled once
+ * per thread, as {@link XPathExpression} is not thread-safe.
+ */
+public class XPathUtil {
+
+	private static final Map<String, String> NAMESPACES;
+
+	static {
+		Map<String, String> namespaces = new HashMap<String, String>();
+		namespaces.put("soap", "http://schemas.xmlsoap.org/soap/envelope/");
+		namespaces.put("ds", "http://www.w3.org/2000/09/xmldsig#");
+		namespaces.put("samlp", "urn:oasis:names:tc:SAML:2.0:protocol");
+		namespaces.put("saml", "urn:oasis:names:tc:SAML:2.0:assertion");
+		namespaces.put("saml2", "urn:oasis:names:tc:SAML:2.0:assertion");
+		NAMESPACES = Collections.unmodifiableMap(namespaces);
+	}
+
+	/**
+	 * The namespace prefixes available to all XPath expressions.
+	 */
+	public static final NamespaceContext NAMESPACE_CONTEXT = new NamespaceContext() {
+
+		public String getNamespaceURI(String prefix) {
+			if (null == prefix) {
+				throw new IllegalArgumentException("null prefix");
+			}
+			String namespace = NAMESPACES.get(prefix);
+			if (null == namespace) {
+				return XMLConstants.NULL_NS_URI;
+			}
+			return namespace;
+		}
+
+		public String getPrefix(String namespaceURI) {
+			for (Map.Entry<String, String> namespace : NAMESPACES.entrySet()) {
+				if (namespace.getValue().equals(namespaceURI)) {
+					return namespace.getKey();
+				}
+			}
+			return null;
+		}
+
+		public Iterator<String> getPrefixes(String namespaceURI) {
+			List<String> prefixes = new LinkedList<String>();
+			for (Map.Entry<String, String> namespace : NAMESPACES.entrySet()) {
+				if (namespace.getValue().equals(namespaceURI)) {
+					prefixes.add(namespace.getKey());
+				}
+			}
+			return prefixes.iterator();
+		}
+	};
+
+	private static final Pattern STEP_PATTERN = Pattern
+			.compile("([A-Za-z][\\w.-]*):([A-Za-z_][\\w.-]*)");
+
+	private static final Step[] NO_FAST_PATH = new Step[0];
+
+	private static final ConcurrentMap<String, Step[]> fastPaths = new ConcurrentHashMap<String, Step[]>();
+
+	private static final ThreadLocal<Map<String, XPathExpression>> expressions = new ThreadLocal<Map<String, XPathExpression>>() {
+
+		@Override
+		protected Map<String, XPathExpression> initialValue() {
+			return new HashMap<String, XPathExpression>();
+		}
+	};
+
+	private static final ThreadLocal<XPath> xpaths = new ThreadLocal<XPath>() {
+
+		@Override
+		protected XPath initialValue() {
+			XPath xpath = XPathFactory.newInstance().newXPath();
+			xpath.setNamespaceContext(NAMESPACE_CONTEXT);
+			return xpath;
+		}
+	};
+
+	private XPathUtil() {
+		super();
+	}
+
+	/**
+	 * Find the first {@link Node} selected by the given XPath expression.
+	 * 
+	 * @param context
+	 *            the context node, usually a document.
+	 * @param xpath
+	 *            the XPath expression.
+	 * @return the node or <code>null</code> if not found.
+	 */
+	public static Node find(Node context, String xpath) {
+
+		Step[] steps = getFastPath(xpath);
+		if (NO_FAST_PATH != steps) {
+			Node start = context;
+			if (xpath.startsWith("/")
+					&& Node.DOCUMENT_NODE != context.getNodeType()) {
+				start = context.getOwnerDocument();
+			}
+			return find(start, steps, 0);
+		}
+
+		try {
+			return (Node) getExpression(xpath).evaluate(context,
+					XPathConstants.NODE);
+		} catch (XPathExpressionException e) {
+			throw new RuntimeException("XPath error: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Depth-first search yielding the same node as XPath would, i.e. the first
+	 * matching node in document order.
+	 */
+	private static Node find(Node node, Step[] steps, int stepIdx) {
+
+		if (stepIdx == steps.length) {
+			return node;
+		}
+		Step step = steps[stepIdx];
+		for (Node child = node.getFirstChild(); null != child; child = child
+				.getNextSibling()) {
+			if (Node.ELEMENT_NODE != child.getNodeType()) {
+				continue;
+			}
+			if (!step.localName.equals(child.getLocalName())) {
+				continue;
+			}
+			if (!step.namespace.equals(child.getNamespaceURI())) {
+				continue;
+			}
+			Node result = find(child, steps, stepIdx + 1);
+			if (null != result) {
+				return result;
+			}
+		}
+		return null;
+	}
+
+	private static Step[] getFastPath(String xpath) {
+
+		Step[] steps = fastPaths.get(xpath);
+		if (null != steps) {
+			return steps;
+		}
+		steps = parseFastPath(xpath);
+		fastPaths.putIfAbsent(xpath, steps);
+		return steps;
+	}
+
+	private static Step[] parseFastPath(String xpath) {
+
+		String path = xpath.startsWith("/") ? xpath.substring(1) : xpath;
+		if (path.length() == 0) {
+			return NO_FAST_PATH;
+		}
+		String[] stepStrings = path.split("/", -1);
+		Step[] steps = new Step[stepStrings.length];
+		for (int idx = 0; idx < stepStrings.length; idx++) {
+			Matcher matcher = STEP_PATTERN.matcher(stepStrings[idx]);
+			if (!matcher.matches()) {
+				return NO_FAST_PATH;
+			}
+			String namespace = NAMESPACES.get(matcher.group(1));
+			if (null == namespace) {
+				return NO_FAST_PATH;
+			}
+			steps[idx] = new Step(namespace, matcher.group(2));
+		}
+		return steps;
+	}
+
+	private static XPathExpression getExpression(String xpath)
+			throws XPathExpressionException {
+
+		Map<String, XPathExpression> threadExpressions = expressions.get();
+		XPathExpression expression = threadExpressions.get(xpath);
+		if (null == expression) {
+			expression = xpaths.get().compile(xpath);
+			threadExpressions.put(xpath, expression);
+		}
+		return expression;
+	}
+
+	private static class Step {
+
+		private final String namespace;
+
+		private final String localName;
+
+		Step(String namespace, String localName) {
+			this.namespace = namespace;
+			this.localName = localName;
+		}
+	}
+}
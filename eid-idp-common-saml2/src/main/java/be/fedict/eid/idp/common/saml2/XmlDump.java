@@ -0,0 +1,100 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.common.saml2;
+
+import java.io.ByteArrayOutputStream;
+
+import javax.xml.soap.SOAPMessage;
+
+import org.apache.commons.logging.Log;
+import org.opensaml.xml.XMLObject;
+import org.w3c.dom.Node;
+
+/**
+ * Debug logging of XML messages. Marshalling and serializing a message is
+ * expensive, so this only happens when debug logging is enabled for the given
+ * log.
+ */
+public class XmlDump {
+
+	private XmlDump() {
+		super();
+	}
+
+	/**
+	 * Logs the given message followed by the (marshalled) XML object.
+	 * 
+	 * @param log
+	 *            the log
+	 * @param message
+	 *            the message preceding the XML.
+	 * @param xmlObject
+	 *            the opensaml XML object.
+	 */
+	public static void debug(Log log, String message, XMLObject xmlObject) {
+
+		if (!log.isDebugEnabled()) {
+			return;
+		}
+		log.debug(message
+				+ Saml2Util.domToString(Saml2Util.marshall(xmlObject), true));
+	}
+
+	/**
+	 * Logs the given message followed by the serialized DOM node.
+	 * 
+	 * @param log
+	 *            the log
+	 * @param message
+	 *            the message preceding the XML.
+	 * @param node
+	 *            the DOM node.
+	 */
+	public static void debug(Log log, String message, Node node) {
+
+		if (!log.isDebugEnabled()) {
+			return;
+		}
+		log.debug(message + Saml2Util.domToString(node, true));
+	}
+
+	/**
+	 * Logs the given message followed by the serialized SOAP message.
+	 * 
+	 * @param log
+	 *            the log
+	 * @param message
+	 *            the message preceding the XML.
+	 * @param soapMessage
+	 *            the SOAP message.
+	 */
+	public static void debug(Log log, String message, SOAPMessage soapMessage) {
+
+		if (!log.isDebugEnabled()) {
+			return;
+		}
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try {
+			soapMessage.writeTo(output);
+		} catch (Exception e) {
+			log.error("SOAP error: " + e.getMessage());
+		}
+		log.debug(message + output.toString());
+	}
+}
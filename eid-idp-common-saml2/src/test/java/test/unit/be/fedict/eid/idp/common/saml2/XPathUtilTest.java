@@ -0,0 +1,82 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package test.unit.be.fedict.eid.idp.common.saml2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import be.fedict.eid.idp.common.saml2.Saml2Util;
+import be.fedict.eid.idp.common.saml2.XPathUtil;
+
+public class XPathUtilTest {
+
+	private static final String MESSAGE = "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+			+ "<soap:Body>"
+			+ "<samlp:ArtifactResponse xmlns:samlp=\"urn:oasis:names:tc:SAML:2.0:protocol\">"
+			+ "<samlp:Status/>"
+			+ "<samlp:Response>"
+			+ "<a:Assertion xmlns:a=\"urn:oasis:names:tc:SAML:2.0:assertion\">"
+			+ "<a:Issuer>issuer</a:Issuer>"
+			+ "<a:Conditions NotBefore=\"2010-01-01T00:00:00Z\"/>"
+			+ "</a:Assertion>"
+			+ "</samlp:Response>"
+			+ "</samlp:ArtifactResponse>" + "</soap:Body>" + "</soap:Envelope>";
+
+	@Test
+	public void testFindElementPath() throws Exception {
+		// setup
+		Document document = Saml2Util.parseDocument(MESSAGE);
+
+		// operate
+		Node result = XPathUtil
+				.find(document,
+						"/soap:Envelope/soap:Body/samlp:ArtifactResponse/samlp:Response/saml:Assertion");
+
+		// verify
+		assertNotNull(result);
+		assertEquals("Assertion", result.getLocalName());
+		assertEquals(result, Saml2Util.find(document,
+				"/soap:Envelope/soap:Body/samlp:ArtifactResponse/samlp:Response/saml:Assertion"));
+		assertNull(XPathUtil.find(document,
+				"/soap:Envelope/soap:Body/samlp:ArtifactResolve"));
+	}
+
+	@Test
+	public void testFindRelative() throws Exception {
+		// setup
+		Document document = Saml2Util.parseDocument(MESSAGE);
+		Element assertionElement = (Element) XPathUtil.find(document,
+				"//saml2:Assertion");
+		assertNotNull(assertionElement);
+
+		// operate & verify
+		assertEquals("issuer", XPathUtil.find(assertionElement,
+				"saml2:Issuer/text()").getNodeValue());
+		assertEquals("2010-01-01T00:00:00Z", XPathUtil.find(
+				assertionElement, "saml2:Conditions/@NotBefore")
+				.getNodeValue());
+		assertNull(XPathUtil.find(assertionElement, "ds:Signature"));
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package test.unit.be.fedict.eid.idp.common.saml2;
+
+import javax.xml.soap.MessageFactory;
+import javax.xml.soap.SOAPMessage;
+
+import org.apache.commons.logging.Log;
+import org.easymock.EasyMock;
+import org.junit.Test;
+import org.opensaml.xml.XMLObject;
+import org.w3c.dom.Node;
+
+import be.fedict.eid.idp.common.saml2.XmlDump;
+
+public class XmlDumpTest {
+
+	@Test
+	public void testNoMarshallingAtInfoLevel() throws Exception {
+		// setup
+		Log mockLog = EasyMock.createMock(Log.class);
+		XMLObject mockXmlObject = EasyMock.createMock(XMLObject.class);
+		Node mockNode = EasyMock.createMock(Node.class);
+		SOAPMessage soapMessage = MessageFactory.newInstance()
+				.createMessage();
+
+		// expectations: any use of the XML objects, or any debug output of
+		// the SOAP message, fails the test
+		EasyMock.expect(mockLog.isDebugEnabled()).andStubReturn(false);
+
+		// prepare
+		EasyMock.replay(mockLog, mockXmlObject, mockNode);
+
+		// operate
+		XmlDump.debug(mockLog, "request: ", mockXmlObject);
+		XmlDump.debug(mockLog, "node: ", mockNode);
+		XmlDump.debug(mockLog, "SOAP message: ", soapMessage);
+
+		// verify
+		EasyMock.verify(mockLog, mockXmlObject, mockNode);
+	}
+
+	@Test
+	public void testSoapMessageAtDebugLevel() throws Exception {
+		// setup
+		Log mockLog = EasyMock.createMock(Log.class);
+		SOAPMessage soapMessage = MessageFactory.newInstance()
+				.createMessage();
+
+		// expectations
+		EasyMock.expect(mockLog.isDebugEnabled()).andStubReturn(true);
+		mockLog.debug(EasyMock.startsWith("SOAP message: <"));
+
+		// prepare
+		EasyMock.replay(mockLog);
+
+		// operate
+		XmlDump.debug(mockLog, "SOAP message: ", soapMessage);
+
+		// verify
+		EasyMock.verify(mockLog);
+	}
+}
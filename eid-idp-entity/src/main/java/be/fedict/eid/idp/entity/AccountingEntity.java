@@ -39,7 +39,9 @@ import javax.persistence.Table;
 		@NamedQuery(name = AccountingEntity.LIST_ALL, query = "FROM AccountingEntity AS accounting "
 				+ "ORDER BY accounting.requests DESC"),
 		@NamedQuery(name = AccountingEntity.RESET_ALL, query = "DELETE FROM AccountingEntity"),
-		@NamedQuery(name = AccountingEntity.NUMBER_OF_REQUESTS, query = "SELECT SUM(requests) FROM AccountingEntity") })
+		@NamedQuery(name = AccountingEntity.NUMBER_OF_REQUESTS, query = "SELECT SUM(requests) FROM AccountingEntity"),
+		@NamedQuery(name = AccountingEntity.ADD_REQUESTS, query = "UPDATE AccountingEntity "
+				+ "SET requests = requests + :requests WHERE domain = :domain") })
 public class AccountingEntity implements Serializable {
 
 	private static final long serialVersionUID = 1L;
@@ -47,6 +49,7 @@ public class AccountingEntity implements Serializable {
 	public static final String LIST_ALL = "idp.accounting.all";
 	public static final String RESET_ALL = "idp.accounting.reset.all";
 	public static final String NUMBER_OF_REQUESTS = "idp.accounting.nbr.requests";
+	public static final String ADD_REQUESTS = "idp.accounting.add.requests";
 
 	private String domain;
 	private Long requests;
@@ -96,4 +99,18 @@ public class AccountingEntity implements Serializable {
 				AccountingEntity.NUMBER_OF_REQUESTS).getSingleResult();
 	}
 
+	/**
+	 * Increments the request counter of the given domain in place.
+	 * 
+	 * @return the number of updated rows, <code>0</code> if the domain has no
+	 *         accounting entry yet.
+	 */
+	public static int addRequests(EntityManager entityManager, String domain,
+			long requests) {
+
+		return entityManager.createNamedQuery(AccountingEntity.ADD_REQUESTS)
+				.setParameter("requests", requests)
+				.setParameter("domain", domain).executeUpdate();
+	}
+
 }
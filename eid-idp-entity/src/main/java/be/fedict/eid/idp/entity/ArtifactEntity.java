@@ -0,0 +1,128 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.entity;
+
+import java.io.Serializable;
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EntityManager;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+/**
+ * SAML2 artifact entity. Shares issued artifacts between the nodes of an eID
+ * IdP cluster.
+ */
+@Entity
+@Table(name = Constants.DATABASE_TABLE_PREFIX + "artifact")
+@NamedQueries({
+		@NamedQuery(name = ArtifactEntity.REMOVE, query = "DELETE FROM ArtifactEntity "
+				+ "WHERE artifact = :artifact"),
+		@NamedQuery(name = ArtifactEntity.REMOVE_EXPIRED, query = "DELETE FROM ArtifactEntity "
+				+ "WHERE expiration < :now") })
+public class ArtifactEntity implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final String REMOVE = "idp.artifact.remove";
+	public static final String REMOVE_EXPIRED = "idp.artifact.remove.expired";
+
+	private String artifact;
+	private String issuerId;
+	private String relyingPartyId;
+	private String message;
+	private Date expiration;
+
+	public ArtifactEntity() {
+		super();
+	}
+
+	public ArtifactEntity(String artifact, String issuerId,
+			String relyingPartyId, String message, Date expiration) {
+		this.artifact = artifact;
+		this.issuerId = issuerId;
+		this.relyingPartyId = relyingPartyId;
+		this.message = message;
+		this.expiration = expiration;
+	}
+
+	@Id
+	public String getArtifact() {
+		return this.artifact;
+	}
+
+	public void setArtifact(String artifact) {
+		this.artifact = artifact;
+	}
+
+	public String getIssuerId() {
+		return this.issuerId;
+	}
+
+	public void setIssuerId(String issuerId) {
+		this.issuerId = issuerId;
+	}
+
+	public String getRelyingPartyId() {
+		return this.relyingPartyId;
+	}
+
+	public void setRelyingPartyId(String relyingPartyId) {
+		this.relyingPartyId = relyingPartyId;
+	}
+
+	@Lob
+	@Column(length = 500 * 1024, nullable = false)
+	public String getMessage() {
+		return this.message;
+	}
+
+	public void setMessage(String message) {
+		this.message = message;
+	}
+
+	@Temporal(TemporalType.TIMESTAMP)
+	@Column(nullable = false)
+	public Date getExpiration() {
+		return this.expiration;
+	}
+
+	public void setExpiration(Date expiration) {
+		this.expiration = expiration;
+	}
+
+	public static int remove(EntityManager entityManager, String artifact) {
+
+		return entityManager.createNamedQuery(ArtifactEntity.REMOVE)
+				.setParameter("artifact", artifact).executeUpdate();
+	}
+
+	public static int removeExpired(EntityManager entityManager) {
+
+		return entityManager.createNamedQuery(ArtifactEntity.REMOVE_EXPIRED)
+				.setParameter("now", new Date()).executeUpdate();
+	}
+}
@@ -34,13 +34,17 @@ import javax.persistence.Table;
  */
 @Entity
 @Table(name = Constants.DATABASE_TABLE_PREFIX + "configuration")
-@NamedQueries(@NamedQuery(name = ConfigPropertyEntity.LIST_INDEXES, query = "FROM ConfigPropertyEntity WHERE name LIKE :name"))
+@NamedQueries({
+		@NamedQuery(name = ConfigPropertyEntity.LIST_INDEXES, query = "FROM ConfigPropertyEntity WHERE name LIKE :name"),
+		@NamedQuery(name = ConfigPropertyEntity.LIST_ALL, query = "FROM ConfigPropertyEntity") })
 public class ConfigPropertyEntity implements Serializable {
 
 	private static final long serialVersionUID = 1L;
 
 	public static final String LIST_INDEXES = "idp.config.list.idx";
 
+	public static final String LIST_ALL = "idp.config.list.all";
+
 	private String name;
 
 	private String value;
@@ -80,4 +84,11 @@ public class ConfigPropertyEntity implements Serializable {
 				.setParameter("name", "%" + name + "%").getResultList();
 	}
 
+	@SuppressWarnings("unchecked")
+	public static List<ConfigPropertyEntity> listAll(EntityManager entityManager) {
+
+		return entityManager.createNamedQuery(ConfigPropertyEntity.LIST_ALL)
+				.getResultList();
+	}
+
 }
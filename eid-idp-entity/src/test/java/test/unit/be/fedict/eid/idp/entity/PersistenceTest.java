@@ -32,6 +32,7 @@ import org.junit.Test;
 import be.fedict.eid.idp.entity.AccountingEntity;
 import be.fedict.eid.idp.entity.AdministratorEntity;
 import be.fedict.eid.idp.entity.AppletConfigEntity;
+import be.fedict.eid.idp.entity.ArtifactEntity;
 import be.fedict.eid.idp.entity.AttributeEntity;
 import be.fedict.eid.idp.entity.AttributeProtocolUriEntity;
 import be.fedict.eid.idp.entity.ConfigPropertyEntity;
@@ -67,6 +68,8 @@ public class PersistenceTest {
 
 		configuration.addAnnotatedClass(AccountingEntity.class);
 
+		configuration.addAnnotatedClass(ArtifactEntity.class);
+
 		EntityManagerFactory entityManagerFactory = configuration
 				.buildEntityManagerFactory();
 
@@ -18,6 +18,7 @@
 
 package be.fedict.eid.idp.mbean;
 
+import java.util.List;
 import java.util.Map;
 
 import javax.ejb.EJB;
@@ -26,10 +27,15 @@ import javax.management.openmbean.CompositeType;
 import javax.management.openmbean.OpenDataException;
 import javax.management.openmbean.OpenType;
 import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
 
 import org.jboss.ejb3.annotation.Management;
 import org.jboss.ejb3.annotation.Service;
 
+import be.fedict.eid.idp.model.ConfigurationCache;
+import be.fedict.eid.idp.model.LatencyStatistic;
 import be.fedict.eid.idp.model.Statistics;
 
 @Service(objectName = "idp:service=Statistics")
@@ -39,6 +45,9 @@ public class StatisticsService implements StatisticsServiceMBean {
 	@EJB
 	private Statistics statistics;
 
+	@EJB
+	private ConfigurationCache configurationCache;
+
 	@Override
 	public CompositeDataSupport getProtocolStatistics() {
 		Map<String, Long> protocolStatistics = this.statistics
@@ -68,4 +77,72 @@ public class StatisticsService implements StatisticsServiceMBean {
 	public long getTotalAuthenticationCount() {
 		return this.statistics.getTotalAuthenticationCount();
 	}
+
+	@Override
+	public long getConfigurationCacheHits() {
+		return this.configurationCache.getHits();
+	}
+
+	@Override
+	public long getConfigurationCacheMisses() {
+		return this.configurationCache.getMisses();
+	}
+
+	@Override
+	public TabularData getLatencyStatistics() {
+		List<LatencyStatistic> latencyStatistics = this.statistics
+				.getLatencyStatistics();
+		int bucketCount = LatencyStatistic.BUCKET_BOUNDS.length + 1;
+		String[] itemNames = new String[6 + bucketCount];
+		OpenType<?>[] itemTypes = new OpenType<?>[itemNames.length];
+		itemNames[0] = "stage";
+		itemNames[1] = "protocol";
+		itemNames[2] = "rp";
+		itemNames[3] = "count";
+		itemNames[4] = "totalMillis";
+		itemNames[5] = "maxMillis";
+		for (int idx = 0; idx < bucketCount - 1; idx++) {
+			itemNames[6 + idx] = "le" + LatencyStatistic.BUCKET_BOUNDS[idx]
+					+ "ms";
+		}
+		itemNames[itemNames.length - 1] = "overflow";
+		for (int idx = 0; idx < itemTypes.length; idx++) {
+			itemTypes[idx] = idx < 3 ? SimpleType.STRING : SimpleType.LONG;
+		}
+		try {
+			CompositeType compositeType = new CompositeType(
+					"LatencyStatistic",
+					"A row with the latency histogram of a stage.", itemNames,
+					itemNames, itemTypes);
+			TabularType tabularType = new TabularType("LatencyStatistics",
+					"Latency histograms per stage, protocol and RP.",
+					compositeType, new String[] { "stage", "protocol", "rp" });
+			TabularDataSupport tabularData = new TabularDataSupport(
+					tabularType);
+			for (LatencyStatistic latencyStatistic : latencyStatistics) {
+				Object[] itemValues = new Object[itemNames.length];
+				itemValues[0] = latencyStatistic.getStage().name();
+				itemValues[1] = latencyStatistic.getProtocolIdentifier();
+				itemValues[2] = null != latencyStatistic.getRpDomain() ? latencyStatistic
+						.getRpDomain() : "";
+				itemValues[3] = latencyStatistic.getCount();
+				itemValues[4] = latencyStatistic.getTotalMillis();
+				itemValues[5] = latencyStatistic.getMaxMillis();
+				long[] bucketCounts = latencyStatistic.getBucketCounts();
+				for (int idx = 0; idx < bucketCounts.length; idx++) {
+					itemValues[6 + idx] = bucketCounts[idx];
+				}
+				tabularData.put(new CompositeDataSupport(compositeType,
+						itemNames, itemValues));
+			}
+			return tabularData;
+		} catch (OpenDataException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public void resetStatistics() {
+		this.statistics.reset();
+	}
 }
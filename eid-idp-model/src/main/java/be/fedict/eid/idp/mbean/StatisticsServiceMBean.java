@@ -19,10 +19,19 @@
 package be.fedict.eid.idp.mbean;
 
 import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.TabularData;
 
 public interface StatisticsServiceMBean {
 
 	CompositeDataSupport getProtocolStatistics();
 
 	long getTotalAuthenticationCount();
+
+	long getConfigurationCacheHits();
+
+	long getConfigurationCacheMisses();
+
+	TabularData getLatencyStatistics();
+
+	void resetStatistics();
 }
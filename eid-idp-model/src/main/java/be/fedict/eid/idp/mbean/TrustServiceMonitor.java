@@ -0,0 +1,69 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010-2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.mbean;
+
+import javax.ejb.EJB;
+
+import org.jboss.ejb3.annotation.Management;
+import org.jboss.ejb3.annotation.Service;
+
+import be.fedict.eid.idp.model.TrustService;
+
+@Service(objectName = "idp:service=TrustService")
+@Management(TrustServiceMonitorMBean.class)
+public class TrustServiceMonitor implements TrustServiceMonitorMBean {
+
+	@EJB
+	private TrustService trustService;
+
+	@Override
+	public String getCircuitState() {
+		return this.trustService.getCircuitBreaker().getState().name();
+	}
+
+	@Override
+	public int getConsecutiveFailures() {
+		return this.trustService.getCircuitBreaker().getConsecutiveFailures();
+	}
+
+	@Override
+	public long getFailureCount() {
+		return this.trustService.getCircuitBreaker().getFailureCount();
+	}
+
+	@Override
+	public long getOpenCount() {
+		return this.trustService.getCircuitBreaker().getOpenCount();
+	}
+
+	@Override
+	public int getActiveCalls() {
+		return this.trustService.getActiveCalls();
+	}
+
+	@Override
+	public long getRejectedCalls() {
+		return this.trustService.getRejectedCalls();
+	}
+
+	@Override
+	public void resetCircuit() {
+		this.trustService.getCircuitBreaker().reset();
+	}
+}
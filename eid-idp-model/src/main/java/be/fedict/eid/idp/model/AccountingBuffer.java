@@ -0,0 +1,55 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.model;
+
+import java.util.Map;
+
+import javax.ejb.Local;
+
+/**
+ * Interface for the in-memory accounting buffer. Request counts are collected
+ * per normalized domain and periodically written to the database in one
+ * batch.
+ */
+@Local
+public interface AccountingBuffer {
+
+	/**
+	 * Increase the pending number of requests for the given normalized
+	 * domain.
+	 * 
+	 * @param domain
+	 */
+	void addRequest(String domain);
+
+	/**
+	 * @return the requests that are not yet persisted, per normalized domain.
+	 */
+	Map<String, Long> getPendingRequests();
+
+	/**
+	 * Write all pending requests to the database.
+	 */
+	void flush();
+
+	/**
+	 * Drops all pending requests.
+	 */
+	void clear();
+}
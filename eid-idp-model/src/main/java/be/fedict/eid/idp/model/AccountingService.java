@@ -19,6 +19,7 @@
 package be.fedict.eid.idp.model;
 
 import java.util.List;
+import java.util.Map;
 
 import javax.ejb.Local;
 
@@ -45,5 +46,13 @@ public interface AccountingService {
 	 */
 	void addRequest(String domain);
 
+	/**
+	 * Persists a batch of buffered request counts in a new transaction.
+	 * 
+	 * @param requests
+	 *            the number of requests per normalized domain.
+	 */
+	void addRequests(Map<String, Long> requests);
+
 	long getNumberOfRequests();
 }
@@ -0,0 +1,36 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.model;
+
+import javax.ejb.Local;
+
+import be.fedict.eid.idp.spi.ArtifactStore;
+
+/**
+ * Database backed SAML2 artifact store, shared by all nodes of an eID IdP
+ * cluster.
+ */
+@Local
+public interface ArtifactService extends ArtifactStore {
+
+	/**
+	 * Removes all expired artifacts.
+	 */
+	void removeExpired();
+}
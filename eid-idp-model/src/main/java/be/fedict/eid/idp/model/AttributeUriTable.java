@@ -0,0 +1,64 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010-2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.model;
+
+import java.util.List;
+
+import javax.ejb.Local;
+
+import be.fedict.eid.idp.entity.AttributeEntity;
+
+/**
+ * Read-mostly table of all attributes and their protocol specific URIs. The
+ * table is loaded in two bulk queries so that mapping attribute URIs from and
+ * to a protocol does not hit the database.
+ */
+@Local
+public interface AttributeUriTable extends InvalidatableCache {
+
+	/**
+	 * @return all attributes, in the order of the attribute table.
+	 */
+	List<AttributeEntity> listAttributes();
+
+	/**
+	 * @param protocolId
+	 *            ID of the authentication protocol
+	 * @param attributeUri
+	 *            the attribute's default URI
+	 * @return the protocol specific URI if any, or else the default URI.
+	 * @throws RuntimeException
+	 *             if the attribute is not known.
+	 */
+	String getUri(String protocolId, String attributeUri);
+
+	/**
+	 * @param protocolId
+	 *            ID of the authentication protocol
+	 * @param protocolUri
+	 *            the protocol specific or default URI of the attribute
+	 * @return the attribute or <code>null</code> if not found.
+	 */
+	AttributeEntity findAttribute(String protocolId, String protocolUri);
+
+	/**
+	 * Drops the loaded table. The next lookup reloads all attributes.
+	 */
+	void invalidate();
+}
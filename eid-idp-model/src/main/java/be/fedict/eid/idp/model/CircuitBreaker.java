@@ -0,0 +1,127 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010-2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.model;
+
+/**
+ * Circuit breaker guarding the calls towards an external service.
+ * <p/>
+ * Opens after a number of consecutive failures. Once the open time has
+ * elapsed, a single probe call is let through: its success closes the
+ * circuit again, its failure keeps it open for another period.
+ */
+public class CircuitBreaker {
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private State state = State.CLOSED;
+
+	private int consecutiveFailures;
+
+	private long openedAt;
+
+	private boolean probing;
+
+	private long probeStartedAt;
+
+	private long failureCount;
+
+	private long openCount;
+
+	/**
+	 * @param openTime
+	 *            time in seconds to keep the circuit open before probing.
+	 * @return <code>true</code> if the call may proceed.
+	 */
+	public synchronized boolean allowRequest(int openTime) {
+
+		long now = currentTimeMillis();
+		if (State.CLOSED == this.state) {
+			return true;
+		}
+		if (State.OPEN == this.state) {
+			if (now - this.openedAt < openTime * 1000L) {
+				return false;
+			}
+			this.state = State.HALF_OPEN;
+			this.probing = false;
+		}
+		if (this.probing && now - this.probeStartedAt < openTime * 1000L) {
+			return false;
+		}
+		// no probe running, or the previous probe never came back
+		this.probing = true;
+		this.probeStartedAt = now;
+		return true;
+	}
+
+	public synchronized void recordSuccess() {
+
+		this.consecutiveFailures = 0;
+		this.probing = false;
+		this.state = State.CLOSED;
+	}
+
+	/**
+	 * @param failureThreshold
+	 *            number of consecutive failures that opens the circuit.
+	 */
+	public synchronized void recordFailure(int failureThreshold) {
+
+		this.failureCount++;
+		this.consecutiveFailures++;
+		if (State.HALF_OPEN == this.state
+				|| this.consecutiveFailures >= failureThreshold) {
+			if (State.OPEN != this.state) {
+				this.openCount++;
+			}
+			this.state = State.OPEN;
+			this.openedAt = currentTimeMillis();
+			this.probing = false;
+		}
+	}
+
+	public synchronized void reset() {
+
+		this.state = State.CLOSED;
+		this.consecutiveFailures = 0;
+		this.probing = false;
+	}
+
+	public synchronized State getState() {
+		return this.state;
+	}
+
+	public synchronized int getConsecutiveFailures() {
+		return this.consecutiveFailures;
+	}
+
+	public synchronized long getFailureCount() {
+		return this.failureCount;
+	}
+
+	public synchronized long getOpenCount() {
+		return this.openCount;
+	}
+
+	protected long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+}
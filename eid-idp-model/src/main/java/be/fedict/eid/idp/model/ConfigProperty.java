@@ -38,6 +38,20 @@ public enum ConfigProperty {
 
 	XKMS_IDENT_TRUST_DOMAIN("xkms-ident-trust-domain", String.class),
 
+	XKMS_AUTH_CACHE_TTL("xkms-auth-cache-ttl", Integer.class),
+
+	XKMS_IDENT_CACHE_TTL("xkms-ident-cache-ttl", Integer.class),
+
+	XKMS_CACHE_SIZE("xkms-cache-size", Integer.class),
+
+	XKMS_TIMEOUT("xkms-timeout", Integer.class),
+
+	XKMS_MAX_CONCURRENT("xkms-max-concurrent", Integer.class),
+
+	XKMS_FAILURE_THRESHOLD("xkms-failure-threshold", Integer.class),
+
+	XKMS_OPEN_TIME("xkms-open-time", Integer.class),
+
 	HTTP_PROXY_ENABLED("http-proxy", Boolean.class),
 
 	HTTP_PROXY_HOST("http-proxy-host", String.class),
@@ -72,7 +86,11 @@ public enum ConfigProperty {
 
 	XSS_PROTECTION("xss-protection", Boolean.class),
 
-	X_FRAME_OPTIONS("x-frame-options", XFrameOptions.class);
+	X_FRAME_OPTIONS("x-frame-options", XFrameOptions.class),
+
+	SHARED_ARTIFACT_STORE("shared-artifact-store", Boolean.class),
+
+	OPENID_ASSOCIATION_SECRET("openid-association-secret", String.class);
 
 	private final String name;
 
@@ -0,0 +1,54 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010-2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.model;
+
+import javax.ejb.Local;
+
+/**
+ * Read-mostly cache of all configuration properties. The cache is loaded in
+ * one bulk query and holds the parsed, typed values so that reading
+ * configuration does not hit the database.
+ */
+@Local
+public interface ConfigurationCache extends InvalidatableCache {
+
+	/**
+	 * @param configProperty
+	 *            the configuration property, used to type the value
+	 * @param propertyName
+	 *            the full property name, including the optional index
+	 * @return the typed value or <code>null</code> if not set.
+	 */
+	Object getValue(ConfigProperty configProperty, String propertyName);
+
+	/**
+	 * Drops the cached configuration. The next read reloads all properties.
+	 */
+	void invalidate();
+
+	/**
+	 * @return number of reads served from the loaded cache.
+	 */
+	long getHits();
+
+	/**
+	 * @return number of reads that required a (re)load of the cache.
+	 */
+	long getMisses();
+}
@@ -28,4 +28,6 @@ public abstract class Constants {
 			+ ".RP";
 	public static final String RP_DOMAIN_SESSION_ATTRIBUTE = Constants.class
 			.getName() + ".relyingPartyDomain";
+	public static final String ENTRY_TIME_SESSION_ATTRIBUTE = Constants.class
+			.getName() + ".entryTime";
 }
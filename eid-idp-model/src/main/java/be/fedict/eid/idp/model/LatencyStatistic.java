@@ -0,0 +1,111 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010-2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.model;
+
+/**
+ * Snapshot of a latency histogram for a given stage, protocol and RP.
+ */
+public class LatencyStatistic {
+
+	/**
+	 * Inclusive upper bounds, in milliseconds, of the histogram buckets. The
+	 * last bucket counts everything above the last bound.
+	 */
+	public static final long[] BUCKET_BOUNDS = { 5, 10, 25, 50, 100, 250, 500,
+			1000, 2500, 5000, 10000, 30000, 60000, 120000 };
+
+	private final StatisticsStage stage;
+
+	private final String protocolIdentifier;
+
+	private final String rpDomain;
+
+	private final long[] bucketCounts;
+
+	private final long count;
+
+	private final long totalMillis;
+
+	private final long maxMillis;
+
+	public LatencyStatistic(StatisticsStage stage, String protocolIdentifier,
+			String rpDomain, long[] bucketCounts, long totalMillis,
+			long maxMillis) {
+
+		this.stage = stage;
+		this.protocolIdentifier = protocolIdentifier;
+		this.rpDomain = rpDomain;
+		this.bucketCounts = bucketCounts.clone();
+		long bucketTotal = 0;
+		for (long bucketCount : bucketCounts) {
+			bucketTotal += bucketCount;
+		}
+		this.count = bucketTotal;
+		this.totalMillis = totalMillis;
+		this.maxMillis = maxMillis;
+	}
+
+	/**
+	 * @return index of the bucket for the given latency.
+	 */
+	public static int getBucket(long millis) {
+
+		for (int idx = 0; idx < BUCKET_BOUNDS.length; idx++) {
+			if (millis <= BUCKET_BOUNDS[idx]) {
+				return idx;
+			}
+		}
+		return BUCKET_BOUNDS.length;
+	}
+
+	public StatisticsStage getStage() {
+		return this.stage;
+	}
+
+	public String getProtocolIdentifier() {
+		return this.protocolIdentifier;
+	}
+
+	/**
+	 * @return the RP domain or <code>null</code> for requests of unregistered
+	 *         RPs.
+	 */
+	public String getRpDomain() {
+		return this.rpDomain;
+	}
+
+	/**
+	 * @return count per bucket, see {@link #BUCKET_BOUNDS}.
+	 */
+	public long[] getBucketCounts() {
+		return this.bucketCounts.clone();
+	}
+
+	public long getCount() {
+		return this.count;
+	}
+
+	public long getTotalMillis() {
+		return this.totalMillis;
+	}
+
+	public long getMaxMillis() {
+		return this.maxMillis;
+	}
+}
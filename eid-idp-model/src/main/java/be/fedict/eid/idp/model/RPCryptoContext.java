@@ -0,0 +1,156 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010-2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.model;
+
+import java.security.InvalidKeyException;
+import java.security.PublicKey;
+import java.util.Arrays;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Hex;
+
+import be.fedict.eid.idp.entity.RPEntity;
+import be.fedict.eid.idp.model.exception.KeyLoadException;
+
+/**
+ * Key material derived from a relying party's configuration, prepared once so
+ * that computing the user identifier and setting up attribute encryption does
+ * not decode keys on every login.
+ * <p/>
+ * A {@link Mac} is not thread-safe, so every thread gets its own instance.
+ */
+public class RPCryptoContext {
+
+	private final byte[] identifierSecret;
+
+	private final ThreadLocal<Mac> identifierMac;
+
+	private final SecretKey attributeSecretKey;
+
+	private final PublicKey attributePublicKey;
+
+	/**
+	 * Context for the given RP. The identifier secret is <code>null</code> if
+	 * the RP did not configure one, in which case the IdP default applies.
+	 */
+	public RPCryptoContext(RPEntity rp) throws DecoderException,
+			KeyLoadException {
+
+		this(getIdentifierSecret(rp), getAttributeSecretKey(rp),
+				getAttributePublicKey(rp));
+	}
+
+	/**
+	 * Context holding only an identifier secret, e.g. the IdP default one.
+	 */
+	public RPCryptoContext(byte[] identifierSecret) {
+
+		this(identifierSecret, null, null);
+	}
+
+	private RPCryptoContext(byte[] identifierSecret,
+			SecretKey attributeSecretKey, PublicKey attributePublicKey) {
+
+		this.identifierSecret = identifierSecret;
+		this.attributeSecretKey = attributeSecretKey;
+		this.attributePublicKey = attributePublicKey;
+		this.identifierMac = new ThreadLocal<Mac>() {
+
+			@Override
+			protected Mac initialValue() {
+				try {
+					return CryptoUtil
+							.getMac(RPCryptoContext.this.identifierSecret);
+				} catch (InvalidKeyException e) {
+					throw new RuntimeException("Invalid key", e);
+				}
+			}
+		};
+	}
+
+	/**
+	 * @return whether this context has an identifier secret.
+	 */
+	public boolean hasIdentifierSecret() {
+		return null != this.identifierSecret;
+	}
+
+	/**
+	 * @return whether this context was prepared for the given identifier
+	 *         secret.
+	 */
+	public boolean hasIdentifierSecret(byte[] identifierSecret) {
+		return Arrays.equals(this.identifierSecret, identifierSecret);
+	}
+
+	/**
+	 * @param userId
+	 *            the user ID
+	 * @return the HMAC of the user ID, upper case hex encoded.
+	 */
+	public String getUniqueId(String userId) {
+
+		if (null == this.identifierSecret) {
+			throw new IllegalStateException("no identifier secret");
+		}
+		byte[] resultHMac = this.identifierMac.get().doFinal(
+				userId.getBytes());
+		return new String(Hex.encodeHex(resultHMac)).toUpperCase();
+	}
+
+	public SecretKey getAttributeSecretKey() {
+		return this.attributeSecretKey;
+	}
+
+	public PublicKey getAttributePublicKey() {
+		return this.attributePublicKey;
+	}
+
+	private static byte[] getIdentifierSecret(RPEntity rp)
+			throws DecoderException {
+
+		if (null == rp.getIdentifierSecretKey()
+				|| rp.getIdentifierSecretKey().trim().isEmpty()) {
+			return null;
+		}
+		return Hex.decodeHex(rp.getIdentifierSecretKey().toCharArray());
+	}
+
+	private static SecretKey getAttributeSecretKey(RPEntity rp)
+			throws DecoderException {
+
+		if (null == rp.getAttributeSecretKey()) {
+			return null;
+		}
+		return CryptoUtil.getSecretKey(rp.getAttributeSecretAlgorithm(),
+				rp.getAttributeSecretKey());
+	}
+
+	private static PublicKey getAttributePublicKey(RPEntity rp)
+			throws KeyLoadException {
+
+		if (null == rp.getAttributePublicKey()) {
+			return null;
+		}
+		return CryptoUtil.getPublicKey(rp.getAttributePublicKey());
+	}
+}
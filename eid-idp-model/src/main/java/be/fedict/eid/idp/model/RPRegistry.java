@@ -0,0 +1,45 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010-2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.model;
+
+import javax.ejb.Local;
+
+/**
+ * Read-mostly registry of all relying parties, indexed by domain. The registry
+ * is loaded in one bulk query and is swapped as a whole when an RP gets saved
+ * or removed, so that resolving the RP of an incoming request does not hit the
+ * database.
+ */
+@Local
+public interface RPRegistry extends InvalidatableCache {
+
+	/**
+	 * @param domain
+	 *            the SP domain of the incoming request, matched without
+	 *            surrounding white space and regardless of case
+	 * @return the registered RP or <code>null</code> if no RP is configured
+	 *         for the given domain.
+	 */
+	RPRegistryEntry find(String domain);
+
+	/**
+	 * Drops the current registry. The next lookup reloads all RPs.
+	 */
+	void invalidate();
+}
@@ -0,0 +1,129 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010-2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.model;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import be.fedict.eid.idp.entity.RPAttributeEntity;
+import be.fedict.eid.idp.entity.RPEntity;
+import be.fedict.eid.idp.model.exception.KeyLoadException;
+
+/**
+ * Immutable view on a relying party as registered in the {@link RPRegistry}.
+ * <p/>
+ * The certificate fingerprint, the attribute set and the blocked state are
+ * computed once when the registry gets loaded, the {@link RPCryptoContext} on
+ * first use. The wrapped {@link RPEntity} is detached and shared between
+ * requests, so it must not be modified.
+ */
+public class RPRegistryEntry {
+
+	private final RPEntity rp;
+
+	private final String certificateFingerprint;
+
+	private final Set<String> attributeUris;
+
+	private final boolean blocked;
+
+	private final String blockedMessage;
+
+	private volatile RPCryptoContext cryptoContext;
+
+	public RPRegistryEntry(RPEntity rp, Boolean blocked, String blockedMessage) {
+
+		this.rp = rp;
+		if (null != rp.getEncodedCertificate()) {
+			this.certificateFingerprint = DigestUtils.shaHex(rp
+					.getEncodedCertificate());
+		} else {
+			this.certificateFingerprint = null;
+		}
+		Set<String> uris = new HashSet<String>();
+		for (RPAttributeEntity rpAttribute : rp.getAttributes()) {
+			uris.add(rpAttribute.getAttribute().getUri());
+		}
+		this.attributeUris = Collections.unmodifiableSet(uris);
+		this.blocked = null != blocked && blocked;
+		this.blockedMessage = blockedMessage;
+	}
+
+	/**
+	 * @return the registry key for the given RP or SP domain:
+	 *         <code>null</code>, or trimmed and in lower case.
+	 */
+	public static String normalizeDomain(String domain) {
+		if (null == domain) {
+			return null;
+		}
+		return domain.trim().toLowerCase();
+	}
+
+	public RPEntity getRp() {
+		return this.rp;
+	}
+
+	/**
+	 * @return SHA-1 hex fingerprint of the RP's certificate or
+	 *         <code>null</code> if no certificate is configured.
+	 */
+	public String getCertificateFingerprint() {
+		return this.certificateFingerprint;
+	}
+
+	/**
+	 * @param attributeUri
+	 *            the (non protocol specific) attribute URI
+	 * @return whether the attribute is configured for this RP.
+	 */
+	public boolean hasAttribute(String attributeUri) {
+		return this.attributeUris.contains(attributeUri);
+	}
+
+	public Set<String> getAttributeUris() {
+		return this.attributeUris;
+	}
+
+	public boolean isBlocked() {
+		return this.blocked;
+	}
+
+	public String getBlockedMessage() {
+		return this.blockedMessage;
+	}
+
+	/**
+	 * @return the RP's key material, prepared on first use.
+	 */
+	public RPCryptoContext getCryptoContext() throws DecoderException,
+			KeyLoadException {
+
+		RPCryptoContext currentCryptoContext = this.cryptoContext;
+		if (null == currentCryptoContext) {
+			currentCryptoContext = new RPCryptoContext(this.rp);
+			this.cryptoContext = currentCryptoContext;
+		}
+		return currentCryptoContext;
+	}
+}
@@ -18,6 +18,7 @@
 
 package be.fedict.eid.idp.model;
 
+import java.util.List;
 import java.util.Map;
 
 import javax.ejb.Local;
@@ -30,4 +31,32 @@ public interface Statistics {
 	Map<String, Long> getProtocolStatistics();
 
 	long getTotalAuthenticationCount();
+
+	/**
+	 * Records the latency of an authentication stage.
+	 * 
+	 * @param stage
+	 *            the authentication stage
+	 * @param protocolIdentifier
+	 *            the protocol identifier
+	 * @param rpDomain
+	 *            domain of the registered RP, or <code>null</code> if the RP is
+	 *            not registered. Histograms are keyed on the normalized
+	 *            domain, see {@link RPRegistryEntry#normalizeDomain(String)}.
+	 * @param millis
+	 *            the latency in milliseconds
+	 */
+	void recordLatency(StatisticsStage stage, String protocolIdentifier,
+			String rpDomain, long millis);
+
+	/**
+	 * @return snapshots of all latency histograms.
+	 */
+	List<LatencyStatistic> getLatencyStatistics();
+
+	/**
+	 * Resets all counters and histograms. Concurrent recording is not blocked;
+	 * samples recorded during the reset may get lost.
+	 */
+	void reset();
 }
@@ -0,0 +1,46 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010-2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.model;
+
+/**
+ * Stages of an authentication for which latencies are recorded.
+ */
+public enum StatisticsStage {
+
+	/**
+	 * Handling of the incoming protocol request.
+	 */
+	ENTRY,
+
+	/**
+	 * Time spent by the user on the eID applet pages, from the end of the entry
+	 * stage until the start of the exit stage.
+	 */
+	IDENTIFICATION,
+
+	/**
+	 * Handling of the outgoing protocol response, signing included.
+	 */
+	EXIT,
+
+	/**
+	 * Construction and signing of the protocol response.
+	 */
+	SIGNING
+}
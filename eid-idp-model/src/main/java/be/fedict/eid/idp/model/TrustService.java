@@ -0,0 +1,89 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010-2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.model;
+
+import java.security.cert.X509Certificate;
+import java.util.List;
+
+import javax.ejb.Local;
+
+import be.fedict.eid.idp.model.exception.TrustServiceException;
+import be.fedict.eid.idp.model.exception.TrustServiceUnavailableException;
+import be.fedict.trust.client.exception.ValidationFailedException;
+
+/**
+ * Validates certificate chains against the configured eID Trust Service.
+ * <p/>
+ * Calls run on the calling thread behind a concurrency limit and a circuit
+ * breaker. The connect and request timeouts of the XKMS2 client bound each
+ * call, so a slow trust service cannot tie up the callers.
+ */
+@Local
+public interface TrustService {
+
+	/**
+	 * Default connect and request timeout, in seconds, of a validation.
+	 */
+	int DEFAULT_TIMEOUT = 30;
+
+	/**
+	 * Default maximum number of trust service calls in progress.
+	 */
+	int DEFAULT_MAX_CONCURRENT = 16;
+
+	/**
+	 * Default number of consecutive failures that opens the circuit.
+	 */
+	int DEFAULT_FAILURE_THRESHOLD = 5;
+
+	/**
+	 * Default time, in seconds, the circuit stays open before probing.
+	 */
+	int DEFAULT_OPEN_TIME = 30;
+
+	/**
+	 * Validates the given certificate chain.
+	 * 
+	 * @param trustDomain
+	 *            the trust domain, or <code>null</code> for the trust service
+	 *            default.
+	 * @param certificateChain
+	 *            the certificate chain to validate
+	 * @throws ValidationFailedException
+	 *             if the chain is not valid.
+	 * @throws TrustServiceUnavailableException
+	 *             if the call is refused by the concurrency limit or the
+	 *             circuit breaker.
+	 * @throws TrustServiceException
+	 *             if the trust service could not be consulted.
+	 */
+	void validate(String trustDomain, List<X509Certificate> certificateChain)
+			throws ValidationFailedException, TrustServiceException;
+
+	/**
+	 * @return the connect and request timeout in seconds of a validation.
+	 */
+	int getTimeout();
+
+	CircuitBreaker getCircuitBreaker();
+
+	int getActiveCalls();
+
+	long getRejectedCalls();
+}
@@ -0,0 +1,76 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010-2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.model;
+
+import java.security.cert.X509Certificate;
+import java.util.List;
+
+import javax.ejb.Local;
+
+/**
+ * Bounded cache of positive eID Trust Service validation results, keyed by
+ * trust domain and certificate chain fingerprint. Negative results are never
+ * cached.
+ */
+@Local
+public interface TrustValidationCache {
+
+	/**
+	 * Default time to live, in seconds, of a cached authentication chain
+	 * validation.
+	 */
+	int DEFAULT_AUTH_TTL = 300;
+
+	/**
+	 * Default time to live, in seconds, of the cached national registration
+	 * chain validation. This chain is shared by all citizens, so it is kept
+	 * short.
+	 */
+	int DEFAULT_IDENT_TTL = 60;
+
+	/**
+	 * Default maximum number of cached validation results.
+	 */
+	int DEFAULT_SIZE = 1000;
+
+	/**
+	 * @param trustDomain
+	 *            the trust domain, can be <code>null</code> for the default
+	 *            one.
+	 * @param certificateChain
+	 *            the certificate chain
+	 * @return whether a still valid positive result is cached.
+	 */
+	boolean isValid(String trustDomain, List<X509Certificate> certificateChain);
+
+	/**
+	 * Caches a positive validation result.
+	 * 
+	 * @param ttl
+	 *            time to live in seconds, nothing gets cached if not positive.
+	 */
+	void setValid(String trustDomain, List<X509Certificate> certificateChain,
+			int ttl);
+
+	/**
+	 * Drops all cached results, e.g. after the trust service configuration
+	 * changed.
+	 */
+	void clear();
+}
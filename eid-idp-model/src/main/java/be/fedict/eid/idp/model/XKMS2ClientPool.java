@@ -0,0 +1,178 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010-2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.model;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.xml.ws.BindingProvider;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import be.fedict.trust.client.XKMS2Client;
+
+/**
+ * Idle XKMS2 clients for one URL, proxy and timeout configuration.
+ * <p/>
+ * Clients keep their JAX-WS port, and with it the HTTP keep-alive
+ * connections, between calls. A client is only used by one thread at a time.
+ * A client that failed mid-call is not released, so a broken connection is
+ * never handed out again.
+ */
+public class XKMS2ClientPool {
+
+	private static final Log LOG = LogFactory.getLog(XKMS2ClientPool.class);
+
+	/**
+	 * JAX-WS RI BindingProviderProperties.CONNECT_TIMEOUT
+	 */
+	public static final String CONNECT_TIMEOUT = "com.sun.xml.ws.connect.timeout";
+
+	/**
+	 * JAX-WS RI BindingProviderProperties.REQUEST_TIMEOUT
+	 */
+	public static final String REQUEST_TIMEOUT = "com.sun.xml.ws.request.timeout";
+
+	private static final String JDK_CONNECT_TIMEOUT = "com.sun.xml.internal.ws.connect.timeout";
+
+	private static final String JDK_REQUEST_TIMEOUT = "com.sun.xml.internal.ws.request.timeout";
+
+	private static final String CXF_CONNECT_TIMEOUT = "javax.xml.ws.client.connectionTimeout";
+
+	private static final String CXF_RECEIVE_TIMEOUT = "javax.xml.ws.client.receiveTimeout";
+
+	private final String xkmsUrl;
+
+	private final String httpProxyHost;
+
+	private final int httpProxyPort;
+
+	private final int timeoutMillis;
+
+	private final Queue<XKMS2Client> idleClients = new ConcurrentLinkedQueue<XKMS2Client>();
+
+	/**
+	 * @param timeoutMillis
+	 *            connect and request timeout of the clients, in milliseconds.
+	 */
+	public XKMS2ClientPool(String xkmsUrl, String httpProxyHost,
+			int httpProxyPort, int timeoutMillis) {
+		this.xkmsUrl = xkmsUrl;
+		this.httpProxyHost = httpProxyHost;
+		this.httpProxyPort = httpProxyPort;
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	/**
+	 * @return <code>true</code> if this pool serves the given configuration.
+	 */
+	public boolean matches(String xkmsUrl, String httpProxyHost,
+			int httpProxyPort, int timeoutMillis) {
+		return equals(this.xkmsUrl, xkmsUrl)
+				&& equals(this.httpProxyHost, httpProxyHost)
+				&& this.httpProxyPort == httpProxyPort
+				&& this.timeoutMillis == timeoutMillis;
+	}
+
+	/**
+	 * @return an idle client, or a new one if none is available.
+	 */
+	public XKMS2Client borrow() {
+		XKMS2Client xkms2Client = this.idleClients.poll();
+		if (null != xkms2Client) {
+			return xkms2Client;
+		}
+		return createClient();
+	}
+
+	/**
+	 * Hands a client back after a call that got an answer from the trust
+	 * service.
+	 */
+	public void release(XKMS2Client xkms2Client) {
+		this.idleClients.offer(xkms2Client);
+	}
+
+	public int getIdleCount() {
+		return this.idleClients.size();
+	}
+
+	public String getXkmsUrl() {
+		return this.xkmsUrl;
+	}
+
+	protected XKMS2Client createClient() {
+		XKMS2Client xkms2Client = new XKMS2Client(this.xkmsUrl);
+		if (null != this.httpProxyHost) {
+			LOG.debug("use proxy: " + this.httpProxyHost + ":"
+					+ this.httpProxyPort);
+			xkms2Client.setProxy(this.httpProxyHost, this.httpProxyPort);
+		} else {
+			// disable previously set proxy
+			xkms2Client.setProxy(null, 0);
+		}
+		setTimeouts(xkms2Client, this.timeoutMillis);
+		return xkms2Client;
+	}
+
+	/**
+	 * Sets the connect and request timeouts on the JAX-WS port of the given
+	 * client, for the JAX-WS RI as well as for JBossWS-CXF. XKMS2Client does
+	 * not expose its port, so it is looked up among the client fields.
+	 * 
+	 * @return <code>true</code> if the port was found.
+	 */
+	public static boolean setTimeouts(XKMS2Client xkms2Client,
+			int timeoutMillis) {
+		for (Field field : XKMS2Client.class.getDeclaredFields()) {
+			if (Modifier.isStatic(field.getModifiers())) {
+				continue;
+			}
+			Object value;
+			try {
+				field.setAccessible(true);
+				value = field.get(xkms2Client);
+			} catch (Exception e) {
+				continue;
+			}
+			if (value instanceof BindingProvider) {
+				Map<String, Object> requestContext = ((BindingProvider) value)
+						.getRequestContext();
+				Integer timeout = timeoutMillis;
+				requestContext.put(CONNECT_TIMEOUT, timeout);
+				requestContext.put(REQUEST_TIMEOUT, timeout);
+				requestContext.put(JDK_CONNECT_TIMEOUT, timeout);
+				requestContext.put(JDK_REQUEST_TIMEOUT, timeout);
+				requestContext.put(CXF_CONNECT_TIMEOUT, timeout);
+				requestContext.put(CXF_RECEIVE_TIMEOUT, timeout);
+				return true;
+			}
+		}
+		LOG.warn("XKMS2 client port not found, no timeouts set");
+		return false;
+	}
+
+	private static boolean equals(String a, String b) {
+		return null == a ? null == b : a.equals(b);
+	}
+}
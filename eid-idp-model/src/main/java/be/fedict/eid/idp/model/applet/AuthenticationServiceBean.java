@@ -38,7 +38,10 @@ import be.fedict.eid.idp.entity.RPEntity;
 import be.fedict.eid.idp.model.ConfigProperty;
 import be.fedict.eid.idp.model.Configuration;
 import be.fedict.eid.idp.model.Constants;
-import be.fedict.trust.client.XKMS2Client;
+import be.fedict.eid.idp.model.TrustService;
+import be.fedict.eid.idp.model.TrustValidationCache;
+import be.fedict.eid.idp.model.exception.TrustServiceException;
+import be.fedict.eid.idp.model.exception.TrustServiceUnavailableException;
 import be.fedict.trust.client.exception.ValidationFailedException;
 import be.fedict.trust.xkms2.XKMSConstants;
 
@@ -59,6 +62,12 @@ public class AuthenticationServiceBean implements AuthenticationService {
 	@EJB
 	private Configuration configuration;
 
+	@EJB
+	private TrustValidationCache trustValidationCache;
+
+	@EJB
+	private TrustService trustService;
+
 	public void validateCertificateChain(List<X509Certificate> certificateChain)
 			throws SecurityException {
 		LOG.debug("validate certificate: "
@@ -88,29 +97,20 @@ public class AuthenticationServiceBean implements AuthenticationService {
 		}
 		LOG.debug("Trust domain=" + xkmsTrustDomain);
 
-		XKMS2Client xkms2Client = new XKMS2Client(xkmsUrl);
-
-		Boolean useHttpProxy = this.configuration.getValue(
-				ConfigProperty.HTTP_PROXY_ENABLED, Boolean.class);
-		if (null != useHttpProxy && useHttpProxy) {
-			String httpProxyHost = this.configuration.getValue(
-					ConfigProperty.HTTP_PROXY_HOST, String.class);
-			int httpProxyPort = this.configuration.getValue(
-					ConfigProperty.HTTP_PROXY_PORT, Integer.class);
-			LOG.debug("use proxy: " + httpProxyHost + ":" + httpProxyPort);
-			xkms2Client.setProxy(httpProxyHost, httpProxyPort);
-		} else {
-			// disable previously set proxy
-			xkms2Client.setProxy(null, 0);
+		if (this.trustValidationCache.isValid(xkmsTrustDomain,
+				certificateChain)) {
+			LOG.debug("certificate chain validation cached");
+			return;
+		}
+
+		Integer cacheTtl = this.configuration.getValue(
+				ConfigProperty.XKMS_AUTH_CACHE_TTL, Integer.class);
+		if (null == cacheTtl) {
+			cacheTtl = TrustValidationCache.DEFAULT_AUTH_TTL;
 		}
 
 		try {
-			LOG.debug("validating certificate chain");
-			if (null != xkmsTrustDomain) {
-				xkms2Client.validate(xkmsTrustDomain, certificateChain);
-			} else {
-				xkms2Client.validate(certificateChain);
-			}
+			this.trustService.validate(xkmsTrustDomain, certificateChain);
 		} catch (ValidationFailedException e) {
 			LOG.warn("invalid certificate: " + e.getMessage());
 
@@ -130,9 +130,15 @@ public class AuthenticationServiceBean implements AuthenticationService {
 				}
 			}
 			throw new SecurityException("invalid certificate");
-		} catch (Exception e) {
+		} catch (TrustServiceUnavailableException e) {
+			LOG.warn("eID Trust Service unavailable: " + e.getMessage());
+			throw new SecurityException("eID Trust Service unavailable");
+		} catch (TrustServiceException e) {
 			LOG.warn("eID Trust Service error: " + e.getMessage(), e);
 			throw new SecurityException("eID Trust Service error");
 		}
+
+		this.trustValidationCache.setValid(xkmsTrustDomain, certificateChain,
+				cacheTtl);
 	}
 }
@@ -0,0 +1,173 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010 FedICT.
+ * Copyright (C) 2014 e-Contract.be BVBA.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.model.bean;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import be.fedict.eid.idp.model.AccountingBuffer;
+import be.fedict.eid.idp.model.AccountingService;
+
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class AccountingBufferBean implements AccountingBuffer {
+
+	private static final Log LOG = LogFactory
+			.getLog(AccountingBufferBean.class);
+
+	/*
+	 * Marks a counter that the flusher is removing from the map. Adders that
+	 * run into a retired counter retry on a fresh one.
+	 */
+	private static final long RETIRED = Long.MIN_VALUE;
+
+	private final ConcurrentMap<String, AtomicLong> pendingRequests = new ConcurrentHashMap<String, AtomicLong>();
+
+	private final Object flushLock = new Object();
+
+	@EJB
+	private AccountingService accountingService;
+
+	@Override
+	public void addRequest(String domain) {
+		addRequests(domain, 1);
+	}
+
+	@Override
+	public Map<String, Long> getPendingRequests() {
+
+		Map<String, Long> requests = new HashMap<String, Long>();
+		for (Map.Entry<String, AtomicLong> entry : this.pendingRequests
+				.entrySet()) {
+			long count = entry.getValue().get();
+			if (count > 0) {
+				requests.put(entry.getKey(), count);
+			}
+		}
+		return requests;
+	}
+
+	@Override
+	@Schedule(second = "*/30", minute = "*", hour = "*", persistent = false)
+	public void flush() {
+
+		synchronized (this.flushLock) {
+			Map<String, Long> requests = drain();
+			if (requests.isEmpty()) {
+				return;
+			}
+			LOG.debug("flushing accounting for domains: " + requests.size());
+			try {
+				this.accountingService.addRequests(requests);
+			} catch (RuntimeException e) {
+				LOG.error("could not flush accounting: " + e.getMessage(), e);
+				// keep the requests for the next flush
+				for (Map.Entry<String, Long> entry : requests.entrySet()) {
+					addRequests(entry.getKey(), entry.getValue());
+				}
+			}
+		}
+	}
+
+	/*
+	 * Retires the counters the same way drain() does, so an adder that
+	 * already holds one of them moves its count to a fresh counter instead of
+	 * losing it.
+	 */
+	@Override
+	public void clear() {
+
+		synchronized (this.flushLock) {
+			for (Map.Entry<String, AtomicLong> entry : this.pendingRequests
+					.entrySet()) {
+				AtomicLong counter = entry.getValue();
+				counter.set(RETIRED);
+				this.pendingRequests.remove(entry.getKey(), counter);
+			}
+		}
+	}
+
+	@PreDestroy
+	public void preDestroy() {
+		LOG.debug("pre destroy");
+		flush();
+	}
+
+	private void addRequests(String domain, long requests) {
+
+		while (true) {
+			AtomicLong counter = this.pendingRequests.get(domain);
+			if (null == counter) {
+				counter = new AtomicLong();
+				AtomicLong existingCounter = this.pendingRequests.putIfAbsent(
+						domain, counter);
+				if (null != existingCounter) {
+					counter = existingCounter;
+				}
+			}
+			long count = counter.get();
+			if (RETIRED == count) {
+				this.pendingRequests.remove(domain, counter);
+				continue;
+			}
+			if (counter.compareAndSet(count, count + requests)) {
+				return;
+			}
+		}
+	}
+
+	/*
+	 * Takes all pending counts. Counters that stayed idle for a whole
+	 * interval are removed so the map does not keep growing.
+	 */
+	private Map<String, Long> drain() {
+
+		Map<String, Long> requests = new HashMap<String, Long>();
+		for (Map.Entry<String, AtomicLong> entry : this.pendingRequests
+				.entrySet()) {
+			AtomicLong counter = entry.getValue();
+			long count = counter.getAndSet(0);
+			if (count > 0) {
+				requests.put(entry.getKey(), count);
+			} else if (counter.compareAndSet(0, RETIRED)) {
+				this.pendingRequests.remove(entry.getKey(), counter);
+			}
+		}
+		return requests;
+	}
+}
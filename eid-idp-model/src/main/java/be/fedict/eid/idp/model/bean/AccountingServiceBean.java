@@ -21,9 +21,19 @@ package be.fedict.eid.idp.model.bean;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import javax.ejb.EJB;
 import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 
@@ -31,6 +41,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import be.fedict.eid.idp.entity.AccountingEntity;
+import be.fedict.eid.idp.model.AccountingBuffer;
 import be.fedict.eid.idp.model.AccountingService;
 
 @Stateless
@@ -38,17 +49,58 @@ public class AccountingServiceBean implements AccountingService {
 
 	private static Log LOG = LogFactory.getLog(AccountingServiceBean.class);
 
+	private static final int MAX_NORMALIZED_DOMAINS = 1024;
+
+	private static final ConcurrentMap<String, String> normalizedDomains = new ConcurrentHashMap<String, String>();
+
 	@PersistenceContext
 	private EntityManager entityManager;
 
+	@EJB
+	private AccountingBuffer accountingBuffer;
+
 	@Override
 	public List<AccountingEntity> listAll() {
 		LOG.debug("list all");
-		return AccountingEntity.listAll(this.entityManager);
+		List<AccountingEntity> persistedAccounting = AccountingEntity
+				.listAll(this.entityManager);
+		Map<String, Long> pendingRequests = this.accountingBuffer
+				.getPendingRequests();
+		if (pendingRequests.isEmpty()) {
+			return persistedAccounting;
+		}
+
+		/*
+		 * Merge into detached copies, the persisted entities must not pick up
+		 * the pending counts.
+		 */
+		Map<String, Long> requests = new HashMap<String, Long>(pendingRequests);
+		for (AccountingEntity accountingEntity : persistedAccounting) {
+			Long pending = requests.get(accountingEntity.getDomain());
+			long total = accountingEntity.getRequests()
+					+ (null == pending ? 0 : pending);
+			requests.put(accountingEntity.getDomain(), total);
+		}
+		List<AccountingEntity> accounting = new LinkedList<AccountingEntity>();
+		for (Map.Entry<String, Long> entry : requests.entrySet()) {
+			AccountingEntity accountingEntity = new AccountingEntity(
+					entry.getKey());
+			accountingEntity.setRequests(entry.getValue());
+			accounting.add(accountingEntity);
+		}
+		Collections.sort(accounting, new Comparator<AccountingEntity>() {
+
+			@Override
+			public int compare(AccountingEntity o1, AccountingEntity o2) {
+				return o2.getRequests().compareTo(o1.getRequests());
+			}
+		});
+		return accounting;
 	}
 
 	@Override
 	public void resetAll() {
+		this.accountingBuffer.clear();
 		LOG.debug("reset all: #deleted="
 				+ AccountingEntity.resetAll(this.entityManager));
 	}
@@ -63,17 +115,39 @@ public class AccountingServiceBean implements AccountingService {
 		domain = normalize(domain);
 		LOG.debug("normalized domain: " + domain);
 
-		AccountingEntity accountingEntity = this.entityManager.find(
-				AccountingEntity.class, domain);
-		if (null == accountingEntity) {
-			accountingEntity = new AccountingEntity(domain);
-			this.entityManager.persist(accountingEntity);
-		} else {
-			accountingEntity.setRequests(accountingEntity.getRequests() + 1);
+		this.accountingBuffer.addRequest(domain);
+	}
+
+	@Override
+	@TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+	public void addRequests(Map<String, Long> requests) {
+
+		for (Map.Entry<String, Long> entry : requests.entrySet()) {
+			String domain = entry.getKey();
+			long count = entry.getValue();
+			if (0 == AccountingEntity.addRequests(this.entityManager, domain,
+					count)) {
+				AccountingEntity accountingEntity = new AccountingEntity(domain);
+				accountingEntity.setRequests(count);
+				this.entityManager.persist(accountingEntity);
+			}
 		}
 	}
 
 	private String normalize(String domain) {
+		String normalizedDomain = normalizedDomains.get(domain);
+		if (null != normalizedDomain) {
+			return normalizedDomain;
+		}
+		normalizedDomain = normalizeUri(domain);
+		if (normalizedDomains.size() >= MAX_NORMALIZED_DOMAINS) {
+			normalizedDomains.clear();
+		}
+		normalizedDomains.put(domain, normalizedDomain);
+		return normalizedDomain;
+	}
+
+	private String normalizeUri(String domain) {
 		URI uri;
 		try {
 			uri = new URI(domain);
@@ -90,6 +164,13 @@ public class AccountingServiceBean implements AccountingService {
 	@Override
 	public long getNumberOfRequests() {
 		LOG.debug("get # of requests");
-		return AccountingEntity.getNumberOfRequests(this.entityManager);
+		Long persistedRequests = AccountingEntity
+				.getNumberOfRequests(this.entityManager);
+		long requests = null == persistedRequests ? 0 : persistedRequests;
+		for (Long pendingRequests : this.accountingBuffer.getPendingRequests()
+				.values()) {
+			requests += pendingRequests;
+		}
+		return requests;
 	}
 }
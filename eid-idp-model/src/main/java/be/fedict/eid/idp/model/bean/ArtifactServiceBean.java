@@ -0,0 +1,84 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.model.bean;
+
+import java.util.Date;
+
+import javax.ejb.Schedule;
+import javax.ejb.Stateless;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import be.fedict.eid.idp.entity.ArtifactEntity;
+import be.fedict.eid.idp.model.ArtifactService;
+import be.fedict.eid.idp.spi.ArtifactStoreEntry;
+
+@Stateless
+public class ArtifactServiceBean implements ArtifactService {
+
+	private static final Log LOG = LogFactory.getLog(ArtifactServiceBean.class);
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Override
+	public void put(String artifact, ArtifactStoreEntry entry) {
+
+		ArtifactEntity artifactEntity = new ArtifactEntity(artifact,
+				entry.getIssuerId(), entry.getRelyingPartyId(),
+				entry.getMessage(), new Date(entry.getExpirationTime()));
+		this.entityManager.persist(artifactEntity);
+	}
+
+	@Override
+	public ArtifactStoreEntry get(String artifact) {
+
+		ArtifactEntity artifactEntity = this.entityManager.find(
+				ArtifactEntity.class, artifact);
+		if (null == artifactEntity) {
+			return null;
+		}
+		ArtifactStoreEntry entry = new ArtifactStoreEntry(
+				artifactEntity.getIssuerId(),
+				artifactEntity.getRelyingPartyId(),
+				artifactEntity.getMessage(), artifactEntity.getExpiration()
+						.getTime());
+		if (entry.isExpired()) {
+			return null;
+		}
+		return entry;
+	}
+
+	@Override
+	public boolean remove(String artifact) {
+		return 1 == ArtifactEntity.remove(this.entityManager, artifact);
+	}
+
+	@Override
+	@Schedule(minute = "*", hour = "*", persistent = false)
+	public void removeExpired() {
+		int removed = ArtifactEntity.removeExpired(this.entityManager);
+		if (removed > 0) {
+			LOG.debug("expired artifacts removed: " + removed);
+		}
+	}
+}
@@ -22,9 +22,12 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
+import javax.annotation.Resource;
+import javax.ejb.EJB;
 import javax.ejb.Stateless;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import javax.transaction.TransactionSynchronizationRegistry;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -35,6 +38,8 @@ import be.fedict.eid.idp.entity.AttributeProtocolUriPK;
 import be.fedict.eid.idp.entity.RPAttributeEntity;
 import be.fedict.eid.idp.entity.RPEntity;
 import be.fedict.eid.idp.model.AttributeService;
+import be.fedict.eid.idp.model.AttributeUriTable;
+import be.fedict.eid.idp.model.RPRegistry;
 
 @Stateless
 public class AttributeServiceBean implements AttributeService {
@@ -45,6 +50,15 @@ public class AttributeServiceBean implements AttributeService {
 	@PersistenceContext
 	private EntityManager entityManager;
 
+	@EJB
+	private RPRegistry rpRegistry;
+
+	@EJB
+	private AttributeUriTable attributeUriTable;
+
+	@Resource
+	private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
 	@Override
 	public List<AttributeEntity> listAttributes() {
 		return AttributeEntity.listAttributes(this.entityManager);
@@ -65,6 +79,7 @@ public class AttributeServiceBean implements AttributeService {
 			LOG.debug("Add attribute : " + uri);
 			attribute = new AttributeEntity(name, description, uri);
 			this.entityManager.persist(attribute);
+			invalidateAttributeUriTable();
 		}
 		return attribute;
 	}
@@ -125,6 +140,7 @@ public class AttributeServiceBean implements AttributeService {
 		attachedRp.setAttributes(rpAttributes);
 
 		LOG.debug("attachedRP.attributes: " + attachedRp.getAttributes().size());
+		invalidateRegistry();
 
 		return attachedRp;
 	}
@@ -146,6 +162,7 @@ public class AttributeServiceBean implements AttributeService {
 			attributeProtocolUri = new AttributeProtocolUriEntity(protocolId,
 					attribute, protocolUri);
 			this.entityManager.persist(attributeProtocolUri);
+			invalidateAttributeUriTable();
 		}
 
 		return attributeProtocolUri;
@@ -157,19 +174,7 @@ public class AttributeServiceBean implements AttributeService {
 		LOG.debug("get attribute URI: protocol=" + protocolId + " attribute="
 				+ attributeUri);
 
-		AttributeEntity attribute = getAttribute(attributeUri);
-
-		AttributeProtocolUriEntity attributeProtocolUri = this.entityManager
-				.find(AttributeProtocolUriEntity.class,
-						new AttributeProtocolUriPK(protocolId, attribute));
-
-		if (null != attributeProtocolUri
-				&& null != attributeProtocolUri.getUri()
-				&& !attributeProtocolUri.getUri().isEmpty()) {
-			return attributeProtocolUri.getUri();
-		}
-
-		return attributeUri;
+		return this.attributeUriTable.getUri(protocolId, attributeUri);
 	}
 
 	@Override
@@ -178,13 +183,7 @@ public class AttributeServiceBean implements AttributeService {
 		LOG.debug("find attribute: protocol=" + protocolId + " uri="
 				+ attributeUri);
 
-		AttributeProtocolUriEntity attributeProtocolUri = AttributeProtocolUriEntity
-				.findAttribute(this.entityManager, attributeUri, protocolId);
-		if (null != attributeProtocolUri) {
-			return attributeProtocolUri.getAttribute();
-		}
-
-		return this.entityManager.find(AttributeEntity.class, attributeUri);
+		return this.attributeUriTable.findAttribute(protocolId, attributeUri);
 	}
 
 	@Override
@@ -204,6 +203,7 @@ public class AttributeServiceBean implements AttributeService {
 			}
 			attachedAttributeUri.setUri(attributeUri.getUri());
 		}
+		invalidateAttributeUriTable();
 	}
 
 	private AttributeEntity getAttribute(String uri) {
@@ -215,4 +215,18 @@ public class AttributeServiceBean implements AttributeService {
 		}
 		return attribute;
 	}
+
+	private void invalidateRegistry() {
+
+		CacheInvalidation.invalidateAfterCompletion(
+				this.transactionSynchronizationRegistry, RPRegistry.class,
+				this.rpRegistry);
+	}
+
+	private void invalidateAttributeUriTable() {
+
+		CacheInvalidation.invalidateAfterCompletion(
+				this.transactionSynchronizationRegistry,
+				AttributeUriTable.class, this.attributeUriTable);
+	}
 }
@@ -0,0 +1,194 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010-2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.model.bean;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import be.fedict.eid.idp.entity.AttributeEntity;
+import be.fedict.eid.idp.entity.AttributeProtocolUriEntity;
+import be.fedict.eid.idp.model.AttributeUriTable;
+
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+/*
+ * Loads run outside of the caller's transaction, so the table never contains
+ * changes that are not yet committed.
+ */
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class AttributeUriTableBean implements AttributeUriTable {
+
+	private static final Log LOG = LogFactory
+			.getLog(AttributeUriTableBean.class);
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	private final CacheHolder<Table> table = new CacheHolder<Table>() {
+
+		@Override
+		protected Table loadValue() {
+			return loadTable();
+		}
+	};
+
+	@PostConstruct
+	public void postConstruct() {
+		this.table.load();
+	}
+
+	@Override
+	public List<AttributeEntity> listAttributes() {
+		return getTable().attributeList;
+	}
+
+	@Override
+	public String getUri(String protocolId, String attributeUri) {
+
+		Table currentTable = getTable();
+		if (!currentTable.attributes.containsKey(attributeUri)) {
+			throw new RuntimeException("Attribute \"" + attributeUri
+					+ "\" not found!");
+		}
+		Map<String, String> protocolUris = currentTable.protocolUris
+				.get(protocolId);
+		if (null != protocolUris) {
+			String protocolUri = protocolUris.get(attributeUri);
+			if (null != protocolUri) {
+				return protocolUri;
+			}
+		}
+		return attributeUri;
+	}
+
+	@Override
+	public AttributeEntity findAttribute(String protocolId, String protocolUri) {
+
+		Table currentTable = getTable();
+		Map<String, AttributeEntity> protocolAttributes = currentTable.protocolAttributes
+				.get(protocolId);
+		if (null != protocolAttributes) {
+			AttributeEntity attribute = protocolAttributes.get(protocolUri);
+			if (null != attribute) {
+				return attribute;
+			}
+		}
+		return currentTable.attributes.get(protocolUri);
+	}
+
+	@Override
+	public void invalidate() {
+
+		LOG.debug("invalidate");
+		this.table.invalidate();
+	}
+
+	private Table getTable() {
+
+		return this.table.get();
+	}
+
+	private Table loadTable() {
+
+		Table loadedTable = new Table(
+				AttributeEntity.listAttributes(this.entityManager),
+				AttributeProtocolUriEntity.listAll(this.entityManager));
+		LOG.debug("loaded attributes: " + loadedTable.attributes.size());
+		return loadedTable;
+	}
+
+	/**
+	 * Immutable view on the attribute and attribute URI tables.
+	 */
+	private static class Table {
+
+		private final List<AttributeEntity> attributeList;
+
+		private final Map<String, AttributeEntity> attributes;
+
+		/*
+		 * protocol ID -> attribute URI -> protocol URI
+		 */
+		private final Map<String, Map<String, String>> protocolUris;
+
+		/*
+		 * protocol ID -> protocol URI -> attribute
+		 */
+		private final Map<String, Map<String, AttributeEntity>> protocolAttributes;
+
+		Table(List<AttributeEntity> attributeEntities,
+				List<AttributeProtocolUriEntity> attributeUriEntities) {
+
+			this.attributes = new LinkedHashMap<String, AttributeEntity>();
+			for (AttributeEntity attribute : attributeEntities) {
+				this.attributes.put(attribute.getUri(), attribute);
+			}
+			this.attributeList = Collections
+					.unmodifiableList(new LinkedList<AttributeEntity>(
+							this.attributes.values()));
+
+			this.protocolUris = new HashMap<String, Map<String, String>>();
+			this.protocolAttributes = new HashMap<String, Map<String, AttributeEntity>>();
+			for (AttributeProtocolUriEntity attributeUri : attributeUriEntities) {
+				String uri = attributeUri.getUri();
+				if (null == uri || uri.isEmpty()) {
+					continue;
+				}
+				String protocolId = attributeUri.getPk().getProtocolId();
+				AttributeEntity attribute = attributeUri.getAttribute();
+
+				Map<String, String> uris = this.protocolUris.get(protocolId);
+				if (null == uris) {
+					uris = new HashMap<String, String>();
+					this.protocolUris.put(protocolId, uris);
+				}
+				uris.put(attribute.getUri(), uri);
+
+				Map<String, AttributeEntity> protocolAttributeMap = this.protocolAttributes
+						.get(protocolId);
+				if (null == protocolAttributeMap) {
+					protocolAttributeMap = new HashMap<String, AttributeEntity>();
+					this.protocolAttributes.put(protocolId,
+							protocolAttributeMap);
+				}
+				if (!protocolAttributeMap.containsKey(uri)) {
+					protocolAttributeMap.put(uri, attribute);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010-2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.model.bean;
+
+/**
+ * Holds a value loaded from the database and shared by all callers.
+ * <p/>
+ * Every invalidation increments a generation counter. A load only gets
+ * installed if no invalidation happened while it was running, so a slow load
+ * never brings back data that was dropped in the meantime.
+ */
+abstract class CacheHolder<T> {
+
+	private final Object lock = new Object();
+
+	private long generation;
+
+	private volatile T value;
+
+	/**
+	 * @return the loaded value, or <code>null</code> if none is loaded.
+	 */
+	T peek() {
+		return this.value;
+	}
+
+	/**
+	 * @return the loaded value, loading it first if needed.
+	 */
+	T get() {
+		T currentValue = this.value;
+		if (null == currentValue) {
+			currentValue = load();
+		}
+		return currentValue;
+	}
+
+	T load() {
+
+		long loadGeneration;
+		synchronized (this.lock) {
+			loadGeneration = this.generation;
+		}
+
+		T loadedValue = loadValue();
+
+		synchronized (this.lock) {
+			if (loadGeneration == this.generation) {
+				this.value = loadedValue;
+			}
+		}
+		return loadedValue;
+	}
+
+	void invalidate() {
+
+		synchronized (this.lock) {
+			this.generation++;
+			this.value = null;
+		}
+	}
+
+	protected abstract T loadValue();
+}
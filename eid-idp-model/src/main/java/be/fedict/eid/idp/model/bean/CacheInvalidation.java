@@ -0,0 +1,81 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010-2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.model.bean;
+
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import be.fedict.eid.idp.model.InvalidatableCache;
+
+/**
+ * Drops a cache once the current transaction completes.
+ * <p/>
+ * Other transactions keep reading the committed data from the cache until
+ * then. The caches load outside of any transaction, so the reload after
+ * completion sees the committed changes.
+ */
+final class CacheInvalidation {
+
+	private CacheInvalidation() {
+		super();
+	}
+
+	/**
+	 * Registers the invalidation of the given cache, once per transaction.
+	 * 
+	 * @param cacheType
+	 *            the cache interface, also used as transaction resource key.
+	 */
+	static <T extends InvalidatableCache> void invalidateAfterCompletion(
+			TransactionSynchronizationRegistry transactionSynchronizationRegistry,
+			Class<T> cacheType, final T cache) {
+
+		if (isPending(transactionSynchronizationRegistry, cacheType)) {
+			return;
+		}
+		transactionSynchronizationRegistry.putResource(cacheType, Boolean.TRUE);
+		transactionSynchronizationRegistry
+				.registerInterposedSynchronization(new Synchronization() {
+
+					@Override
+					public void beforeCompletion() {
+					}
+
+					@Override
+					public void afterCompletion(int status) {
+						cache.invalidate();
+					}
+				});
+	}
+
+	/**
+	 * @return <code>true</code> if the current transaction changed the data
+	 *         behind the given cache.
+	 */
+	static boolean isPending(
+			TransactionSynchronizationRegistry transactionSynchronizationRegistry,
+			Class<? extends InvalidatableCache> cacheType) {
+
+		if (null == transactionSynchronizationRegistry.getTransactionKey()) {
+			return false;
+		}
+		return null != transactionSynchronizationRegistry
+				.getResource(cacheType);
+	}
+}
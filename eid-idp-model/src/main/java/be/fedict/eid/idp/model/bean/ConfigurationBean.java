@@ -21,14 +21,18 @@ package be.fedict.eid.idp.model.bean;
 import java.util.LinkedList;
 import java.util.List;
 
+import javax.annotation.Resource;
+import javax.ejb.EJB;
 import javax.ejb.Stateless;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import javax.transaction.TransactionSynchronizationRegistry;
 
 import be.fedict.eid.idp.entity.AppletConfigEntity;
 import be.fedict.eid.idp.entity.ConfigPropertyEntity;
 import be.fedict.eid.idp.model.ConfigProperty;
 import be.fedict.eid.idp.model.Configuration;
+import be.fedict.eid.idp.model.ConfigurationCache;
 
 @Stateless
 public class ConfigurationBean implements Configuration {
@@ -36,6 +40,12 @@ public class ConfigurationBean implements Configuration {
 	@PersistenceContext
 	private EntityManager entityManager;
 
+	@EJB
+	private ConfigurationCache configurationCache;
+
+	@Resource
+	private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
 	@Override
 	public AppletConfigEntity getAppletConfig() {
 
@@ -113,6 +123,7 @@ public class ConfigurationBean implements Configuration {
 		} else {
 			configPropertyEntity.setValue(propertyValue);
 		}
+		invalidateCache();
 	}
 
 	/**
@@ -134,6 +145,7 @@ public class ConfigurationBean implements Configuration {
 		if (null != configPropertyEntity) {
 			this.entityManager.remove(configPropertyEntity);
 		}
+		invalidateCache();
 	}
 
 	/**
@@ -156,33 +168,22 @@ public class ConfigurationBean implements Configuration {
 		}
 
 		String propertyName = getPropertyName(configProperty, index);
-
-		ConfigPropertyEntity configPropertyEntity = this.entityManager.find(
-				ConfigPropertyEntity.class, propertyName);
-		if (null == configPropertyEntity) {
-			return null;
-		}
-		String strValue = configPropertyEntity.getValue();
-		if (null == strValue) {
-			return null;
-		}
-		if (String.class == configProperty.getType()) {
-			return (T) strValue;
-		}
-		if (Boolean.class == configProperty.getType()) {
-			Boolean value = Boolean.parseBoolean(strValue);
-			return (T) value;
-		}
-		if (Integer.class == configProperty.getType()) {
-			Integer value = Integer.parseInt(strValue);
-			return (T) value;
-		}
-		if (configProperty.getType().isEnum()) {
-			Enum<?> e = (Enum<?>) configProperty.getType().getEnumConstants()[0];
-			return (T) Enum.valueOf(e.getClass(), strValue);
+		if (isModifiedInTransaction()) {
+			/*
+			 * Our own uncommitted changes are not in the cache, and must not
+			 * end up there either.
+			 */
+			ConfigPropertyEntity configPropertyEntity = this.entityManager
+					.find(ConfigPropertyEntity.class, propertyName);
+			if (null == configPropertyEntity
+					|| null == configPropertyEntity.getValue()) {
+				return null;
+			}
+			return (T) ConfigurationCacheBean.parse(configProperty,
+					configPropertyEntity.getValue());
 		}
-		throw new RuntimeException("unsupported type: "
-				+ configProperty.getType().getName());
+		return (T) this.configurationCache.getValue(configProperty,
+				propertyName);
 	}
 
 	/**
@@ -205,6 +206,20 @@ public class ConfigurationBean implements Configuration {
 		return indexes;
 	}
 
+	private void invalidateCache() {
+
+		CacheInvalidation.invalidateAfterCompletion(
+				this.transactionSynchronizationRegistry,
+				ConfigurationCache.class, this.configurationCache);
+	}
+
+	private boolean isModifiedInTransaction() {
+
+		return CacheInvalidation.isPending(
+				this.transactionSynchronizationRegistry,
+				ConfigurationCache.class);
+	}
+
 	private String getPropertyName(ConfigProperty configProperty, String index) {
 
 		String propertyName = configProperty.getName();
@@ -0,0 +1,170 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010-2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.model.bean;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import be.fedict.eid.idp.entity.ConfigPropertyEntity;
+import be.fedict.eid.idp.model.ConfigProperty;
+import be.fedict.eid.idp.model.ConfigurationCache;
+
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+/*
+ * Loads run outside of the caller's transaction, so a snapshot never contains
+ * changes that are not yet committed.
+ */
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class ConfigurationCacheBean implements ConfigurationCache {
+
+	private static final Log LOG = LogFactory
+			.getLog(ConfigurationCacheBean.class);
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final CacheHolder<Snapshot> snapshot = new CacheHolder<Snapshot>() {
+
+		@Override
+		protected Snapshot loadValue() {
+			return loadSnapshot();
+		}
+	};
+
+	@PostConstruct
+	public void postConstruct() {
+		this.snapshot.load();
+	}
+
+	@Override
+	public Object getValue(ConfigProperty configProperty, String propertyName) {
+
+		Snapshot currentSnapshot = this.snapshot.peek();
+		if (null == currentSnapshot) {
+			this.misses.incrementAndGet();
+			currentSnapshot = this.snapshot.load();
+		} else {
+			this.hits.incrementAndGet();
+		}
+		return currentSnapshot.getValue(configProperty, propertyName);
+	}
+
+	@Override
+	public void invalidate() {
+
+		LOG.debug("invalidate");
+		this.snapshot.invalidate();
+	}
+
+	@Override
+	public long getHits() {
+		return this.hits.get();
+	}
+
+	@Override
+	public long getMisses() {
+		return this.misses.get();
+	}
+
+	private Snapshot loadSnapshot() {
+
+		List<ConfigPropertyEntity> configProperties = ConfigPropertyEntity
+				.listAll(this.entityManager);
+		Map<String, String> values = new HashMap<String, String>();
+		for (ConfigPropertyEntity configProperty : configProperties) {
+			values.put(configProperty.getName(), configProperty.getValue());
+		}
+		LOG.debug("loaded configuration properties: " + values.size());
+		return new Snapshot(values);
+	}
+
+	/**
+	 * Immutable view on the configuration table. Typed values are parsed on
+	 * first access and memoized.
+	 */
+	private static class Snapshot {
+
+		private final Map<String, String> values;
+
+		private final ConcurrentMap<String, Object> typedValues;
+
+		Snapshot(Map<String, String> values) {
+			this.values = values;
+			this.typedValues = new ConcurrentHashMap<String, Object>();
+		}
+
+		Object getValue(ConfigProperty configProperty, String propertyName) {
+
+			Object typedValue = this.typedValues.get(propertyName);
+			if (null != typedValue) {
+				return typedValue;
+			}
+			String strValue = this.values.get(propertyName);
+			if (null == strValue) {
+				return null;
+			}
+			typedValue = parse(configProperty, strValue);
+			this.typedValues.put(propertyName, typedValue);
+			return typedValue;
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	static Object parse(ConfigProperty configProperty, String strValue) {
+
+		if (String.class == configProperty.getType()) {
+			return strValue;
+		}
+		if (Boolean.class == configProperty.getType()) {
+			return Boolean.parseBoolean(strValue);
+		}
+		if (Integer.class == configProperty.getType()) {
+			return Integer.parseInt(strValue);
+		}
+		if (configProperty.getType().isEnum()) {
+			return Enum.valueOf(
+					(Class<? extends Enum>) configProperty.getType(), strValue);
+		}
+		throw new RuntimeException("unsupported type: "
+				+ configProperty.getType().getName());
+	}
+}
@@ -32,7 +32,7 @@ import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
 
 import be.fedict.eid.idp.entity.AttributeEntity;
-import be.fedict.eid.idp.model.AttributeService;
+import be.fedict.eid.idp.model.AttributeUriTable;
 import be.fedict.eid.idp.model.ConfigProperty;
 import be.fedict.eid.idp.model.Configuration;
 import be.fedict.eid.idp.model.IdPIdentityConfig;
@@ -51,15 +51,28 @@ public class IdentityServiceBean implements IdentityService {
 	private Configuration configuration;
 
 	@EJB
-	private AttributeService attributeService;
+	private AttributeUriTable attributeUriTable;
 
 	/**
 	 * {@inheritDoc}
 	 */
 	public byte[] getHmacSecret() {
 
-		String secretValue = this.configuration.getValue(
-				ConfigProperty.HMAC_SECRET, String.class);
+		return getHexSecret(ConfigProperty.HMAC_SECRET);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public byte[] getOpenIDAssociationSecret() {
+
+		return getHexSecret(ConfigProperty.OPENID_ASSOCIATION_SECRET);
+	}
+
+	private byte[] getHexSecret(ConfigProperty configProperty) {
+
+		String secretValue = this.configuration.getValue(configProperty,
+				String.class);
 		if (null == secretValue || secretValue.trim().isEmpty()) {
 			return null;
 		}
@@ -186,11 +199,12 @@ public class IdentityServiceBean implements IdentityService {
 	public List<AttributeConfig> getAttributes(String protocolId) {
 
 		List<AttributeConfig> attributes = new LinkedList<AttributeConfig>();
-		for (AttributeEntity attribute : this.attributeService.listAttributes()) {
+		for (AttributeEntity attribute : this.attributeUriTable
+				.listAttributes()) {
 
 			attributes.add(new AttributeConfig(attribute.getName(), attribute
-					.getDescription(), this.attributeService.getUri(protocolId,
-					attribute.getUri())));
+					.getDescription(), this.attributeUriTable.getUri(
+					protocolId, attribute.getUri())));
 		}
 		return attributes;
 	}
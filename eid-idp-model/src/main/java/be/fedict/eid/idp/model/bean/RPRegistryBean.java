@@ -0,0 +1,116 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010-2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.model.bean;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import be.fedict.eid.idp.entity.RPEntity;
+import be.fedict.eid.idp.model.ConfigProperty;
+import be.fedict.eid.idp.model.Configuration;
+import be.fedict.eid.idp.model.RPRegistry;
+import be.fedict.eid.idp.model.RPRegistryEntry;
+
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+/*
+ * Loads run outside of the caller's transaction, so the registry never
+ * contains changes that are not yet committed.
+ */
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class RPRegistryBean implements RPRegistry {
+
+	private static final Log LOG = LogFactory.getLog(RPRegistryBean.class);
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@EJB
+	private Configuration configuration;
+
+	private final CacheHolder<Map<String, RPRegistryEntry>> registry = new CacheHolder<Map<String, RPRegistryEntry>>() {
+
+		@Override
+		protected Map<String, RPRegistryEntry> loadValue() {
+			return loadRegistry();
+		}
+	};
+
+	@PostConstruct
+	public void postConstruct() {
+		this.registry.load();
+	}
+
+	@Override
+	public RPRegistryEntry find(String domain) {
+
+		if (null == domain) {
+			return null;
+		}
+		return this.registry.get().get(RPRegistryEntry.normalizeDomain(domain));
+	}
+
+	@Override
+	public void invalidate() {
+
+		LOG.debug("invalidate");
+		this.registry.invalidate();
+	}
+
+	private Map<String, RPRegistryEntry> loadRegistry() {
+
+		List<RPEntity> rps = RPEntity.listRPs(this.entityManager);
+		Map<String, RPRegistryEntry> loadedRegistry = new HashMap<String, RPRegistryEntry>();
+		for (RPEntity rp : rps) {
+			if (null == rp.getDomain()) {
+				continue;
+			}
+			String domain = RPRegistryEntry.normalizeDomain(rp.getDomain());
+			if (loadedRegistry.containsKey(domain)) {
+				LOG.warn("duplicate RP domain: " + domain);
+				continue;
+			}
+			String idx = rp.getId().toString();
+			Boolean blocked = this.configuration.getValue(
+					ConfigProperty.BLOCKED, idx, Boolean.class);
+			String blockedMessage = this.configuration.getValue(
+					ConfigProperty.BLOCKED_MESSAGE, idx, String.class);
+			loadedRegistry.put(domain, new RPRegistryEntry(rp, blocked,
+					blockedMessage));
+		}
+		LOG.debug("loaded RPs: " + loadedRegistry.size());
+		return loadedRegistry;
+	}
+}
@@ -20,16 +20,19 @@ package be.fedict.eid.idp.model.bean;
 
 import java.util.List;
 
+import javax.annotation.Resource;
 import javax.ejb.EJB;
 import javax.ejb.Stateless;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import javax.transaction.TransactionSynchronizationRegistry;
 
 import be.fedict.eid.idp.entity.RPAttributeEntity;
 import be.fedict.eid.idp.entity.RPEntity;
 import be.fedict.eid.idp.entity.SecretKeyAlgorithm;
 import be.fedict.eid.idp.model.ConfigProperty;
 import be.fedict.eid.idp.model.Configuration;
+import be.fedict.eid.idp.model.RPRegistry;
 import be.fedict.eid.idp.model.RPService;
 
 @Stateless
@@ -41,6 +44,12 @@ public class RPServiceBean implements RPService {
 	@EJB
 	private Configuration configuration;
 
+	@EJB
+	private RPRegistry rpRegistry;
+
+	@Resource
+	private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
 	@Override
 	public List<RPEntity> listRPs() {
 		return RPEntity.listRPs(this.entityManager);
@@ -57,6 +66,7 @@ public class RPServiceBean implements RPService {
 		this.configuration.removeValue(ConfigProperty.REMOVE_CARD, index);
 		this.configuration.removeValue(ConfigProperty.BLOCKED, index);
 		this.configuration.removeValue(ConfigProperty.BLOCKED_MESSAGE);
+		invalidateRegistry();
 	}
 
 	@Override
@@ -186,6 +196,14 @@ public class RPServiceBean implements RPService {
 		this.configuration.setValue(ConfigProperty.BLOCKED, idx, blocked);
 		this.configuration.setValue(ConfigProperty.BLOCKED_MESSAGE, idx,
 				blockedMessage);
+		invalidateRegistry();
+	}
+
+	private void invalidateRegistry() {
+
+		CacheInvalidation.invalidateAfterCompletion(
+				this.transactionSynchronizationRegistry, RPRegistry.class,
+				this.rpRegistry);
 	}
 
 	@Override
@@ -19,57 +19,177 @@
 package be.fedict.eid.idp.model.bean;
 
 import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
-import javax.annotation.PostConstruct;
 import javax.ejb.ConcurrencyManagement;
 import javax.ejb.ConcurrencyManagementType;
-import javax.ejb.Lock;
-import javax.ejb.LockType;
 import javax.ejb.Singleton;
 
+import be.fedict.eid.idp.model.LatencyStatistic;
+import be.fedict.eid.idp.model.RPRegistryEntry;
 import be.fedict.eid.idp.model.Statistics;
+import be.fedict.eid.idp.model.StatisticsStage;
 
 @Singleton
-@ConcurrencyManagement(ConcurrencyManagementType.CONTAINER)
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
 public class StatisticsBean implements Statistics {
 
-	private Map<String, Long> authenticationsPerProtocol;
-
-	private long totalAuthenticationCount;
-
-	@PostConstruct
-	public void postConstruct() {
-		this.authenticationsPerProtocol = new HashMap<String, Long>();
-		this.totalAuthenticationCount = 0;
-	}
+	/*
+	 * Replaced as a whole on reset, so recording never has to wait for a
+	 * reset or a snapshot.
+	 */
+	private volatile Counters counters = new Counters();
 
 	@Override
-	@Lock(LockType.WRITE)
 	public void countAuthentication(String protocolIdentifier) {
-		this.totalAuthenticationCount++;
-		Long authenticationCount = this.authenticationsPerProtocol
+		Counters currentCounters = this.counters;
+		currentCounters.totalAuthenticationCount.increment();
+		StripedCounter authenticationCount = currentCounters.authenticationsPerProtocol
 				.get(protocolIdentifier);
 		if (null == authenticationCount) {
-			this.authenticationsPerProtocol.put(protocolIdentifier,
-					Long.valueOf(1));
-		} else {
-			this.authenticationsPerProtocol.put(protocolIdentifier,
-					authenticationCount + 1);
+			authenticationCount = new StripedCounter();
+			StripedCounter existingCount = currentCounters.authenticationsPerProtocol
+					.putIfAbsent(protocolIdentifier, authenticationCount);
+			if (null != existingCount) {
+				authenticationCount = existingCount;
+			}
 		}
+		authenticationCount.increment();
 	}
 
 	@Override
-	@Lock(LockType.WRITE)
 	public Map<String, Long> getProtocolStatistics() {
 		Map<String, Long> copy = new HashMap<String, Long>();
-		copy.putAll(this.authenticationsPerProtocol);
+		for (Map.Entry<String, StripedCounter> entry : this.counters.authenticationsPerProtocol
+				.entrySet()) {
+			copy.put(entry.getKey(), entry.getValue().sum());
+		}
 		return copy;
 	}
 
 	@Override
-	@Lock(LockType.READ)
 	public long getTotalAuthenticationCount() {
-		return this.totalAuthenticationCount;
+		return this.counters.totalAuthenticationCount.sum();
+	}
+
+	@Override
+	public void recordLatency(StatisticsStage stage,
+			String protocolIdentifier, String domain, long millis) {
+		// the entry and exit servlets see different spellings of the domain
+		String rpDomain = RPRegistryEntry.normalizeDomain(domain);
+		Counters currentCounters = this.counters;
+		String key = stage.name() + ' ' + protocolIdentifier + ' ' + rpDomain;
+		LatencyHistogram histogram = currentCounters.latencies.get(key);
+		if (null == histogram) {
+			histogram = new LatencyHistogram(stage, protocolIdentifier,
+					rpDomain);
+			LatencyHistogram existingHistogram = currentCounters.latencies
+					.putIfAbsent(key, histogram);
+			if (null != existingHistogram) {
+				histogram = existingHistogram;
+			}
+		}
+		histogram.record(millis);
+	}
+
+	@Override
+	public List<LatencyStatistic> getLatencyStatistics() {
+		List<LatencyStatistic> latencyStatistics = new LinkedList<LatencyStatistic>();
+		for (LatencyHistogram histogram : this.counters.latencies.values()) {
+			latencyStatistics.add(histogram.snapshot());
+		}
+		return latencyStatistics;
+	}
+
+	@Override
+	public void reset() {
+		this.counters = new Counters();
+	}
+
+	private static class Counters {
+
+		private final StripedCounter totalAuthenticationCount = new StripedCounter();
+
+		private final ConcurrentMap<String, StripedCounter> authenticationsPerProtocol = new ConcurrentHashMap<String, StripedCounter>();
+
+		private final ConcurrentMap<String, LatencyHistogram> latencies = new ConcurrentHashMap<String, LatencyHistogram>();
+	}
+
+	/**
+	 * Counter spread over a number of cells so that concurrent threads mostly
+	 * increment different cache lines.
+	 */
+	private static class StripedCounter {
+
+		private static final int STRIPES = 16;
+
+		/*
+		 * Only every 8th cell is used, keeping the stripes a cache line apart.
+		 */
+		private static final int PADDING = 8;
+
+		private final AtomicLongArray cells = new AtomicLongArray(STRIPES
+				* PADDING);
+
+		void increment() {
+			int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+			this.cells.incrementAndGet(stripe * PADDING);
+		}
+
+		long sum() {
+			long sum = 0;
+			for (int stripe = 0; stripe < STRIPES; stripe++) {
+				sum += this.cells.get(stripe * PADDING);
+			}
+			return sum;
+		}
+	}
+
+	private static class LatencyHistogram {
+
+		private final StatisticsStage stage;
+
+		private final String protocolIdentifier;
+
+		private final String rpDomain;
+
+		private final AtomicLongArray buckets = new AtomicLongArray(
+				LatencyStatistic.BUCKET_BOUNDS.length + 1);
+
+		private final AtomicLong totalMillis = new AtomicLong();
+
+		private final AtomicLong maxMillis = new AtomicLong();
+
+		LatencyHistogram(StatisticsStage stage, String protocolIdentifier,
+				String rpDomain) {
+			this.stage = stage;
+			this.protocolIdentifier = protocolIdentifier;
+			this.rpDomain = rpDomain;
+		}
+
+		void record(long millis) {
+			this.buckets.incrementAndGet(LatencyStatistic.getBucket(millis));
+			this.totalMillis.addAndGet(millis);
+			long max = this.maxMillis.get();
+			while (millis > max && !this.maxMillis.compareAndSet(max, millis)) {
+				max = this.maxMillis.get();
+			}
+		}
+
+		LatencyStatistic snapshot() {
+			long[] bucketCounts = new long[this.buckets.length()];
+			for (int idx = 0; idx < bucketCounts.length; idx++) {
+				bucketCounts[idx] = this.buckets.get(idx);
+			}
+			return new LatencyStatistic(this.stage, this.protocolIdentifier,
+					this.rpDomain, bucketCounts, this.totalMillis.get(),
+					this.maxMillis.get());
+		}
 	}
 }
@@ -0,0 +1,202 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010-2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.model.bean;
+
+import java.security.cert.X509Certificate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import be.fedict.eid.idp.model.CircuitBreaker;
+import be.fedict.eid.idp.model.ConfigProperty;
+import be.fedict.eid.idp.model.Configuration;
+import be.fedict.eid.idp.model.TrustService;
+import be.fedict.eid.idp.model.XKMS2ClientPool;
+import be.fedict.eid.idp.model.exception.TrustServiceException;
+import be.fedict.eid.idp.model.exception.TrustServiceUnavailableException;
+import be.fedict.trust.client.XKMS2Client;
+import be.fedict.trust.client.exception.ValidationFailedException;
+
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class TrustServiceBean implements TrustService {
+
+	private static final Log LOG = LogFactory.getLog(TrustServiceBean.class);
+
+	@EJB
+	private Configuration configuration;
+
+	private final CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+	private final AtomicInteger activeCalls = new AtomicInteger();
+
+	private final AtomicLong rejectedCalls = new AtomicLong();
+
+	private volatile XKMS2ClientPool clientPool;
+
+	@Override
+	public void validate(String trustDomain,
+			List<X509Certificate> certificateChain)
+			throws ValidationFailedException, TrustServiceException {
+
+		int timeout = getTimeout();
+		int failureThreshold = getValue(
+				ConfigProperty.XKMS_FAILURE_THRESHOLD,
+				DEFAULT_FAILURE_THRESHOLD);
+		XKMS2ClientPool clientPool = getClientPool(timeout * 1000);
+
+		int maxConcurrent = getValue(ConfigProperty.XKMS_MAX_CONCURRENT,
+				DEFAULT_MAX_CONCURRENT);
+		if (this.activeCalls.incrementAndGet() > maxConcurrent) {
+			this.activeCalls.decrementAndGet();
+			this.rejectedCalls.incrementAndGet();
+			LOG.warn("more than " + maxConcurrent
+					+ " eID Trust Service calls in progress");
+			throw new TrustServiceUnavailableException(
+					"too many concurrent calls");
+		}
+		if (!this.circuitBreaker.allowRequest(getValue(
+				ConfigProperty.XKMS_OPEN_TIME, DEFAULT_OPEN_TIME))) {
+			this.activeCalls.decrementAndGet();
+			this.rejectedCalls.incrementAndGet();
+			LOG.debug("eID Trust Service circuit open");
+			throw new TrustServiceUnavailableException("circuit open");
+		}
+
+		long t0 = System.currentTimeMillis();
+		boolean answered = false;
+		XKMS2Client xkms2Client = null;
+		try {
+			xkms2Client = clientPool.borrow();
+			validate(xkms2Client, trustDomain, certificateChain);
+			answered = true;
+		} catch (ValidationFailedException e) {
+			answered = true;
+			throw e;
+		} finally {
+			long duration = System.currentTimeMillis() - t0;
+			this.activeCalls.decrementAndGet();
+			if (answered) {
+				// a client that failed mid-call is not reused
+				clientPool.release(xkms2Client);
+			}
+			if (answered && duration <= timeout * 1000L) {
+				this.circuitBreaker.recordSuccess();
+			} else {
+				LOG.warn("eID Trust Service call failed after " + duration
+						+ " ms");
+				this.circuitBreaker.recordFailure(failureThreshold);
+			}
+		}
+	}
+
+	@Override
+	public int getTimeout() {
+
+		return getValue(ConfigProperty.XKMS_TIMEOUT, DEFAULT_TIMEOUT);
+	}
+
+	@Override
+	public CircuitBreaker getCircuitBreaker() {
+
+		return this.circuitBreaker;
+	}
+
+	@Override
+	public int getActiveCalls() {
+
+		return this.activeCalls.get();
+	}
+
+	@Override
+	public long getRejectedCalls() {
+
+		return this.rejectedCalls.get();
+	}
+
+	private int getValue(ConfigProperty configProperty, int defaultValue) {
+
+		Integer value = this.configuration.getValue(configProperty,
+				Integer.class);
+		if (null == value || value <= 0) {
+			return defaultValue;
+		}
+		return value;
+	}
+
+	private XKMS2ClientPool getClientPool(int timeoutMillis) {
+
+		String xkmsUrl = this.configuration.getValue(ConfigProperty.XKMS_URL,
+				String.class);
+		String httpProxyHost = null;
+		int httpProxyPort = 0;
+		Boolean useHttpProxy = this.configuration.getValue(
+				ConfigProperty.HTTP_PROXY_ENABLED, Boolean.class);
+		if (null != useHttpProxy && useHttpProxy) {
+			httpProxyHost = this.configuration.getValue(
+					ConfigProperty.HTTP_PROXY_HOST, String.class);
+			httpProxyPort = this.configuration.getValue(
+					ConfigProperty.HTTP_PROXY_PORT, Integer.class);
+		}
+
+		XKMS2ClientPool clientPool = this.clientPool;
+		if (null == clientPool
+				|| !clientPool.matches(xkmsUrl, httpProxyHost, httpProxyPort,
+						timeoutMillis)) {
+			LOG.debug("new XKMS2 client pool for " + xkmsUrl);
+			clientPool = createClientPool(xkmsUrl, httpProxyHost,
+					httpProxyPort, timeoutMillis);
+			this.clientPool = clientPool;
+		}
+		return clientPool;
+	}
+
+	protected XKMS2ClientPool createClientPool(String xkmsUrl,
+			String httpProxyHost, int httpProxyPort, int timeoutMillis) {
+
+		return new XKMS2ClientPool(xkmsUrl, httpProxyHost, httpProxyPort,
+				timeoutMillis);
+	}
+
+	private static void validate(XKMS2Client xkms2Client, String trustDomain,
+			List<X509Certificate> certificateChain)
+			throws ValidationFailedException, TrustServiceException {
+
+		try {
+			LOG.debug("validating certificate chain");
+			if (null != trustDomain) {
+				xkms2Client.validate(trustDomain, certificateChain);
+			} else {
+				xkms2Client.validate(certificateChain);
+			}
+		} catch (ValidationFailedException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new TrustServiceException(e);
+		}
+	}
+}
@@ -0,0 +1,145 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010-2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.model.bean;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import be.fedict.eid.idp.model.ConfigProperty;
+import be.fedict.eid.idp.model.Configuration;
+import be.fedict.eid.idp.model.TrustValidationCache;
+
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class TrustValidationCacheBean implements TrustValidationCache {
+
+	private static final Log LOG = LogFactory
+			.getLog(TrustValidationCacheBean.class);
+
+	@EJB
+	private Configuration configuration;
+
+	/*
+	 * Cache key -> expiry time in milliseconds. Access ordered so the least
+	 * recently used entry gets evicted first.
+	 */
+	private final LinkedHashMap<String, Long> validations = new LinkedHashMap<String, Long>(
+			16, 0.75f, true);
+
+	@Override
+	public boolean isValid(String trustDomain,
+			List<X509Certificate> certificateChain) {
+
+		String key = getKey(trustDomain, certificateChain);
+		if (null == key) {
+			return false;
+		}
+		synchronized (this.validations) {
+			Long expiry = this.validations.get(key);
+			if (null == expiry) {
+				return false;
+			}
+			if (expiry < System.currentTimeMillis()) {
+				this.validations.remove(key);
+				return false;
+			}
+		}
+		LOG.debug("cached validation for trust domain: " + trustDomain);
+		return true;
+	}
+
+	@Override
+	public void setValid(String trustDomain,
+			List<X509Certificate> certificateChain, int ttl) {
+
+		if (ttl <= 0) {
+			return;
+		}
+		String key = getKey(trustDomain, certificateChain);
+		if (null == key) {
+			return;
+		}
+		int size = getSize();
+		long expiry = System.currentTimeMillis() + ttl * 1000L;
+		synchronized (this.validations) {
+			this.validations.put(key, expiry);
+			while (this.validations.size() > size) {
+				this.validations.remove(this.validations.keySet().iterator()
+						.next());
+			}
+		}
+	}
+
+	@Override
+	public void clear() {
+
+		LOG.debug("clear");
+		synchronized (this.validations) {
+			this.validations.clear();
+		}
+	}
+
+	private int getSize() {
+
+		Integer size = this.configuration.getValue(
+				ConfigProperty.XKMS_CACHE_SIZE, Integer.class);
+		if (null == size) {
+			return DEFAULT_SIZE;
+		}
+		return size;
+	}
+
+	private static String getKey(String trustDomain,
+			List<X509Certificate> certificateChain) {
+
+		MessageDigest messageDigest;
+		try {
+			messageDigest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("SHA-1 not available", e);
+		}
+		try {
+			for (X509Certificate certificate : certificateChain) {
+				messageDigest.update(certificate.getEncoded());
+			}
+		} catch (CertificateEncodingException e) {
+			LOG.warn("certificate encoding error: " + e.getMessage());
+			return null;
+		}
+		String fingerprint = new String(Hex.encodeHex(messageDigest.digest()));
+		if (null == trustDomain) {
+			return fingerprint;
+		}
+		return fingerprint + ' ' + trustDomain;
+	}
+}
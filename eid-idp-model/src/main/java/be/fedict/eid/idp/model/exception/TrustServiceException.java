@@ -0,0 +1,47 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010-2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.model.exception;
+
+import javax.ejb.ApplicationException;
+
+/**
+ * Thrown when the eID Trust Service could not be consulted, as opposed to a
+ * certificate chain that failed validation.
+ */
+@ApplicationException(rollback = true)
+public class TrustServiceException extends Exception {
+
+	private static final long serialVersionUID = 1L;
+
+	public TrustServiceException(String message) {
+
+		super(message);
+	}
+
+	public TrustServiceException(Throwable cause) {
+
+		super(cause);
+	}
+
+	public TrustServiceException(String message, Throwable cause) {
+
+		super(message, cause);
+	}
+
+}
@@ -0,0 +1,130 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2014 e-Contract.be BVBA.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package test.unit.be.fedict.eid.idp.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import be.fedict.eid.idp.model.CircuitBreaker;
+
+public class CircuitBreakerTest {
+
+	private long now;
+
+	private CircuitBreaker testedInstance;
+
+	@Before
+	public void setUp() {
+		this.now = 1000000;
+		this.testedInstance = new CircuitBreaker() {
+
+			@Override
+			protected long currentTimeMillis() {
+				return CircuitBreakerTest.this.now;
+			}
+		};
+	}
+
+	@Test
+	public void testOpensAfterConsecutiveFailures() {
+		// operate
+		assertTrue(this.testedInstance.allowRequest(30));
+		this.testedInstance.recordFailure(3);
+		this.testedInstance.recordFailure(3);
+		this.testedInstance.recordSuccess();
+		this.testedInstance.recordFailure(3);
+		this.testedInstance.recordFailure(3);
+		assertTrue(this.testedInstance.allowRequest(30));
+		this.testedInstance.recordFailure(3);
+
+		// verify
+		assertEquals(CircuitBreaker.State.OPEN, this.testedInstance.getState());
+		assertFalse(this.testedInstance.allowRequest(30));
+		assertEquals(5, this.testedInstance.getFailureCount());
+		assertEquals(1, this.testedInstance.getOpenCount());
+	}
+
+	@Test
+	public void testHalfOpenSingleProbe() {
+		// setup
+		this.testedInstance.recordFailure(1);
+
+		// operate & verify
+		this.now += 29 * 1000;
+		assertFalse(this.testedInstance.allowRequest(30));
+		this.now += 1000;
+		assertTrue(this.testedInstance.allowRequest(30));
+		assertEquals(CircuitBreaker.State.HALF_OPEN,
+				this.testedInstance.getState());
+		assertFalse(this.testedInstance.allowRequest(30));
+
+		this.testedInstance.recordSuccess();
+		assertEquals(CircuitBreaker.State.CLOSED,
+				this.testedInstance.getState());
+		assertTrue(this.testedInstance.allowRequest(30));
+	}
+
+	@Test
+	public void testFailedProbeReopens() {
+		// setup
+		this.testedInstance.recordFailure(1);
+		this.now += 30 * 1000;
+		assertTrue(this.testedInstance.allowRequest(30));
+
+		// operate
+		this.testedInstance.recordFailure(5);
+
+		// verify
+		assertEquals(CircuitBreaker.State.OPEN, this.testedInstance.getState());
+		assertFalse(this.testedInstance.allowRequest(30));
+		assertEquals(2, this.testedInstance.getOpenCount());
+	}
+
+	@Test
+	public void testLostProbeReplaced() {
+		// setup
+		this.testedInstance.recordFailure(1);
+		this.now += 30 * 1000;
+		assertTrue(this.testedInstance.allowRequest(30));
+
+		// operate & verify
+		this.now += 29 * 1000;
+		assertFalse(this.testedInstance.allowRequest(30));
+		this.now += 1000;
+		assertTrue(this.testedInstance.allowRequest(30));
+	}
+
+	@Test
+	public void testReset() {
+		// setup
+		this.testedInstance.recordFailure(1);
+
+		// operate
+		this.testedInstance.reset();
+
+		// verify
+		assertEquals(CircuitBreaker.State.CLOSED,
+				this.testedInstance.getState());
+		assertTrue(this.testedInstance.allowRequest(30));
+	}
+}
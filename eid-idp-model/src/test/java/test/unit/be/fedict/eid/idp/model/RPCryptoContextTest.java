@@ -0,0 +1,83 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2014 e-Contract.be BVBA.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package test.unit.be.fedict.eid.idp.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.binary.Hex;
+import org.junit.Test;
+
+import be.fedict.eid.idp.entity.RPEntity;
+import be.fedict.eid.idp.entity.SecretKeyAlgorithm;
+import be.fedict.eid.idp.model.RPCryptoContext;
+
+public class RPCryptoContextTest {
+
+	@Test
+	public void testUniqueId() throws Exception {
+		// setup
+		RPEntity rp = new RPEntity();
+		rp.setIdentifierSecretKey("0123456789abcdef0123456789abcdef");
+		rp.setAttributeSecretAlgorithm(SecretKeyAlgorithm.AES_128);
+		rp.setAttributeSecretKey("00112233445566778899aabbccddeeff");
+
+		Mac mac = Mac.getInstance("HmacSHA1");
+		mac.init(new SecretKeySpec(Hex
+				.decodeHex("0123456789abcdef0123456789abcdef".toCharArray()),
+				"HmacSHA1"));
+		String expectedUniqueId = new String(Hex.encodeHex(mac
+				.doFinal("12345678901".getBytes()))).toUpperCase();
+
+		// operate
+		RPCryptoContext testedInstance = new RPCryptoContext(rp);
+
+		// verify
+		assertTrue(testedInstance.hasIdentifierSecret());
+		assertEquals(expectedUniqueId,
+				testedInstance.getUniqueId("12345678901"));
+		// the thread's Mac got reset by the previous call
+		assertEquals(expectedUniqueId,
+				testedInstance.getUniqueId("12345678901"));
+		assertEquals("AES", testedInstance.getAttributeSecretKey()
+				.getAlgorithm());
+		assertNull(testedInstance.getAttributePublicKey());
+	}
+
+	@Test
+	public void testNoIdentifierSecret() throws Exception {
+		// setup
+		RPEntity rp = new RPEntity();
+		rp.setAttributeSecretAlgorithm(SecretKeyAlgorithm.NONE);
+
+		// operate
+		RPCryptoContext testedInstance = new RPCryptoContext(rp);
+
+		// verify
+		assertFalse(testedInstance.hasIdentifierSecret());
+		assertNull(testedInstance.getAttributeSecretKey());
+		assertTrue(new RPCryptoContext(new byte[] { 1, 2 })
+				.hasIdentifierSecret(new byte[] { 1, 2 }));
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010-2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package test.unit.be.fedict.eid.idp.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import be.fedict.eid.idp.model.XKMS2ClientPool;
+import be.fedict.trust.client.XKMS2Client;
+
+public class XKMS2ClientPoolTest {
+
+	private static final String XKMS_URL = "http://localhost/eid-trust-service-ws/xkms2";
+
+	private static final int TIMEOUT = 30 * 1000;
+
+	private int createCount;
+
+	private XKMS2ClientPool testedInstance;
+
+	@Before
+	public void setUp() {
+		this.createCount = 0;
+		this.testedInstance = new XKMS2ClientPool(XKMS_URL, null, 0, TIMEOUT) {
+
+			@Override
+			protected XKMS2Client createClient() {
+				XKMS2ClientPoolTest.this.createCount++;
+				return super.createClient();
+			}
+		};
+	}
+
+	@Test
+	public void testBorrowRelease() {
+		// operate
+		XKMS2Client client = this.testedInstance.borrow();
+		this.testedInstance.release(client);
+		XKMS2Client result = this.testedInstance.borrow();
+
+		// verify
+		assertSame(client, result);
+		assertEquals(1, this.createCount);
+		assertEquals(0, this.testedInstance.getIdleCount());
+	}
+
+	@Test
+	public void testConcurrentBorrowsGetOwnClient() {
+		// operate
+		XKMS2Client client1 = this.testedInstance.borrow();
+		XKMS2Client client2 = this.testedInstance.borrow();
+		this.testedInstance.release(client1);
+		this.testedInstance.release(client2);
+
+		// verify
+		assertNotSame(client1, client2);
+		assertEquals(2, this.createCount);
+		assertEquals(2, this.testedInstance.getIdleCount());
+	}
+
+	@Test
+	public void testClientNotReleasedIsNotReused() {
+		// operate: the first client failed and is dropped by the caller
+		XKMS2Client failedClient = this.testedInstance.borrow();
+		XKMS2Client result = this.testedInstance.borrow();
+
+		// verify
+		assertNotSame(failedClient, result);
+		assertEquals(2, this.createCount);
+	}
+
+	@Test
+	public void testMatches() {
+		// operate & verify
+		assertTrue(this.testedInstance.matches(XKMS_URL, null, 0, TIMEOUT));
+		assertFalse(this.testedInstance.matches(
+				"http://other/eid-trust-service-ws/xkms2", null, 0, TIMEOUT));
+		assertFalse(this.testedInstance.matches(XKMS_URL, "proxy", 8080,
+				TIMEOUT));
+		assertFalse(this.testedInstance.matches(XKMS_URL, null, 0, 1000));
+
+		XKMS2ClientPool proxyPool = new XKMS2ClientPool(XKMS_URL, "proxy",
+				8080, TIMEOUT);
+		assertTrue(proxyPool.matches(XKMS_URL, "proxy", 8080, TIMEOUT));
+		assertFalse(proxyPool.matches(XKMS_URL, "proxy", 3128, TIMEOUT));
+		assertFalse(proxyPool.matches(XKMS_URL, null, 0, TIMEOUT));
+	}
+
+	@Test
+	public void testTimeoutsSet() {
+		// setup
+		XKMS2Client client = new XKMS2Client(XKMS_URL);
+
+		// operate & verify
+		assertTrue(XKMS2ClientPool.setTimeouts(client, TIMEOUT));
+	}
+}
@@ -0,0 +1,355 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2014 e-Contract.be BVBA.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package test.unit.be.fedict.eid.idp.model.applet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.security.jacc.PolicyContext;
+import javax.security.jacc.PolicyContextHandler;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+import org.bouncycastle.jce.X509Principal;
+import org.bouncycastle.x509.X509V3CertificateGenerator;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import be.fedict.eid.idp.model.CircuitBreaker;
+import be.fedict.eid.idp.model.ConfigProperty;
+import be.fedict.eid.idp.model.Configuration;
+import be.fedict.eid.idp.model.TrustService;
+import be.fedict.eid.idp.model.TrustValidationCache;
+import be.fedict.eid.idp.model.applet.AuthenticationServiceBean;
+import be.fedict.eid.idp.model.applet.IdentityIntegrityServiceBean;
+import be.fedict.eid.idp.model.exception.TrustServiceException;
+import be.fedict.eid.idp.model.exception.TrustServiceUnavailableException;
+import be.fedict.trust.client.exception.ValidationFailedException;
+
+public class TrustValidationTest {
+
+	private static final long LATENCY = 500;
+
+	private static final String REQUEST_KEY = "javax.servlet.http.HttpServletRequest";
+
+	private static final ThreadLocal<HttpServletRequest> currentRequest = new ThreadLocal<HttpServletRequest>();
+
+	private FakeTrustService fakeTrustService;
+
+	private AuthenticationServiceBean authenticationService;
+
+	private IdentityIntegrityServiceBean identityIntegrityService;
+
+	private List<X509Certificate> authnChain;
+
+	private List<X509Certificate> nrnChain;
+
+	@BeforeClass
+	public static void registerPolicyContextHandler() throws Exception {
+		PolicyContext.registerHandler(REQUEST_KEY, new PolicyContextHandler() {
+
+			public boolean supports(String key) {
+				return REQUEST_KEY.equals(key);
+			}
+
+			public String[] getKeys() {
+				return new String[] { REQUEST_KEY };
+			}
+
+			public Object getContext(String key, Object data) {
+				return currentRequest.get();
+			}
+		}, true);
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		this.fakeTrustService = new FakeTrustService();
+
+		Configuration mockConfiguration = EasyMock
+				.createNiceMock(Configuration.class);
+		EasyMock.expect(
+				mockConfiguration.getValue(ConfigProperty.XKMS_URL,
+						String.class)).andStubReturn("http://localhost/xkms");
+		TrustValidationCache mockTrustValidationCache = EasyMock
+				.createNiceMock(TrustValidationCache.class);
+		EasyMock.replay(mockConfiguration, mockTrustValidationCache);
+
+		this.authenticationService = new AuthenticationServiceBean();
+		this.identityIntegrityService = new IdentityIntegrityServiceBean();
+		for (Object bean : new Object[] { this.authenticationService,
+				this.identityIntegrityService }) {
+			inject(bean, "configuration", mockConfiguration);
+			inject(bean, "trustValidationCache", mockTrustValidationCache);
+			inject(bean, "trustService", this.fakeTrustService);
+		}
+
+		currentRequest.set(createRequest(new HashMap<String, Object>()));
+
+		this.authnChain = generateChain("CN=Authentication");
+		this.nrnChain = generateChain("CN=RRN");
+	}
+
+	@After
+	public void tearDown() {
+		currentRequest.remove();
+	}
+
+	@Test
+	public void testValidation() throws Exception {
+		// operate
+		this.identityIntegrityService
+				.checkNationalRegistrationCertificate(this.nrnChain);
+		this.authenticationService.validateCertificateChain(this.authnChain);
+
+		// verify
+		assertEquals(2, this.fakeTrustService.getValidationCount());
+	}
+
+	@Test
+	public void testNationalRegistrationFailureReported() throws Exception {
+		// setup
+		this.fakeTrustService.reject(this.nrnChain);
+
+		// operate
+		try {
+			this.identityIntegrityService
+					.checkNationalRegistrationCertificate(this.nrnChain);
+			fail();
+		} catch (SecurityException e) {
+			// verify
+			assertEquals("invalid certificate", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testAuthenticationFailureReported() throws Exception {
+		// setup
+		this.fakeTrustService.reject(this.authnChain);
+
+		// operate
+		try {
+			this.authenticationService
+					.validateCertificateChain(this.authnChain);
+			fail();
+		} catch (SecurityException e) {
+			// verify
+			assertEquals("invalid certificate", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		// setup
+		this.fakeTrustService.setTimedOut(true);
+
+		// operate
+		try {
+			this.authenticationService
+					.validateCertificateChain(this.authnChain);
+			fail();
+		} catch (SecurityException e) {
+			// verify
+			assertEquals("eID Trust Service error", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testTrustServiceUnavailable() throws Exception {
+		// setup
+		this.fakeTrustService.setUnavailable(true);
+
+		// operate
+		try {
+			this.identityIntegrityService
+					.checkNationalRegistrationCertificate(this.nrnChain);
+			fail();
+		} catch (SecurityException e) {
+			// verify
+			assertEquals("eID Trust Service unavailable", e.getMessage());
+		}
+		try {
+			this.authenticationService
+					.validateCertificateChain(this.authnChain);
+			fail();
+		} catch (SecurityException e) {
+			// verify
+			assertEquals("eID Trust Service unavailable", e.getMessage());
+		}
+	}
+
+	private static void inject(Object bean, String fieldName, Object value)
+			throws Exception {
+		Field field = bean.getClass().getDeclaredField(fieldName);
+		field.setAccessible(true);
+		field.set(bean, value);
+	}
+
+	private static HttpServletRequest createRequest(
+			final Map<String, Object> sessionAttributes) {
+		final HttpSession session = (HttpSession) Proxy.newProxyInstance(
+				TrustValidationTest.class.getClassLoader(),
+				new Class<?>[] { HttpSession.class }, new AttributeHandler(
+						sessionAttributes, null));
+		return (HttpServletRequest) Proxy.newProxyInstance(
+				TrustValidationTest.class.getClassLoader(),
+				new Class<?>[] { HttpServletRequest.class },
+				new AttributeHandler(new HashMap<String, Object>(), session));
+	}
+
+	private static class AttributeHandler implements InvocationHandler {
+
+		private final Map<String, Object> attributes;
+
+		private final HttpSession session;
+
+		public AttributeHandler(Map<String, Object> attributes,
+				HttpSession session) {
+			this.attributes = attributes;
+			this.session = session;
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			String name = method.getName();
+			if ("getAttribute".equals(name)) {
+				return this.attributes.get(args[0]);
+			}
+			if ("setAttribute".equals(name)) {
+				this.attributes.put((String) args[0], args[1]);
+				return null;
+			}
+			if ("removeAttribute".equals(name)) {
+				this.attributes.remove(args[0]);
+				return null;
+			}
+			if ("getSession".equals(name)) {
+				return this.session;
+			}
+			throw new UnsupportedOperationException(name);
+		}
+	}
+
+	/**
+	 * In-process trust service with a fixed latency per validation.
+	 */
+	private static class FakeTrustService implements TrustService {
+
+		private final Set<List<X509Certificate>> rejected = new HashSet<List<X509Certificate>>();
+
+		private final AtomicInteger validationCount = new AtomicInteger();
+
+		private boolean unavailable;
+
+		private boolean timedOut;
+
+		public void reject(List<X509Certificate> certificateChain) {
+			this.rejected.add(certificateChain);
+		}
+
+		public void setUnavailable(boolean unavailable) {
+			this.unavailable = unavailable;
+		}
+
+		public void setTimedOut(boolean timedOut) {
+			this.timedOut = timedOut;
+		}
+
+		public int getValidationCount() {
+			return this.validationCount.get();
+		}
+
+		public void validate(String trustDomain,
+				List<X509Certificate> certificateChain)
+				throws ValidationFailedException, TrustServiceException {
+			if (this.unavailable) {
+				throw new TrustServiceUnavailableException("circuit open");
+			}
+			try {
+				Thread.sleep(LATENCY);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			this.validationCount.incrementAndGet();
+			if (this.timedOut) {
+				throw new TrustServiceException("Read timed out");
+			}
+			if (this.rejected.contains(certificateChain)) {
+				throw new ValidationFailedException(
+						Collections.<String> emptyList());
+			}
+		}
+
+		public int getTimeout() {
+			return TrustService.DEFAULT_TIMEOUT;
+		}
+
+		public CircuitBreaker getCircuitBreaker() {
+			return null;
+		}
+
+		public int getActiveCalls() {
+			return 0;
+		}
+
+		public long getRejectedCalls() {
+			return 0;
+		}
+	}
+
+	private static List<X509Certificate> generateChain(String subjectDn)
+			throws Exception {
+		KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+		keyPairGenerator.initialize(1024);
+		KeyPair keyPair = keyPairGenerator.generateKeyPair();
+
+		X509V3CertificateGenerator certificateGenerator = new X509V3CertificateGenerator();
+		certificateGenerator.setPublicKey(keyPair.getPublic());
+		certificateGenerator.setSignatureAlgorithm("SHA1WithRSAEncryption");
+		Date now = new Date();
+		certificateGenerator.setNotBefore(now);
+		certificateGenerator.setNotAfter(new Date(now.getTime() + 3600 * 1000));
+		certificateGenerator.setIssuerDN(new X509Principal(subjectDn));
+		certificateGenerator.setSubjectDN(new X509Principal(subjectDn));
+		certificateGenerator.setSerialNumber(new BigInteger(128,
+				new SecureRandom()));
+		return Collections.singletonList(certificateGenerator
+				.generate(keyPair.getPrivate()));
+	}
+}
@@ -18,14 +18,21 @@
 
 package test.unit.be.fedict.eid.idp.model.bean;
 
+import static org.junit.Assert.assertEquals;
+
 import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.persistence.EntityManager;
+import javax.persistence.Query;
 
 import org.easymock.EasyMock;
 import org.junit.Test;
 
 import be.fedict.eid.idp.entity.AccountingEntity;
+import be.fedict.eid.idp.model.AccountingService;
+import be.fedict.eid.idp.model.bean.AccountingBufferBean;
 import be.fedict.eid.idp.model.bean.AccountingServiceBean;
 
 public class AccountingServiceBeanTest {
@@ -34,9 +41,56 @@ public class AccountingServiceBeanTest {
 	public void testAddRequest() throws Exception {
 		// setup
 		AccountingServiceBean testedInstance = new AccountingServiceBean();
+		AccountingBufferBean accountingBuffer = new AccountingBufferBean();
+
+		// inject
+		Field accountingBufferField = AccountingServiceBean.class
+				.getDeclaredField("accountingBuffer");
+		accountingBufferField.setAccessible(true);
+		accountingBufferField.set(testedInstance, accountingBuffer);
+
+		// operate
+		testedInstance
+				.addRequest("https://www.e-contract.be/landing?param=1234");
+		testedInstance
+				.addRequest("https://www.e-contract.be/landing?param=5678");
+
+		// verify
+		Map<String, Long> pendingRequests = accountingBuffer
+				.getPendingRequests();
+		assertEquals(1, pendingRequests.size());
+		assertEquals(Long.valueOf(2),
+				pendingRequests.get("https://www.e-contract.be/landing"));
+	}
+
+	@Test
+	public void testAddRequestUrn() throws Exception {
+		// setup
+		AccountingServiceBean testedInstance = new AccountingServiceBean();
+		AccountingBufferBean accountingBuffer = new AccountingBufferBean();
+
+		// inject
+		Field accountingBufferField = AccountingServiceBean.class
+				.getDeclaredField("accountingBuffer");
+		accountingBufferField.setAccessible(true);
+		accountingBufferField.set(testedInstance, accountingBuffer);
+
+		// operate
+		testedInstance.addRequest("urn:be:test");
+
+		// verify
+		assertEquals(Long.valueOf(1),
+				accountingBuffer.getPendingRequests().get("urn:be:test"));
+	}
+
+	@Test
+	public void testAddRequests() throws Exception {
+		// setup
+		AccountingServiceBean testedInstance = new AccountingServiceBean();
 
 		EntityManager mockEntityManger = EasyMock
 				.createMock(EntityManager.class);
+		Query mockQuery = EasyMock.createMock(Query.class);
 
 		// inject
 		Field entityManagerField = AccountingServiceBean.class
@@ -45,51 +99,98 @@ public class AccountingServiceBeanTest {
 		entityManagerField.set(testedInstance, mockEntityManger);
 
 		// expectations
-		AccountingEntity accountingEntity = new AccountingEntity(
-				"https://www.e-contract.be/landing");
 		EasyMock.expect(
-				mockEntityManger.find(AccountingEntity.class,
-						"https://www.e-contract.be/landing")).andStubReturn(
-				accountingEntity);
+				mockEntityManger.createNamedQuery(AccountingEntity.ADD_REQUESTS))
+				.andReturn(mockQuery);
+		EasyMock.expect(mockQuery.setParameter("requests", 5L)).andReturn(
+				mockQuery);
+		EasyMock.expect(mockQuery.setParameter("domain", "urn:be:test"))
+				.andReturn(mockQuery);
+		EasyMock.expect(mockQuery.executeUpdate()).andReturn(0);
+		mockEntityManger.persist(EasyMock.anyObject(AccountingEntity.class));
 
 		// prepare
-		EasyMock.replay(mockEntityManger);
+		EasyMock.replay(mockEntityManger, mockQuery);
 
 		// operate
-		testedInstance
-				.addRequest("https://www.e-contract.be/landing?param=1234");
+		Map<String, Long> requests = new HashMap<String, Long>();
+		requests.put("urn:be:test", 5L);
+		testedInstance.addRequests(requests);
 
 		// verify
-		EasyMock.verify(mockEntityManger);
+		EasyMock.verify(mockEntityManger, mockQuery);
 	}
 
 	@Test
-	public void testAddRequestUrn() throws Exception {
+	public void testFlush() throws Exception {
 		// setup
-		AccountingServiceBean testedInstance = new AccountingServiceBean();
+		AccountingBufferBean testedInstance = new AccountingBufferBean();
 
-		EntityManager mockEntityManger = EasyMock
-				.createMock(EntityManager.class);
+		AccountingService mockAccountingService = EasyMock
+				.createMock(AccountingService.class);
 
 		// inject
-		Field entityManagerField = AccountingServiceBean.class
-				.getDeclaredField("entityManager");
-		entityManagerField.setAccessible(true);
-		entityManagerField.set(testedInstance, mockEntityManger);
+		Field accountingServiceField = AccountingBufferBean.class
+				.getDeclaredField("accountingService");
+		accountingServiceField.setAccessible(true);
+		accountingServiceField.set(testedInstance, mockAccountingService);
 
 		// expectations
-		AccountingEntity accountingEntity = new AccountingEntity("urn:be:test");
-		EasyMock.expect(
-				mockEntityManger.find(AccountingEntity.class, "urn:be:test"))
-				.andStubReturn(accountingEntity);
+		Map<String, Long> expectedRequests = new HashMap<String, Long>();
+		expectedRequests.put("urn:be:test", 3L);
+		mockAccountingService.addRequests(expectedRequests);
+
+		// prepare
+		EasyMock.replay(mockAccountingService);
+
+		// operate
+		for (int idx = 0; idx < 3; idx++) {
+			testedInstance.addRequest("urn:be:test");
+		}
+		testedInstance.flush();
+		// idle counters get removed, nothing left to flush
+		testedInstance.flush();
+		testedInstance.addRequest("urn:be:test");
+
+		// verify
+		EasyMock.verify(mockAccountingService);
+		assertEquals(Long.valueOf(1),
+				testedInstance.getPendingRequests().get("urn:be:test"));
+	}
+
+	@Test
+	public void testClear() throws Exception {
+		// setup
+		AccountingBufferBean testedInstance = new AccountingBufferBean();
+
+		AccountingService mockAccountingService = EasyMock
+				.createMock(AccountingService.class);
+
+		// inject
+		Field accountingServiceField = AccountingBufferBean.class
+				.getDeclaredField("accountingService");
+		accountingServiceField.setAccessible(true);
+		accountingServiceField.set(testedInstance, mockAccountingService);
+
+		// expectations
+		Map<String, Long> expectedRequests = new HashMap<String, Long>();
+		expectedRequests.put("urn:be:test", 1L);
+		mockAccountingService.addRequests(expectedRequests);
 
 		// prepare
-		EasyMock.replay(mockEntityManger);
+		EasyMock.replay(mockAccountingService);
 
 		// operate
 		testedInstance.addRequest("urn:be:test");
+		testedInstance.addRequest("urn:be:other");
+		testedInstance.clear();
+		Map<String, Long> pendingAfterClear = testedInstance
+				.getPendingRequests();
+		testedInstance.addRequest("urn:be:test");
+		testedInstance.flush();
 
 		// verify
-		EasyMock.verify(mockEntityManger);
+		EasyMock.verify(mockAccountingService);
+		assertEquals(0, pendingAfterClear.size());
 	}
 }
@@ -0,0 +1,115 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2014 e-Contract.be BVBA.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package test.unit.be.fedict.eid.idp.model.bean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Field;
+import java.util.LinkedList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import be.fedict.eid.idp.entity.AttributeEntity;
+import be.fedict.eid.idp.entity.AttributeProtocolUriEntity;
+import be.fedict.eid.idp.model.bean.AttributeUriTableBean;
+
+public class AttributeUriTableBeanTest {
+
+	@Test
+	public void testLookups() throws Exception {
+		// setup
+		AttributeUriTableBean testedInstance = new AttributeUriTableBean();
+
+		EntityManager mockEntityManager = EasyMock
+				.createMock(EntityManager.class);
+		Query mockAttributeQuery = EasyMock.createMock(Query.class);
+		Query mockAttributeUriQuery = EasyMock.createMock(Query.class);
+
+		// inject
+		Field entityManagerField = AttributeUriTableBean.class
+				.getDeclaredField("entityManager");
+		entityManagerField.setAccessible(true);
+		entityManagerField.set(testedInstance, mockEntityManager);
+
+		AttributeEntity name = new AttributeEntity("name", "description",
+				"be:fedict:eid:idp:name");
+		AttributeEntity age = new AttributeEntity("age", "description",
+				"be:fedict:eid:idp:age");
+		List<AttributeEntity> attributes = new LinkedList<AttributeEntity>();
+		attributes.add(name);
+		attributes.add(age);
+		List<AttributeProtocolUriEntity> attributeUris = new LinkedList<AttributeProtocolUriEntity>();
+		attributeUris.add(new AttributeProtocolUriEntity("saml2", name,
+				"urn:test:name"));
+		attributeUris.add(new AttributeProtocolUriEntity("saml2", age, ""));
+
+		// expectations
+		EasyMock.expect(
+				mockEntityManager.createNamedQuery(AttributeEntity.LIST_ALL))
+				.andReturn(mockAttributeQuery);
+		EasyMock.expect(mockAttributeQuery.getResultList()).andReturn(
+				attributes);
+		EasyMock.expect(
+				mockEntityManager
+						.createNamedQuery(AttributeProtocolUriEntity.LIST_ALL))
+				.andReturn(mockAttributeUriQuery);
+		EasyMock.expect(mockAttributeUriQuery.getResultList()).andReturn(
+				attributeUris);
+
+		// prepare
+		EasyMock.replay(mockEntityManager, mockAttributeQuery,
+				mockAttributeUriQuery);
+
+		// operate
+		testedInstance.postConstruct();
+
+		// verify
+		assertEquals("urn:test:name",
+				testedInstance.getUri("saml2", "be:fedict:eid:idp:name"));
+		assertEquals("be:fedict:eid:idp:age",
+				testedInstance.getUri("saml2", "be:fedict:eid:idp:age"));
+		assertEquals("be:fedict:eid:idp:name",
+				testedInstance.getUri("openid", "be:fedict:eid:idp:name"));
+		try {
+			testedInstance.getUri("saml2", "be:fedict:eid:idp:unknown");
+			fail();
+		} catch (RuntimeException e) {
+			// expected
+		}
+
+		assertSame(name, testedInstance.findAttribute("saml2", "urn:test:name"));
+		assertSame(name,
+				testedInstance.findAttribute("openid", "be:fedict:eid:idp:name"));
+		assertNull(testedInstance.findAttribute("openid", "urn:test:name"));
+
+		assertEquals(2, testedInstance.listAttributes().size());
+		assertSame(name, testedInstance.listAttributes().get(0));
+
+		EasyMock.verify(mockEntityManager, mockAttributeQuery,
+				mockAttributeUriQuery);
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2014 e-Contract.be BVBA.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package test.unit.be.fedict.eid.idp.model.bean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.lang.reflect.Field;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.easymock.Capture;
+import org.easymock.EasyMock;
+import org.junit.Before;
+import org.junit.Test;
+
+import be.fedict.eid.idp.entity.ConfigPropertyEntity;
+import be.fedict.eid.idp.model.ConfigProperty;
+import be.fedict.eid.idp.model.ConfigurationCache;
+import be.fedict.eid.idp.model.bean.ConfigurationBean;
+
+public class ConfigurationBeanTest {
+
+	private ConfigurationBean testedInstance;
+
+	private EntityManager mockEntityManager;
+
+	private ConfigurationCache mockConfigurationCache;
+
+	private TransactionSynchronizationRegistry mockTransactionSynchronizationRegistry;
+
+	@Before
+	public void setUp() throws Exception {
+		this.testedInstance = new ConfigurationBean();
+		this.mockEntityManager = EasyMock.createMock(EntityManager.class);
+		this.mockConfigurationCache = EasyMock
+				.createMock(ConfigurationCache.class);
+		this.mockTransactionSynchronizationRegistry = EasyMock
+				.createMock(TransactionSynchronizationRegistry.class);
+		inject("entityManager", this.mockEntityManager);
+		inject("configurationCache", this.mockConfigurationCache);
+		inject("transactionSynchronizationRegistry",
+				this.mockTransactionSynchronizationRegistry);
+	}
+
+	@Test
+	public void testReadFromCache() throws Exception {
+		// expectations
+		EasyMock.expect(
+				this.mockTransactionSynchronizationRegistry
+						.getTransactionKey()).andStubReturn(new Object());
+		EasyMock.expect(
+				this.mockTransactionSynchronizationRegistry
+						.getResource(ConfigurationCache.class))
+				.andStubReturn(null);
+		EasyMock.expect(
+				this.mockConfigurationCache.getValue(ConfigProperty.ISSUER,
+						"default-issuer")).andReturn("cached");
+
+		// prepare
+		EasyMock.replay(this.mockEntityManager, this.mockConfigurationCache,
+				this.mockTransactionSynchronizationRegistry);
+
+		// operate
+		String result = this.testedInstance.getValue(ConfigProperty.ISSUER,
+				String.class);
+
+		// verify
+		EasyMock.verify(this.mockEntityManager, this.mockConfigurationCache,
+				this.mockTransactionSynchronizationRegistry);
+		assertEquals("cached", result);
+	}
+
+	@Test
+	public void testUncommittedValueNotCached() throws Exception {
+		// setup
+		ConfigPropertyEntity configPropertyEntity = new ConfigPropertyEntity(
+				"token-validity", "5");
+
+		// expectations
+		EasyMock.expect(
+				this.mockTransactionSynchronizationRegistry
+						.getTransactionKey()).andStubReturn(new Object());
+		EasyMock.expect(
+				this.mockTransactionSynchronizationRegistry
+						.getResource(ConfigurationCache.class))
+				.andReturn(null);
+		this.mockTransactionSynchronizationRegistry.putResource(
+				ConfigurationCache.class, Boolean.TRUE);
+		Capture<Synchronization> synchronization = new Capture<Synchronization>();
+		this.mockTransactionSynchronizationRegistry
+				.registerInterposedSynchronization(EasyMock
+						.capture(synchronization));
+		EasyMock.expect(
+				this.mockTransactionSynchronizationRegistry
+						.getResource(ConfigurationCache.class))
+				.andStubReturn(Boolean.TRUE);
+		EasyMock.expect(
+				this.mockEntityManager.find(ConfigPropertyEntity.class,
+						"token-validity")).andReturn(null);
+		this.mockEntityManager.persist(EasyMock
+				.anyObject(ConfigPropertyEntity.class));
+		EasyMock.expect(
+				this.mockEntityManager.find(ConfigPropertyEntity.class,
+						"token-validity")).andReturn(configPropertyEntity);
+		EasyMock.expect(
+				this.mockEntityManager.find(ConfigPropertyEntity.class,
+						"blocked-message")).andReturn(null);
+
+		// the cache is only invalidated once the transaction completed
+		this.mockConfigurationCache.invalidate();
+
+		// prepare
+		EasyMock.replay(this.mockEntityManager, this.mockConfigurationCache,
+				this.mockTransactionSynchronizationRegistry);
+
+		// operate
+		this.testedInstance.setValue(ConfigProperty.TOKEN_VALIDITY, 5);
+		Integer tokenValidity = this.testedInstance.getValue(
+				ConfigProperty.TOKEN_VALIDITY, Integer.class);
+		String blockedMessage = this.testedInstance.getValue(
+				ConfigProperty.BLOCKED_MESSAGE, String.class);
+		synchronization.getValue().afterCompletion(0);
+
+		// verify
+		EasyMock.verify(this.mockEntityManager, this.mockConfigurationCache,
+				this.mockTransactionSynchronizationRegistry);
+		assertEquals(Integer.valueOf(5), tokenValidity);
+		assertNull(blockedMessage);
+	}
+
+	private void inject(String fieldName, Object value) throws Exception {
+		Field field = ConfigurationBean.class.getDeclaredField(fieldName);
+		field.setAccessible(true);
+		field.set(this.testedInstance, value);
+	}
+}
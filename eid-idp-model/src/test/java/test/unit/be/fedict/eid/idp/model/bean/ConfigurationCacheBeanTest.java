@@ -0,0 +1,141 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2014 e-Contract.be BVBA.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package test.unit.be.fedict.eid.idp.model.bean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.lang.reflect.Field;
+import java.util.LinkedList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import be.fedict.eid.idp.entity.ConfigPropertyEntity;
+import be.fedict.eid.idp.model.ConfigProperty;
+import be.fedict.eid.idp.model.KeyStoreType;
+import be.fedict.eid.idp.model.bean.ConfigurationCacheBean;
+
+public class ConfigurationCacheBeanTest {
+
+	@Test
+	public void testSingleBulkLoad() throws Exception {
+		// setup
+		ConfigurationCacheBean testedInstance = new ConfigurationCacheBean();
+
+		EntityManager mockEntityManager = EasyMock
+				.createMock(EntityManager.class);
+		Query mockQuery = EasyMock.createMock(Query.class);
+
+		// inject
+		Field entityManagerField = ConfigurationCacheBean.class
+				.getDeclaredField("entityManager");
+		entityManagerField.setAccessible(true);
+		entityManagerField.set(testedInstance, mockEntityManager);
+
+		// expectations
+		List<ConfigPropertyEntity> configProperties = new LinkedList<ConfigPropertyEntity>();
+		configProperties.add(new ConfigPropertyEntity("token-validity", "5"));
+		configProperties.add(new ConfigPropertyEntity("key-store-type-test",
+				"PKCS12"));
+		configProperties.add(new ConfigPropertyEntity("blocked-rp", "true"));
+		EasyMock.expect(
+				mockEntityManager
+						.createNamedQuery(ConfigPropertyEntity.LIST_ALL))
+				.andReturn(mockQuery);
+		EasyMock.expect(mockQuery.getResultList()).andReturn(
+				configProperties);
+
+		// prepare
+		EasyMock.replay(mockEntityManager, mockQuery);
+
+		// operate
+		testedInstance.postConstruct();
+		Object tokenValidity = testedInstance.getValue(
+				ConfigProperty.TOKEN_VALIDITY, "token-validity");
+		Object keyStoreType = testedInstance.getValue(
+				ConfigProperty.KEY_STORE_TYPE, "key-store-type-test");
+		Object blocked = testedInstance.getValue(ConfigProperty.BLOCKED,
+				"blocked-rp");
+		Object blockedMessage = testedInstance.getValue(
+				ConfigProperty.BLOCKED_MESSAGE, "blocked-message-rp");
+
+		// verify
+		EasyMock.verify(mockEntityManager, mockQuery);
+		assertEquals(Integer.valueOf(5), tokenValidity);
+		assertEquals(KeyStoreType.PKCS12, keyStoreType);
+		assertEquals(Boolean.TRUE, blocked);
+		assertNull(blockedMessage);
+		assertEquals(4, testedInstance.getHits());
+		assertEquals(0, testedInstance.getMisses());
+	}
+
+	@Test
+	public void testInvalidate() throws Exception {
+		// setup
+		ConfigurationCacheBean testedInstance = new ConfigurationCacheBean();
+
+		EntityManager mockEntityManager = EasyMock
+				.createMock(EntityManager.class);
+		Query mockQuery = EasyMock.createMock(Query.class);
+
+		// inject
+		Field entityManagerField = ConfigurationCacheBean.class
+				.getDeclaredField("entityManager");
+		entityManagerField.setAccessible(true);
+		entityManagerField.set(testedInstance, mockEntityManager);
+
+		// expectations
+		List<ConfigPropertyEntity> before = new LinkedList<ConfigPropertyEntity>();
+		before.add(new ConfigPropertyEntity("default-issuer", "before"));
+		List<ConfigPropertyEntity> after = new LinkedList<ConfigPropertyEntity>();
+		after.add(new ConfigPropertyEntity("default-issuer", "after"));
+		EasyMock.expect(
+				mockEntityManager
+						.createNamedQuery(ConfigPropertyEntity.LIST_ALL))
+				.andReturn(mockQuery).times(2);
+		EasyMock.expect(mockQuery.getResultList()).andReturn(before);
+		EasyMock.expect(mockQuery.getResultList()).andReturn(after);
+
+		// prepare
+		EasyMock.replay(mockEntityManager, mockQuery);
+
+		// operate
+		testedInstance.postConstruct();
+		Object issuerBefore = testedInstance.getValue(ConfigProperty.ISSUER,
+				"default-issuer");
+		testedInstance.invalidate();
+		Object issuerAfter = testedInstance.getValue(ConfigProperty.ISSUER,
+				"default-issuer");
+		Object issuerCached = testedInstance.getValue(ConfigProperty.ISSUER,
+				"default-issuer");
+
+		// verify
+		EasyMock.verify(mockEntityManager, mockQuery);
+		assertEquals("before", issuerBefore);
+		assertEquals("after", issuerAfter);
+		assertEquals("after", issuerCached);
+		assertEquals(2, testedInstance.getHits());
+		assertEquals(1, testedInstance.getMisses());
+	}
+}
@@ -0,0 +1,178 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2014 e-Contract.be BVBA.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package test.unit.be.fedict.eid.idp.model.bean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.util.LinkedList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import be.fedict.eid.idp.entity.AttributeEntity;
+import be.fedict.eid.idp.entity.RPAttributeEntity;
+import be.fedict.eid.idp.entity.RPEntity;
+import be.fedict.eid.idp.model.ConfigProperty;
+import be.fedict.eid.idp.model.Configuration;
+import be.fedict.eid.idp.model.RPRegistryEntry;
+import be.fedict.eid.idp.model.bean.RPRegistryBean;
+
+public class RPRegistryBeanTest {
+
+	@Test
+	public void testLookup() throws Exception {
+		// setup
+		RPRegistryBean testedInstance = new RPRegistryBean();
+
+		EntityManager mockEntityManager = EasyMock
+				.createMock(EntityManager.class);
+		Query mockQuery = EasyMock.createMock(Query.class);
+		Configuration mockConfiguration = EasyMock
+				.createMock(Configuration.class);
+
+		// inject
+		inject(testedInstance, "entityManager", mockEntityManager);
+		inject(testedInstance, "configuration", mockConfiguration);
+
+		RPEntity rp = new RPEntity();
+		rp.setId(1L);
+		rp.setName("test-rp");
+		rp.setDomain(" https://sp.test.be ");
+		byte[] encodedCertificate = "certificate".getBytes();
+		rp.setEncodedCertificate(encodedCertificate);
+		AttributeEntity attribute = new AttributeEntity("name", "description",
+				"be:fedict:eid:idp:name");
+		rp.getAttributes().add(new RPAttributeEntity(rp, attribute));
+
+		RPEntity noDomainRp = new RPEntity();
+		noDomainRp.setId(2L);
+		noDomainRp.setName("no-domain");
+
+		List<RPEntity> rps = new LinkedList<RPEntity>();
+		rps.add(rp);
+		rps.add(noDomainRp);
+
+		// expectations
+		EasyMock.expect(mockEntityManager.createNamedQuery(RPEntity.LIST_ALL))
+				.andReturn(mockQuery);
+		EasyMock.expect(mockQuery.getResultList()).andReturn(rps);
+		EasyMock.expect(
+				mockConfiguration.getValue(ConfigProperty.BLOCKED, "1",
+						Boolean.class)).andReturn(Boolean.TRUE);
+		EasyMock.expect(
+				mockConfiguration.getValue(ConfigProperty.BLOCKED_MESSAGE,
+						"1", String.class)).andReturn("blocked");
+
+		// prepare
+		EasyMock.replay(mockEntityManager, mockQuery, mockConfiguration);
+
+		// operate
+		testedInstance.postConstruct();
+		RPRegistryEntry entry = testedInstance.find("https://sp.test.be");
+		RPRegistryEntry mixedCaseEntry = testedInstance
+				.find(" HTTPS://SP.Test.be");
+		RPRegistryEntry unknownEntry = testedInstance
+				.find("https://unknown.test.be");
+
+		// verify
+		EasyMock.verify(mockEntityManager, mockQuery, mockConfiguration);
+		assertSame(rp, entry.getRp());
+		assertSame(entry, mixedCaseEntry);
+		assertEquals(DigestUtils.shaHex(encodedCertificate),
+				entry.getCertificateFingerprint());
+		assertTrue(entry.hasAttribute("be:fedict:eid:idp:name"));
+		assertFalse(entry.hasAttribute("be:fedict:eid:idp:age"));
+		assertTrue(entry.isBlocked());
+		assertEquals("blocked", entry.getBlockedMessage());
+		assertNull(unknownEntry);
+		assertNull(testedInstance.find(null));
+	}
+
+	@Test
+	public void testInvalidate() throws Exception {
+		// setup
+		RPRegistryBean testedInstance = new RPRegistryBean();
+
+		EntityManager mockEntityManager = EasyMock
+				.createMock(EntityManager.class);
+		Query mockQuery = EasyMock.createMock(Query.class);
+		Configuration mockConfiguration = EasyMock
+				.createMock(Configuration.class);
+
+		// inject
+		inject(testedInstance, "entityManager", mockEntityManager);
+		inject(testedInstance, "configuration", mockConfiguration);
+
+		RPEntity rp = new RPEntity();
+		rp.setId(1L);
+		rp.setName("test-rp");
+		rp.setDomain("https://sp.test.be");
+		List<RPEntity> before = new LinkedList<RPEntity>();
+		List<RPEntity> after = new LinkedList<RPEntity>();
+		after.add(rp);
+
+		// expectations
+		EasyMock.expect(mockEntityManager.createNamedQuery(RPEntity.LIST_ALL))
+				.andReturn(mockQuery).times(2);
+		EasyMock.expect(mockQuery.getResultList()).andReturn(before);
+		EasyMock.expect(mockQuery.getResultList()).andReturn(after);
+		EasyMock.expect(
+				mockConfiguration.getValue(ConfigProperty.BLOCKED, "1",
+						Boolean.class)).andReturn(null);
+		EasyMock.expect(
+				mockConfiguration.getValue(ConfigProperty.BLOCKED_MESSAGE,
+						"1", String.class)).andReturn(null);
+
+		// prepare
+		EasyMock.replay(mockEntityManager, mockQuery, mockConfiguration);
+
+		// operate
+		testedInstance.postConstruct();
+		RPRegistryEntry entryBefore = testedInstance.find("https://sp.test.be");
+		testedInstance.invalidate();
+		RPRegistryEntry entryAfter = testedInstance.find("https://sp.test.be");
+		RPRegistryEntry entryCached = testedInstance
+				.find("https://sp.test.be");
+
+		// verify
+		EasyMock.verify(mockEntityManager, mockQuery, mockConfiguration);
+		assertNull(entryBefore);
+		assertSame(rp, entryAfter.getRp());
+		assertSame(entryAfter, entryCached);
+		assertNull(entryAfter.getCertificateFingerprint());
+		assertFalse(entryAfter.isBlocked());
+	}
+
+	private void inject(RPRegistryBean testedInstance, String fieldName,
+			Object value) throws Exception {
+		Field field = RPRegistryBean.class.getDeclaredField(fieldName);
+		field.setAccessible(true);
+		field.set(testedInstance, value);
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2014 e-Contract.be BVBA.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package test.unit.be.fedict.eid.idp.model.bean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import be.fedict.eid.idp.model.LatencyStatistic;
+import be.fedict.eid.idp.model.StatisticsStage;
+import be.fedict.eid.idp.model.bean.StatisticsBean;
+
+public class StatisticsBeanTest {
+
+	@Test
+	public void testConcurrentCounting() throws Exception {
+		// setup
+		final StatisticsBean testedInstance = new StatisticsBean();
+		Thread[] threads = new Thread[8];
+		for (int idx = 0; idx < threads.length; idx++) {
+			threads[idx] = new Thread() {
+				@Override
+				public void run() {
+					for (int count = 0; count < 1000; count++) {
+						testedInstance.countAuthentication("saml2");
+					}
+				}
+			};
+		}
+
+		// operate
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		testedInstance.countAuthentication("openid");
+
+		// verify
+		Map<String, Long> protocolStatistics = testedInstance
+				.getProtocolStatistics();
+		assertEquals(Long.valueOf(8000), protocolStatistics.get("saml2"));
+		assertEquals(Long.valueOf(1), protocolStatistics.get("openid"));
+		assertEquals(8001, testedInstance.getTotalAuthenticationCount());
+	}
+
+	@Test
+	public void testLatencyHistogram() throws Exception {
+		// setup
+		StatisticsBean testedInstance = new StatisticsBean();
+
+		// operate
+		testedInstance.recordLatency(StatisticsStage.EXIT, "saml2",
+				"https://sp.test.be", 3);
+		testedInstance.recordLatency(StatisticsStage.EXIT, "saml2",
+				"https://sp.test.be", 7);
+		testedInstance.recordLatency(StatisticsStage.EXIT, "saml2",
+				"https://sp.test.be", 1000000);
+		testedInstance.recordLatency(StatisticsStage.ENTRY, "saml2", null, 1);
+
+		// verify
+		List<LatencyStatistic> latencyStatistics = testedInstance
+				.getLatencyStatistics();
+		assertEquals(2, latencyStatistics.size());
+		boolean foundExit = false;
+		for (LatencyStatistic latencyStatistic : latencyStatistics) {
+			if (StatisticsStage.EXIT != latencyStatistic.getStage()) {
+				assertNull(latencyStatistic.getRpDomain());
+				continue;
+			}
+			foundExit = true;
+			assertEquals("https://sp.test.be", latencyStatistic.getRpDomain());
+			assertEquals(3, latencyStatistic.getCount());
+			assertEquals(1000010, latencyStatistic.getTotalMillis());
+			assertEquals(1000000, latencyStatistic.getMaxMillis());
+			long[] bucketCounts = latencyStatistic.getBucketCounts();
+			assertEquals(1, bucketCounts[0]);
+			assertEquals(1, bucketCounts[1]);
+			assertEquals(1, bucketCounts[bucketCounts.length - 1]);
+		}
+		assertTrue(foundExit);
+
+		// operate
+		testedInstance.reset();
+
+		// verify
+		assertTrue(testedInstance.getLatencyStatistics().isEmpty());
+		assertEquals(0, testedInstance.getTotalAuthenticationCount());
+	}
+
+	@Test
+	public void testLatencyHistogramNormalizedDomain() throws Exception {
+		// setup
+		StatisticsBean testedInstance = new StatisticsBean();
+
+		// operate
+		testedInstance.recordLatency(StatisticsStage.EXIT, "saml2",
+				"https://SP.Test.be", 3);
+		testedInstance.recordLatency(StatisticsStage.EXIT, "saml2",
+				" https://sp.test.be ", 7);
+
+		// verify
+		List<LatencyStatistic> latencyStatistics = testedInstance
+				.getLatencyStatistics();
+		assertEquals(1, latencyStatistics.size());
+		LatencyStatistic latencyStatistic = latencyStatistics.get(0);
+		assertEquals("https://sp.test.be", latencyStatistic.getRpDomain());
+		assertEquals(2, latencyStatistic.getCount());
+	}
+}
@@ -0,0 +1,353 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010-2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package test.unit.be.fedict.eid.idp.model.bean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Field;
+import java.net.SocketTimeoutException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.ws.WebServiceException;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.Before;
+import org.junit.Test;
+
+import be.fedict.eid.idp.model.CircuitBreaker;
+import be.fedict.eid.idp.model.ConfigProperty;
+import be.fedict.eid.idp.model.Configuration;
+import be.fedict.eid.idp.model.TrustService;
+import be.fedict.eid.idp.model.XKMS2ClientPool;
+import be.fedict.eid.idp.model.bean.TrustServiceBean;
+import be.fedict.eid.idp.model.exception.TrustServiceException;
+import be.fedict.eid.idp.model.exception.TrustServiceUnavailableException;
+import be.fedict.trust.client.XKMS2Client;
+
+public class TrustServiceBeanTest {
+
+	private static final String XKMS_URL = "http://localhost/eid-trust-service-ws/xkms2";
+
+	private static final List<X509Certificate> CHAIN = Collections
+			.emptyList();
+
+	private static final int OPEN_TIME = 30;
+
+	private Map<ConfigProperty, Object> config;
+
+	private RuntimeException failure;
+
+	private CountDownLatch callStarted;
+
+	private CountDownLatch callReleased;
+
+	private long now;
+
+	private final List<CircuitBreaker.State> statesDuringCall = new ArrayList<CircuitBreaker.State>();
+
+	private List<XKMS2ClientPool> createdPools;
+
+	private List<XKMS2Client> createdClients;
+
+	private List<XKMS2Client> usedClients;
+
+	private TrustServiceBean testedInstance;
+
+	@Before
+	public void setUp() throws Exception {
+		this.config = new HashMap<ConfigProperty, Object>();
+		this.config.put(ConfigProperty.XKMS_URL, XKMS_URL);
+		this.config.put(ConfigProperty.XKMS_FAILURE_THRESHOLD, 2);
+		this.config.put(ConfigProperty.XKMS_OPEN_TIME, OPEN_TIME);
+		this.failure = null;
+		this.now = 1000000;
+		this.createdPools = new ArrayList<XKMS2ClientPool>();
+		this.createdClients = new ArrayList<XKMS2Client>();
+		this.usedClients = new ArrayList<XKMS2Client>();
+
+		Configuration mockConfiguration = EasyMock
+				.createNiceMock(Configuration.class);
+		EasyMock.expect(
+				mockConfiguration.getValue(
+						EasyMock.<ConfigProperty> anyObject(),
+						EasyMock.<Class<Object>> anyObject())).andStubAnswer(
+				new IAnswer<Object>() {
+
+					public Object answer() throws Throwable {
+						return TrustServiceBeanTest.this.config.get(EasyMock
+								.getCurrentArguments()[0]);
+					}
+				});
+		EasyMock.replay(mockConfiguration);
+
+		this.testedInstance = new TrustServiceBean() {
+
+			@Override
+			protected XKMS2ClientPool createClientPool(String xkmsUrl,
+					String httpProxyHost, int httpProxyPort, int timeoutMillis) {
+				XKMS2ClientPool clientPool = new FakeClientPool(xkmsUrl);
+				TrustServiceBeanTest.this.createdPools.add(clientPool);
+				return clientPool;
+			}
+		};
+		Field configurationField = TrustServiceBean.class
+				.getDeclaredField("configuration");
+		configurationField.setAccessible(true);
+		configurationField.set(this.testedInstance, mockConfiguration);
+		Field circuitBreakerField = TrustServiceBean.class
+				.getDeclaredField("circuitBreaker");
+		circuitBreakerField.setAccessible(true);
+		circuitBreakerField.set(this.testedInstance, new CircuitBreaker() {
+
+			@Override
+			protected long currentTimeMillis() {
+				return TrustServiceBeanTest.this.now;
+			}
+		});
+	}
+
+	@Test
+	public void testClientReused() throws Exception {
+		// operate
+		validate();
+		validate();
+
+		// verify
+		assertEquals(1, this.createdClients.size());
+		assertEquals(2, this.usedClients.size());
+		assertSame(this.usedClients.get(0), this.usedClients.get(1));
+	}
+
+	@Test
+	public void testFailedClientDropped() throws Exception {
+		// setup
+		this.failure = new WebServiceException("connection reset");
+
+		// operate
+		try {
+			validate();
+			fail();
+		} catch (TrustServiceException e) {
+			// expected
+		}
+		this.failure = null;
+		validate();
+
+		// verify
+		assertEquals(2, this.createdClients.size());
+		assertNotSame(this.usedClients.get(0), this.usedClients.get(1));
+		assertEquals(1, this.createdPools.get(0).getIdleCount());
+	}
+
+	@Test
+	public void testClientPoolRebuiltOnUrlChange() throws Exception {
+		// operate
+		validate();
+		this.config.put(ConfigProperty.XKMS_URL,
+				"http://other/eid-trust-service-ws/xkms2");
+		validate();
+		validate();
+
+		// verify
+		assertEquals(2, this.createdPools.size());
+		assertEquals(XKMS_URL, this.createdPools.get(0).getXkmsUrl());
+		assertEquals("http://other/eid-trust-service-ws/xkms2",
+				this.createdPools.get(1).getXkmsUrl());
+		assertEquals(2, this.createdClients.size());
+		assertSame(this.usedClients.get(1), this.usedClients.get(2));
+	}
+
+	@Test
+	public void testBulkheadRejection() throws Exception {
+		// setup
+		this.config.put(ConfigProperty.XKMS_MAX_CONCURRENT, 1);
+		this.callStarted = new CountDownLatch(1);
+		this.callReleased = new CountDownLatch(1);
+		final List<Exception> errors = new ArrayList<Exception>();
+		Thread pendingCall = new Thread() {
+
+			@Override
+			public void run() {
+				try {
+					validate();
+				} catch (Exception e) {
+					errors.add(e);
+				}
+			}
+		};
+
+		// operate
+		pendingCall.start();
+		assertTrue(this.callStarted.await(10, TimeUnit.SECONDS));
+		try {
+			validate();
+			fail();
+		} catch (TrustServiceUnavailableException e) {
+			// verify
+			assertEquals("too many concurrent calls", e.getMessage());
+		} finally {
+			this.callReleased.countDown();
+			pendingCall.join();
+		}
+
+		// verify
+		assertTrue(errors.isEmpty());
+		assertEquals(1, this.testedInstance.getRejectedCalls());
+		assertEquals(0, this.testedInstance.getActiveCalls());
+		assertEquals(1, this.usedClients.size());
+		assertEquals(CircuitBreaker.State.CLOSED, getState());
+	}
+
+	@Test
+	public void testTimeoutOpensCircuit() throws Exception {
+		// setup
+		this.failure = new WebServiceException(new SocketTimeoutException(
+				"Read timed out"));
+
+		// operate
+		failValidation();
+		assertEquals(CircuitBreaker.State.CLOSED, getState());
+		failValidation();
+
+		// verify
+		assertEquals(CircuitBreaker.State.OPEN, getState());
+		assertEquals(0, this.testedInstance.getActiveCalls());
+		try {
+			validate();
+			fail();
+		} catch (TrustServiceUnavailableException e) {
+			assertEquals("circuit open", e.getMessage());
+		}
+		assertEquals(2, this.usedClients.size());
+		assertEquals(1, this.testedInstance.getRejectedCalls());
+	}
+
+	@Test
+	public void testHalfOpenProbeClosesCircuit() throws Exception {
+		// setup
+		this.failure = new WebServiceException("connection refused");
+		failValidation();
+		failValidation();
+		this.failure = null;
+
+		// operate
+		this.now += OPEN_TIME * 1000L;
+		validate();
+
+		// verify
+		assertEquals(Collections.singletonList(CircuitBreaker.State.HALF_OPEN),
+				this.statesDuringCall.subList(2, 3));
+		assertEquals(CircuitBreaker.State.CLOSED, getState());
+		validate();
+		assertEquals(4, this.usedClients.size());
+	}
+
+	@Test
+	public void testHalfOpenProbeFailureReopensCircuit() throws Exception {
+		// setup
+		this.failure = new WebServiceException("connection refused");
+		failValidation();
+		failValidation();
+
+		// operate
+		this.now += OPEN_TIME * 1000L;
+		failValidation();
+
+		// verify
+		assertEquals(CircuitBreaker.State.OPEN, getState());
+		try {
+			validate();
+			fail();
+		} catch (TrustServiceUnavailableException e) {
+			assertEquals("circuit open", e.getMessage());
+		}
+		assertEquals(3, this.usedClients.size());
+		assertEquals(2, this.testedInstance.getCircuitBreaker().getOpenCount());
+	}
+
+	private void validate() throws Exception {
+		this.testedInstance.validate("test", CHAIN);
+	}
+
+	private void failValidation() throws Exception {
+		try {
+			validate();
+			fail();
+		} catch (TrustServiceUnavailableException e) {
+			throw e;
+		} catch (TrustServiceException e) {
+			// expected
+		}
+	}
+
+	private CircuitBreaker.State getState() {
+		return this.testedInstance.getCircuitBreaker().getState();
+	}
+
+	private class FakeClientPool extends XKMS2ClientPool {
+
+		public FakeClientPool(String xkmsUrl) {
+			super(xkmsUrl, null, 0, TrustService.DEFAULT_TIMEOUT * 1000);
+		}
+
+		@Override
+		protected XKMS2Client createClient() {
+			XKMS2Client xkms2Client = new FakeXKMS2Client(getXkmsUrl());
+			TrustServiceBeanTest.this.createdClients.add(xkms2Client);
+			return xkms2Client;
+		}
+	}
+
+	private class FakeXKMS2Client extends XKMS2Client {
+
+		public FakeXKMS2Client(String location) {
+			super(location);
+		}
+
+		@Override
+		public void validate(String trustDomain,
+				List<X509Certificate> certificateChain) {
+			TrustServiceBeanTest.this.usedClients.add(this);
+			TrustServiceBeanTest.this.statesDuringCall.add(getState());
+			if (null != TrustServiceBeanTest.this.callStarted) {
+				TrustServiceBeanTest.this.callStarted.countDown();
+				try {
+					TrustServiceBeanTest.this.callReleased.await();
+				} catch (InterruptedException e) {
+					throw new WebServiceException(e);
+				}
+			}
+			if (null != TrustServiceBeanTest.this.failure) {
+				throw TrustServiceBeanTest.this.failure;
+			}
+		}
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2014 e-Contract.be BVBA.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package test.unit.be.fedict.eid.idp.model.bean;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.bouncycastle.jce.X509Principal;
+import org.bouncycastle.x509.X509V3CertificateGenerator;
+import org.easymock.EasyMock;
+import org.junit.Before;
+import org.junit.Test;
+
+import be.fedict.eid.idp.model.ConfigProperty;
+import be.fedict.eid.idp.model.Configuration;
+import be.fedict.eid.idp.model.bean.TrustValidationCacheBean;
+
+public class TrustValidationCacheBeanTest {
+
+	private TrustValidationCacheBean testedInstance;
+
+	private Configuration mockConfiguration;
+
+	@Before
+	public void setUp() throws Exception {
+		this.testedInstance = new TrustValidationCacheBean();
+		this.mockConfiguration = EasyMock.createMock(Configuration.class);
+		Field configurationField = TrustValidationCacheBean.class
+				.getDeclaredField("configuration");
+		configurationField.setAccessible(true);
+		configurationField.set(this.testedInstance, this.mockConfiguration);
+	}
+
+	@Test
+	public void testPositiveResultCached() throws Exception {
+		// setup
+		List<X509Certificate> chain = generateChain("CN=Test");
+
+		// expectations
+		EasyMock.expect(
+				this.mockConfiguration.getValue(
+						ConfigProperty.XKMS_CACHE_SIZE, Integer.class))
+				.andReturn(null);
+
+		// prepare
+		EasyMock.replay(this.mockConfiguration);
+
+		// operate & verify
+		assertFalse(this.testedInstance.isValid("be", chain));
+		this.testedInstance.setValid("be", chain, 60);
+		assertTrue(this.testedInstance.isValid("be", chain));
+		assertFalse(this.testedInstance.isValid("other", chain));
+		assertFalse(this.testedInstance.isValid(null, chain));
+		this.testedInstance.clear();
+		assertFalse(this.testedInstance.isValid("be", chain));
+		EasyMock.verify(this.mockConfiguration);
+	}
+
+	@Test
+	public void testNoCachingWithoutTtl() throws Exception {
+		// setup
+		List<X509Certificate> chain = generateChain("CN=Test");
+
+		// prepare
+		EasyMock.replay(this.mockConfiguration);
+
+		// operate & verify
+		this.testedInstance.setValid("be", chain, 0);
+		assertFalse(this.testedInstance.isValid("be", chain));
+		EasyMock.verify(this.mockConfiguration);
+	}
+
+	@Test
+	public void testBounded() throws Exception {
+		// setup
+		List<X509Certificate> chain1 = generateChain("CN=Test 1");
+		List<X509Certificate> chain2 = generateChain("CN=Test 2");
+
+		// expectations
+		EasyMock.expect(
+				this.mockConfiguration.getValue(
+						ConfigProperty.XKMS_CACHE_SIZE, Integer.class))
+				.andStubReturn(1);
+
+		// prepare
+		EasyMock.replay(this.mockConfiguration);
+
+		// operate
+		this.testedInstance.setValid("be", chain1, 60);
+		this.testedInstance.setValid("be", chain2, 60);
+
+		// verify
+		assertFalse(this.testedInstance.isValid("be", chain1));
+		assertTrue(this.testedInstance.isValid("be", chain2));
+		EasyMock.verify(this.mockConfiguration);
+	}
+
+	private List<X509Certificate> generateChain(String subjectDn)
+			throws Exception {
+		KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+		keyPairGenerator.initialize(1024);
+		KeyPair keyPair = keyPairGenerator.generateKeyPair();
+
+		X509V3CertificateGenerator certificateGenerator = new X509V3CertificateGenerator();
+		certificateGenerator.setPublicKey(keyPair.getPublic());
+		certificateGenerator.setSignatureAlgorithm("SHA1WithRSAEncryption");
+		Date now = new Date();
+		certificateGenerator.setNotBefore(now);
+		certificateGenerator.setNotAfter(new Date(now.getTime() + 3600 * 1000));
+		certificateGenerator.setIssuerDN(new X509Principal(subjectDn));
+		certificateGenerator.setSubjectDN(new X509Principal(subjectDn));
+		certificateGenerator.setSerialNumber(new BigInteger(128,
+				new SecureRandom()));
+		return Collections.singletonList(certificateGenerator
+				.generate(keyPair.getPrivate()));
+	}
+}
@@ -81,6 +81,8 @@ public abstract class AbstractOpenIDProtocolService implements
 	private static final Log LOG = LogFactory
 			.getLog(AbstractOpenIDProtocolService.class);
 
+	private IdentityProviderConfiguration configuration;
+
 	private String getServiceManagerAttribute() {
 
 		return AbstractOpenIDProtocolService.class.getName()
@@ -103,10 +105,30 @@ public abstract class AbstractOpenIDProtocolService implements
 		 * association store are different. See also:
 		 * http://code.google.com/p/openid4java/source/detail?r=738
 		 */
-		serverManager
-				.setSharedAssociations(new InMemoryServerAssociationStore());
-		serverManager
-				.setPrivateAssociations(new InMemoryServerAssociationStore());
+		byte[] associationSecret = null;
+		if (null != this.configuration) {
+			associationSecret = this.configuration
+					.getOpenIDAssociationSecret();
+		}
+		if (null != associationSecret) {
+			/*
+			 * Stateless associations can be handled by any eID IdP node that
+			 * shares the same secret. The shared and private stores derive
+			 * different keys from the secret.
+			 */
+			LOG.debug("using stateless OpenID associations");
+			serverManager
+					.setSharedAssociations(new StatelessServerAssociationStore(
+							associationSecret, "shared"));
+			serverManager
+					.setPrivateAssociations(new StatelessServerAssociationStore(
+							associationSecret, "private"));
+		} else {
+			serverManager
+					.setSharedAssociations(new InMemoryServerAssociationStore());
+			serverManager
+					.setPrivateAssociations(new InMemoryServerAssociationStore());
+		}
 		String location = "https://" + request.getServerName();
 		if (request.getServerPort() != 443) {
 			location += ":" + request.getServerPort();
@@ -130,6 +152,7 @@ public abstract class AbstractOpenIDProtocolService implements
 			IdentityProviderConfiguration configuration) {
 
 		LOG.debug("init");
+		this.configuration = configuration;
 
 		// add UI Extension message
 		try {
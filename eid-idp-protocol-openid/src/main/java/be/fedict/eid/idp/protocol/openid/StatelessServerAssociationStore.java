@@ -60,16 +60,44 @@ public class StatelessServerAssociationStore implements ServerAssociationStore {
 
 	private final static String CIPHER_ALGO = "AES/CBC/PKCS5Padding";
 
+	private final static String MAC_ALGO = "HmacSHA256";
+
 	private final SecretKeySpec secretKeySpec;
 
 	private final SecretKeySpec macSecretKeySpec;
 
 	private final SecureRandom secureRandom;
 
+	/*
+	 * Cipher and Mac instances are not thread-safe, and looking them up via
+	 * the JCA provider framework is costly. So we keep one per thread.
+	 */
+	private final ThreadLocal<Cipher> cipher = new ThreadLocal<Cipher>();
+
+	private final ThreadLocal<Mac> mac = new ThreadLocal<Mac>();
+
 	public StatelessServerAssociationStore(SecretKeySpec secretKeySpec) {
 		this(secretKeySpec, null);
 	}
 
+	/**
+	 * Constructor that derives both the AES and the HMAC secret key from a
+	 * single secret. Different labels yield independent keys, so the shared
+	 * and the private association store can be derived from the same secret
+	 * while their handles remain unusable in the other store.
+	 * 
+	 * @param secret
+	 *            the secret to derive the keys from.
+	 * @param label
+	 *            the label identifying the association store.
+	 */
+	public StatelessServerAssociationStore(byte[] secret, String label) {
+		this(new SecretKeySpec(Arrays.copyOf(
+				deriveKey(secret, "aes:" + label), 16), "AES"),
+				new SecretKeySpec(deriveKey(secret, "mac:" + label),
+						MAC_ALGO));
+	}
+
 	/**
 	 * Main constructor.
 	 * 
@@ -91,6 +119,40 @@ public class StatelessServerAssociationStore implements ServerAssociationStore {
 		this.secureRandom.setSeed(System.currentTimeMillis());
 	}
 
+	private static byte[] deriveKey(byte[] secret, String label) {
+		if (null == secret || 0 == secret.length) {
+			throw new IllegalArgumentException("missing secret");
+		}
+		try {
+			Mac mac = Mac.getInstance(MAC_ALGO);
+			mac.init(new SecretKeySpec(secret, MAC_ALGO));
+			return mac.doFinal(label.getBytes("UTF-8"));
+		} catch (Exception e) {
+			throw new RuntimeException("key derivation error: "
+					+ e.getMessage(), e);
+		}
+	}
+
+	private Cipher getCipher() throws NoSuchAlgorithmException,
+			NoSuchPaddingException {
+		Cipher cipher = this.cipher.get();
+		if (null == cipher) {
+			cipher = Cipher.getInstance(CIPHER_ALGO);
+			this.cipher.set(cipher);
+		}
+		return cipher;
+	}
+
+	private Mac getMac() throws NoSuchAlgorithmException, InvalidKeyException {
+		Mac mac = this.mac.get();
+		if (null == mac) {
+			mac = Mac.getInstance(MAC_ALGO);
+			mac.init(this.macSecretKeySpec);
+			this.mac.set(mac);
+		}
+		return mac;
+	}
+
 	public Association generate(String type, int expiryIn)
 			throws AssociationException {
 		String tmpHandle = "";
@@ -143,7 +205,7 @@ public class StatelessServerAssociationStore implements ServerAssociationStore {
 		DataOutputStream dos = new DataOutputStream(encodedAssociation);
 		dos.writeLong(time);
 		dos.flush();
-		Cipher cipher = Cipher.getInstance(CIPHER_ALGO);
+		Cipher cipher = getCipher();
 		byte[] iv = new byte[16];
 		this.secureRandom.nextBytes(iv);
 		IvParameterSpec ivParameterSpec = new IvParameterSpec(iv);
@@ -153,8 +215,7 @@ public class StatelessServerAssociationStore implements ServerAssociationStore {
 		result.write(iv);
 		result.write(handleValue);
 		if (null != this.macSecretKeySpec) {
-			Mac mac = Mac.getInstance("HmacSHA256");
-			mac.init(this.macSecretKeySpec);
+			Mac mac = getMac();
 			byte[] toBeSigned = result.toByteArray();
 			byte[] signature = mac.doFinal(toBeSigned);
 			result = new ByteArrayOutputStream();
@@ -187,8 +248,7 @@ public class StatelessServerAssociationStore implements ServerAssociationStore {
 			byte[] toBeSigned = new byte[encodedHandle.length - 32];
 			System.arraycopy(encodedHandle, 32, toBeSigned, 0,
 					encodedHandle.length - 32);
-			Mac mac = Mac.getInstance("HmacSHA256");
-			mac.init(this.macSecretKeySpec);
+			Mac mac = getMac();
 			byte[] actualSignature = mac.doFinal(toBeSigned);
 			if (false == Arrays.equals(actualSignature, signature)) {
 				return null;
@@ -199,7 +259,7 @@ public class StatelessServerAssociationStore implements ServerAssociationStore {
 		System.arraycopy(encodedHandle, 0, iv, 0, iv.length);
 		byte[] encodedData = Arrays.copyOfRange(encodedHandle, 16,
 				encodedHandle.length);
-		Cipher cipher = Cipher.getInstance(CIPHER_ALGO);
+		Cipher cipher = getCipher();
 		IvParameterSpec ivParameterSpec = new IvParameterSpec(iv);
 		cipher.init(Cipher.DECRYPT_MODE, this.secretKeySpec, ivParameterSpec);
 		byte[] associationBytes = cipher.doFinal(encodedData);
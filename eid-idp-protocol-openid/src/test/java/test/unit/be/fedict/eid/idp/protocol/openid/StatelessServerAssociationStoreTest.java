@@ -21,6 +21,7 @@ package test.unit.be.fedict.eid.idp.protocol.openid;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 
 import javax.crypto.spec.SecretKeySpec;
@@ -162,4 +163,25 @@ public class StatelessServerAssociationStoreTest {
 		assertArrayEquals(association.getMacKey().getEncoded(),
 				loadedAssociation.getMacKey().getEncoded());
 	}
+
+	@Test
+	public void testDerivedKeysAcrossNodes() throws Exception {
+		byte[] secret = "secret".getBytes();
+		StatelessServerAssociationStore node1 = new StatelessServerAssociationStore(
+				secret, "shared");
+		StatelessServerAssociationStore node2 = new StatelessServerAssociationStore(
+				secret, "shared");
+		StatelessServerAssociationStore privateStore = new StatelessServerAssociationStore(
+				secret, "private");
+
+		Association association = node1.generate(Association.TYPE_HMAC_SHA256,
+				1000);
+
+		Association loadedAssociation = node2.load(association.getHandle());
+		assertNotNull(loadedAssociation);
+		assertArrayEquals(association.getMacKey().getEncoded(),
+				loadedAssociation.getMacKey().getEncoded());
+
+		assertNull(privateStore.load(association.getHandle()));
+	}
 }
@@ -18,7 +18,6 @@
 
 package be.fedict.eid.idp.saml2.ws;
 
-import java.io.ByteArrayOutputStream;
 import java.util.Set;
 
 import javax.xml.namespace.QName;
@@ -30,6 +29,8 @@ import javax.xml.ws.handler.soap.SOAPMessageContext;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import be.fedict.eid.idp.common.saml2.XmlDump;
+
 public class LoggingSoapHandler implements SOAPHandler<SOAPMessageContext> {
 
 	private static final Log LOG = LogFactory.getLog(LoggingSoapHandler.class);
@@ -52,13 +53,7 @@ public class LoggingSoapHandler implements SOAPHandler<SOAPMessageContext> {
 				.get(MessageContext.MESSAGE_OUTBOUND_PROPERTY);
 		LOG.debug("outbound message: " + outboundProperty);
 		SOAPMessage soapMessage = context.getMessage();
-		ByteArrayOutputStream output = new ByteArrayOutputStream();
-		try {
-			soapMessage.writeTo(output);
-		} catch (Exception e) {
-			LOG.error("SOAP error: " + e.getMessage());
-		}
-		LOG.debug("SOAP message: " + output.toString());
+		XmlDump.debug(LOG, "SOAP message: ", soapMessage);
 		return true;
 	}
 
@@ -18,6 +18,7 @@
 
 package be.fedict.eid.idp.protocol.saml2;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 
@@ -39,6 +40,7 @@ import be.fedict.eid.idp.spi.IdPIdentity;
 import be.fedict.eid.idp.spi.IdentityProviderConfiguration;
 import be.fedict.eid.idp.spi.IdentityProviderConfigurationFactory;
 import be.fedict.eid.idp.spi.IdentityProviderProtocolService;
+import be.fedict.eid.idp.spi.MetadataCache;
 
 public abstract class AbstractSAML2MetadataHttpServlet extends HttpServlet {
 
@@ -47,6 +49,8 @@ public abstract class AbstractSAML2MetadataHttpServlet extends HttpServlet {
 	private static final Log LOG = LogFactory
 			.getLog(AbstractSAML2MetadataHttpServlet.class);
 
+	private final transient MetadataCache metadataCache = new MetadataCache();
+
 	static {
 		/*
 		 * Next is because Sun loves to endorse crippled versions of Xerces.
@@ -71,12 +75,27 @@ public abstract class AbstractSAML2MetadataHttpServlet extends HttpServlet {
 		IdentityProviderConfiguration configuration = IdentityProviderConfigurationFactory
 				.getInstance(request);
 
-		OutputStream outputStream = response.getOutputStream();
-		try {
-			writeMetadata(request, configuration, outputStream);
-		} catch (Exception e) {
-			throw new ServletException("error: " + e.getMessage(), e);
+		/*
+		 * Signing the metadata is expensive, while its content only changes
+		 * with the IdP identity and issuer.
+		 */
+		String key = MetadataCache.getKey(request, getPath());
+		String version = MetadataCache.getVersion(configuration
+				.findIdentity(), AbstractSAML2ProtocolService
+				.getResponseIssuer(configuration));
+		MetadataCache.Entry entry = this.metadataCache.find(key, version);
+		if (null == entry) {
+			LOG.debug("metadata cache miss: " + key);
+			ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			try {
+				writeMetadata(request, configuration, outputStream);
+			} catch (Exception e) {
+				throw new ServletException("error: " + e.getMessage(), e);
+			}
+			entry = this.metadataCache.put(key, version,
+					outputStream.toByteArray());
 		}
+		entry.write(request, response);
 	}
 
 	private void writeMetadata(HttpServletRequest request,
@@ -49,6 +49,7 @@ import be.fedict.eid.idp.common.Attribute;
 import be.fedict.eid.idp.common.AttributeConstants;
 import be.fedict.eid.idp.common.SamlAuthenticationPolicy;
 import be.fedict.eid.idp.common.saml2.Saml2Util;
+import be.fedict.eid.idp.common.saml2.XmlDump;
 import be.fedict.eid.idp.spi.DefaultAttribute;
 import be.fedict.eid.idp.spi.IdentityProviderConfiguration;
 import be.fedict.eid.idp.spi.IdentityProviderFlow;
@@ -157,9 +158,7 @@ public abstract class AbstractSAML2ProtocolService implements
 		String inResponseTo = authnRequest.getID();
 		setInResponseTo(inResponseTo, request);
 
-		LOG.debug("request: "
-				+ Saml2Util.domToString(Saml2Util.marshall(authnRequest)
-						.getOwnerDocument(), true));
+		XmlDump.debug(LOG, "request: ", authnRequest);
 
 		// Signature validation
 		X509Certificate certificate = null;
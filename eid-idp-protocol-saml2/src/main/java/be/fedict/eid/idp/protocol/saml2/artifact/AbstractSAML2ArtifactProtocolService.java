@@ -22,16 +22,15 @@ import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
 
 import org.opensaml.common.binding.BasicSAMLMessageContext;
-import org.opensaml.common.binding.artifact.BasicSAMLArtifactMap;
-import org.opensaml.common.binding.artifact.SAMLArtifactMap;
 import org.opensaml.saml2.core.Response;
-import org.opensaml.saml2.metadata.EntityDescriptor;
-import org.opensaml.util.storage.MapBasedStorageService;
 import org.opensaml.ws.transport.OutTransport;
 
 import be.fedict.eid.idp.protocol.saml2.AbstractSAML2ProtocolService;
 import be.fedict.eid.idp.protocol.saml2.HTTPOutTransport;
+import be.fedict.eid.idp.spi.ArtifactStore;
+import be.fedict.eid.idp.spi.ArtifactStoreFactory;
 import be.fedict.eid.idp.spi.IdentityProviderConfiguration;
+import be.fedict.eid.idp.spi.MemoryArtifactStore;
 import be.fedict.eid.idp.spi.ReturnResponse;
 
 public abstract class AbstractSAML2ArtifactProtocolService extends
@@ -40,6 +39,10 @@ public abstract class AbstractSAML2ArtifactProtocolService extends
 	public static final String ARTIFACT_MAP_ATTRIBUTE = AbstractSAML2ArtifactProtocolService.class
 			.getName() + "." + "ArtifactMap";
 
+	private static final Object ARTIFACT_MAP_LOCK = new Object();
+
+	private volatile ArtifactIssuerContext artifactIssuerContext;
+
 	@SuppressWarnings("unchecked")
 	@Override
 	protected ReturnResponse handleSamlResponse(HttpServletRequest request,
@@ -53,10 +56,8 @@ public abstract class AbstractSAML2ArtifactProtocolService extends
 		BasicSAMLMessageContext messageContext = new BasicSAMLMessageContext();
 
 		// used for construction of artifact by looking up IndexedEndpoint
-		EntityDescriptor entityDescriptor = getEntityDescriptor(request);
-		messageContext.setLocalEntityRoleMetadata(entityDescriptor
-				.getRoleDescriptors().get(0));
-		messageContext.setLocalEntityId(entityDescriptor.getEntityID());
+		getArtifactIssuerContext(samlResponse.getIssuer().getValue()).apply(
+				messageContext);
 
 		messageContext.setInboundMessageIssuer(getIssuer(request.getSession()));
 		messageContext.setOutboundSAMLMessage(samlResponse);
@@ -71,12 +72,21 @@ public abstract class AbstractSAML2ArtifactProtocolService extends
 		return returnResponse;
 	}
 
-	public static SAMLArtifactMap getArtifactMap(ServletContext context) {
+	public static ArtifactStoreSAMLArtifactMap getArtifactMap(
+			ServletContext context) {
 
-		BasicSAMLArtifactMap artifactMap = (BasicSAMLArtifactMap) context
+		ArtifactStoreSAMLArtifactMap artifactMap = (ArtifactStoreSAMLArtifactMap) context
 				.getAttribute(ARTIFACT_MAP_ATTRIBUTE);
+		if (null != artifactMap) {
+			return artifactMap;
+		}
 
-		if (null == artifactMap) {
+		synchronized (ARTIFACT_MAP_LOCK) {
+			artifactMap = (ArtifactStoreSAMLArtifactMap) context
+					.getAttribute(ARTIFACT_MAP_ATTRIBUTE);
+			if (null != artifactMap) {
+				return artifactMap;
+			}
 
 			IdentityProviderConfiguration configuration = getIdPConfiguration(context);
 
@@ -86,14 +96,40 @@ public abstract class AbstractSAML2ArtifactProtocolService extends
 				validity = configuration.getResponseTokenValidity();
 			}
 
-			artifactMap = new BasicSAMLArtifactMap(
-					new MapBasedStorageService<String, SAMLArtifactMap.SAMLArtifactMapEntry>(),
+			ArtifactStore artifactStore = ArtifactStoreFactory
+					.getInstance(context);
+			if (null == artifactStore) {
+				/*
+				 * No store got registered at startup, so nothing would stop
+				 * a sweep timer on undeploy. Expired artifacts are dropped
+				 * on access and swept when the store is full instead.
+				 */
+				artifactStore = new MemoryArtifactStore(
+						MemoryArtifactStore.DEFAULT_MAX_ENTRIES, 0);
+				context.setAttribute(
+						ArtifactStoreFactory.ARTIFACT_STORE_CONTEXT_ATTRIBUTE,
+						artifactStore);
+			}
+
+			artifactMap = new ArtifactStoreSAMLArtifactMap(artifactStore,
 					validity * 60 * 1000);
 			context.setAttribute(ARTIFACT_MAP_ATTRIBUTE, artifactMap);
+			return artifactMap;
 		}
-		return artifactMap;
 	}
 
-	protected abstract EntityDescriptor getEntityDescriptor(
-			HttpServletRequest request);
+	/**
+	 * Gives back the artifact issuer context for the given response issuer.
+	 * The context only changes with the issuer configuration, so it is built
+	 * once and reused for all subsequent responses.
+	 */
+	private ArtifactIssuerContext getArtifactIssuerContext(String issuer) {
+
+		ArtifactIssuerContext context = this.artifactIssuerContext;
+		if (null == context || !context.getEntityId().equals(issuer)) {
+			context = new ArtifactIssuerContext(issuer);
+			this.artifactIssuerContext = context;
+		}
+		return context;
+	}
 }
@@ -0,0 +1,91 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.protocol.saml2.artifact;
+
+import org.opensaml.common.binding.SAMLMessageContext;
+import org.opensaml.common.xml.SAMLConstants;
+import org.opensaml.saml2.metadata.ArtifactResolutionService;
+import org.opensaml.saml2.metadata.IDPSSODescriptor;
+
+import be.fedict.eid.idp.common.saml2.Saml2Util;
+import be.fedict.eid.idp.spi.IdentityProviderProtocolService;
+
+/**
+ * Local entity information required to build a SAML2 type 0x0004 artifact:
+ * the entity ID, from which the source ID is derived, and a role descriptor
+ * carrying the index of the artifact resolution service. This is all the
+ * artifact encoder needs from the metadata, so we don't have to build a full
+ * (signed) entity descriptor for every response.
+ * <p/>
+ * Instances are immutable and can be shared between requests.
+ */
+public class ArtifactIssuerContext {
+
+	public static final int ARTIFACT_RESOLUTION_SERVICE_INDEX = 0;
+
+	private final String entityId;
+
+	private final IDPSSODescriptor roleDescriptor;
+
+	public ArtifactIssuerContext(String entityId) {
+
+		this.entityId = entityId;
+
+		ArtifactResolutionService artifactResolutionService = Saml2Util
+				.buildXMLObject(ArtifactResolutionService.class,
+						ArtifactResolutionService.DEFAULT_ELEMENT_NAME);
+		/*
+		 * Only the index ends up in the artifact, so a relative location
+		 * will do.
+		 */
+		artifactResolutionService
+				.setLocation(IdentityProviderProtocolService.WS_ENDPOINT_CONTEXT_PATH
+						+ "/saml2/artifact");
+		artifactResolutionService
+				.setBinding(SAMLConstants.SAML2_SOAP11_BINDING_URI);
+		artifactResolutionService.setIndex(ARTIFACT_RESOLUTION_SERVICE_INDEX);
+		artifactResolutionService.setIsDefault(true);
+
+		this.roleDescriptor = Saml2Util.buildXMLObject(IDPSSODescriptor.class,
+				IDPSSODescriptor.DEFAULT_ELEMENT_NAME);
+		this.roleDescriptor.addSupportedProtocol(SAMLConstants.SAML20P_NS);
+		this.roleDescriptor.getArtifactResolutionServices().add(
+				artifactResolutionService);
+	}
+
+	public String getEntityId() {
+		return this.entityId;
+	}
+
+	public IDPSSODescriptor getRoleDescriptor() {
+		return this.roleDescriptor;
+	}
+
+	/**
+	 * Sets the local entity of the given message context.
+	 * 
+	 * @param messageContext
+	 *            the message context used for artifact construction.
+	 */
+	public void apply(SAMLMessageContext messageContext) {
+
+		messageContext.setLocalEntityId(this.entityId);
+		messageContext.setLocalEntityRoleMetadata(this.roleDescriptor);
+	}
+}
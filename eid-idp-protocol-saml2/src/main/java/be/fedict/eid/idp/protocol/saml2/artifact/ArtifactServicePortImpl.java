@@ -64,7 +64,7 @@ public class ArtifactServicePortImpl implements ArtifactServicePortType {
 				.getID());
 
 		// get SAML Artifact Map
-		SAMLArtifactMap artifactMap = AbstractSAML2ArtifactProtocolService
+		ArtifactStoreSAMLArtifactMap artifactMap = AbstractSAML2ArtifactProtocolService
 				.getArtifactMap(servletContext);
 
 		SAMLArtifactMap.SAMLArtifactMapEntry entry = artifactMap
@@ -83,11 +83,12 @@ public class ArtifactServicePortImpl implements ArtifactServicePortType {
 				artifactResponse = getArtifactResponse(
 						artifactResolveType.getID(),
 						StatusCode.REQUEST_DENIED_URI, message);
-			} else {
+			} else if (artifactMap.consume(artifactResolveType.getArtifact())) {
 
 				LOG.debug("response found and added");
 				artifactResponse.setMessage(entry.getSamlMessage());
-				artifactMap.remove(artifactResolveType.getArtifact());
+			} else {
+				LOG.debug("artifact already resolved");
 			}
 		}
 
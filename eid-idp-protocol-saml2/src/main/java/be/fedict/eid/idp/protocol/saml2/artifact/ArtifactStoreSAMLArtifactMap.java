@@ -0,0 +1,99 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.protocol.saml2.artifact;
+
+import org.opensaml.common.SAMLObject;
+import org.opensaml.common.binding.artifact.BasicSAMLArtifactMapEntry;
+import org.opensaml.common.binding.artifact.SAMLArtifactMap;
+import org.opensaml.xml.io.MarshallingException;
+import org.w3c.dom.Element;
+
+import be.fedict.eid.idp.common.saml2.Saml2Util;
+import be.fedict.eid.idp.spi.ArtifactStore;
+import be.fedict.eid.idp.spi.ArtifactStoreEntry;
+
+/**
+ * {@link SAMLArtifactMap} on top of an {@link ArtifactStore}. The SAML
+ * messages are stored in their serialized form.
+ */
+public class ArtifactStoreSAMLArtifactMap implements SAMLArtifactMap {
+
+	private final ArtifactStore artifactStore;
+
+	private final long artifactLifetime;
+
+	/**
+	 * Main constructor
+	 * 
+	 * @param artifactStore
+	 *            the underlying artifact store
+	 * @param artifactLifetime
+	 *            lifetime of an artifact in milliseconds
+	 */
+	public ArtifactStoreSAMLArtifactMap(ArtifactStore artifactStore,
+			long artifactLifetime) {
+		this.artifactStore = artifactStore;
+		this.artifactLifetime = artifactLifetime;
+	}
+
+	public boolean contains(String artifact) {
+		return null != this.artifactStore.get(artifact);
+	}
+
+	public void put(String artifact, String relyingPartyId, String issuerId,
+			SAMLObject samlMessage) throws MarshallingException {
+
+		String message = Saml2Util.domToString(
+				Saml2Util.marshall(samlMessage), false);
+		this.artifactStore.put(artifact, new ArtifactStoreEntry(issuerId,
+				relyingPartyId, message, System.currentTimeMillis()
+						+ this.artifactLifetime));
+	}
+
+	public SAMLArtifactMapEntry get(String artifact) {
+
+		ArtifactStoreEntry entry = this.artifactStore.get(artifact);
+		if (null == entry) {
+			return null;
+		}
+		Element messageElement = Saml2Util.parseDocument(entry.getMessage())
+				.getDocumentElement();
+		SAMLObject samlMessage = Saml2Util.unmarshall(messageElement);
+		long remainingLifetime = entry.getExpirationTime()
+				- System.currentTimeMillis();
+		return new BasicSAMLArtifactMapEntry(artifact, entry.getIssuerId(),
+				entry.getRelyingPartyId(), samlMessage, remainingLifetime);
+	}
+
+	public void remove(String artifact) {
+		this.artifactStore.remove(artifact);
+	}
+
+	/**
+	 * Removes the given artifact, making sure it can only be resolved once.
+	 * 
+	 * @param artifact
+	 *            the encoded artifact
+	 * @return <code>true</code> if the caller consumed the artifact,
+	 *         <code>false</code> if it was already consumed or expired.
+	 */
+	public boolean consume(String artifact) {
+		return this.artifactStore.remove(artifact);
+	}
+}
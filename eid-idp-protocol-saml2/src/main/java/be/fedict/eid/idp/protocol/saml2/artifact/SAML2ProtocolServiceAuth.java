@@ -18,12 +18,6 @@
 
 package be.fedict.eid.idp.protocol.saml2.artifact;
 
-import javax.servlet.http.HttpServletRequest;
-
-import org.opensaml.saml2.metadata.EntityDescriptor;
-
-import be.fedict.eid.idp.protocol.saml2.AbstractSAML2ProtocolService;
-import be.fedict.eid.idp.spi.IdentityProviderConfiguration;
 import be.fedict.eid.idp.spi.IdentityProviderFlow;
 
 public class SAML2ProtocolServiceAuth extends
@@ -33,14 +27,4 @@ public class SAML2ProtocolServiceAuth extends
 	protected IdentityProviderFlow getAuthenticationFlow() {
 		return IdentityProviderFlow.AUTHENTICATION;
 	}
-
-	@Override
-	protected EntityDescriptor getEntityDescriptor(HttpServletRequest request) {
-
-		IdentityProviderConfiguration configuration = AbstractSAML2ProtocolService
-				.getIdPConfiguration(request.getSession().getServletContext());
-
-		return new SAML2MetadataHttpServletAuth().getEntityDescriptor(request,
-				configuration);
-	}
 }
@@ -18,12 +18,6 @@
 
 package be.fedict.eid.idp.protocol.saml2.artifact;
 
-import javax.servlet.http.HttpServletRequest;
-
-import org.opensaml.saml2.metadata.EntityDescriptor;
-
-import be.fedict.eid.idp.protocol.saml2.AbstractSAML2ProtocolService;
-import be.fedict.eid.idp.spi.IdentityProviderConfiguration;
 import be.fedict.eid.idp.spi.IdentityProviderFlow;
 
 public class SAML2ProtocolServiceIdent extends
@@ -33,14 +27,4 @@ public class SAML2ProtocolServiceIdent extends
 	protected IdentityProviderFlow getAuthenticationFlow() {
 		return IdentityProviderFlow.IDENTIFICATION;
 	}
-
-	@Override
-	protected EntityDescriptor getEntityDescriptor(HttpServletRequest request) {
-
-		IdentityProviderConfiguration configuration = AbstractSAML2ProtocolService
-				.getIdPConfiguration(request.getSession().getServletContext());
-
-		return new SAML2MetadataHttpServletIdent().getEntityDescriptor(request,
-				configuration);
-	}
 }
@@ -69,6 +69,7 @@ import be.fedict.eid.idp.common.Attribute;
 import be.fedict.eid.idp.protocol.saml2.AbstractSAML2ProtocolService;
 import be.fedict.eid.idp.protocol.saml2.artifact.AbstractSAML2ArtifactProtocolService;
 import be.fedict.eid.idp.protocol.saml2.artifact.SAML2ProtocolServiceAuthIdent;
+import be.fedict.eid.idp.spi.ArtifactStoreFactory;
 import be.fedict.eid.idp.spi.IdPIdentity;
 import be.fedict.eid.idp.spi.IdentityProviderConfiguration;
 import be.fedict.eid.idp.spi.NameValuePair;
@@ -126,11 +127,11 @@ public class SAML2ArtifactProtocolServiceTest {
 				AbstractSAML2ProtocolService.IDP_CONFIG_CONTEXT_ATTRIBUTE,
 				mockConfiguration);
 		EasyMock.expect(mockHttpSession.getServletContext())
-				.andReturn(mockServletContext).times(3);
+				.andReturn(mockServletContext).times(2);
 		EasyMock.expect(
 				mockServletContext
 						.getAttribute(AbstractSAML2ProtocolService.IDP_CONFIG_CONTEXT_ATTRIBUTE))
-				.andReturn(mockConfiguration).times(3);
+				.andReturn(mockConfiguration).times(2);
 		EasyMock.expect(
 				mockHttpSession
 						.getAttribute(AbstractSAML2ProtocolService.TARGET_URL_SESSION_ATTRIBUTE))
@@ -158,21 +159,19 @@ public class SAML2ArtifactProtocolServiceTest {
 				"TestIssuer");
 
 		EasyMock.expect(mockHttpServletRequest.getSession())
-				.andReturn(mockHttpSession).times(3);
+				.andReturn(mockHttpSession).times(2);
 		EasyMock.expect(
 				mockServletContext
 						.getAttribute(AbstractSAML2ArtifactProtocolService.ARTIFACT_MAP_ATTRIBUTE))
 				.andReturn(null);
+		EasyMock.expect(
+				mockServletContext
+						.getAttribute(ArtifactStoreFactory.ARTIFACT_STORE_CONTEXT_ATTRIBUTE))
+				.andReturn(null);
 		mockServletContext
 				.setAttribute(
 						EasyMock.matches(AbstractSAML2ArtifactProtocolService.ARTIFACT_MAP_ATTRIBUTE),
 						EasyMock.anyObject());
-		EasyMock.expect(mockHttpServletRequest.getServerName())
-				.andReturn("127.0.0.1").times(2);
-		EasyMock.expect(mockHttpServletRequest.getServerPort()).andReturn(8443)
-				.times(3);
-		EasyMock.expect(mockHttpServletRequest.getContextPath())
-				.andReturn("/eid-idp").times(2);
 		EasyMock.expect(
 				mockHttpSession
 						.getAttribute(AbstractSAML2ArtifactProtocolService.ISSUER_SESSION_ATTRIBUTE))
@@ -18,6 +18,7 @@
 
 package be.fedict.eid.idp.protocol.ws_federation;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.security.InvalidAlgorithmParameterException;
@@ -83,6 +84,7 @@ import be.fedict.eid.idp.spi.IdPIdentity;
 import be.fedict.eid.idp.spi.IdentityProviderConfiguration;
 import be.fedict.eid.idp.spi.IdentityProviderConfigurationFactory;
 import be.fedict.eid.idp.spi.IdentityProviderProtocolService;
+import be.fedict.eid.idp.spi.MetadataCache;
 
 public abstract class AbstractWSFederationMetadataHttpServlet extends
 		HttpServlet {
@@ -92,6 +94,8 @@ public abstract class AbstractWSFederationMetadataHttpServlet extends
 	private static final Log LOG = LogFactory
 			.getLog(AbstractWSFederationMetadataHttpServlet.class);
 
+	private final transient MetadataCache metadataCache = new MetadataCache();
+
 	static {
 		/*
 		 * Next is because Sun loves to endorse crippled versions of Xerces.
@@ -154,17 +158,45 @@ public abstract class AbstractWSFederationMetadataHttpServlet extends
 		IdentityProviderConfiguration configuration = IdentityProviderConfigurationFactory
 				.getInstance(request);
 
-		OutputStream outputStream = response.getOutputStream();
-		try {
-			writeMetadata(request, configuration, outputStream);
-		} catch (Exception e) {
-			throw new ServletException("error: " + e.getMessage(), e);
+		/*
+		 * Signing the metadata is expensive, while its content only changes
+		 * with the IdP identity and the offered claims.
+		 */
+		List<AttributeConfig> attributes = configuration
+				.getAttributes(AbstractWSFederationProtocolService.WS_FED_PROTOCOL_ID);
+		String key = MetadataCache.getKey(request, getPath());
+		String version = MetadataCache.getVersion(
+				configuration.findIdentity(), getClaimsVersion(attributes));
+		MetadataCache.Entry entry = this.metadataCache.find(key, version);
+		if (null == entry) {
+			LOG.debug("metadata cache miss: " + key);
+			ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			try {
+				writeMetadata(request, configuration, attributes, outputStream);
+			} catch (Exception e) {
+				throw new ServletException("error: " + e.getMessage(), e);
+			}
+			entry = this.metadataCache.put(key, version,
+					outputStream.toByteArray());
+		}
+		entry.write(request, response);
+	}
+
+	private String getClaimsVersion(List<AttributeConfig> attributes) {
+
+		StringBuilder claimsVersion = new StringBuilder();
+		for (AttributeConfig attribute : attributes) {
+			claimsVersion.append(attribute.getUri()).append('\n');
+			claimsVersion.append(attribute.getName()).append('\n');
+			claimsVersion.append(attribute.getDescription()).append('\n');
 		}
+		return claimsVersion.toString();
 	}
 
 	private void writeMetadata(HttpServletRequest request,
 			IdentityProviderConfiguration configuration,
-			OutputStream outputStream) throws JAXBException, ServletException,
+			List<AttributeConfig> attributes, OutputStream outputStream)
+			throws JAXBException, ServletException,
 			ParserConfigurationException, CertificateEncodingException,
 			TransformerFactoryConfigurationError, TransformerException,
 			IOException, NoSuchAlgorithmException,
@@ -237,8 +269,7 @@ public abstract class AbstractWSFederationMetadataHttpServlet extends
 
 		List<ClaimType> claimTypes = claimTypesOffered.getClaimTypes();
 
-		for (AttributeConfig attribute : configuration
-				.getAttributes(AbstractWSFederationProtocolService.WS_FED_PROTOCOL_ID)) {
+		for (AttributeConfig attribute : attributes) {
 			addClaimType(attribute.getUri(), attribute.getName(),
 					attribute.getDescription(), claimTypes);
 		}
@@ -18,10 +18,9 @@
 
 package be.fedict.eid.idp.protocol.ws_federation;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.StringWriter;
 import java.net.URL;
-import java.nio.charset.Charset;
 import java.security.PublicKey;
 import java.util.Collections;
 import java.util.Map;
@@ -50,6 +49,7 @@ import org.w3c.dom.Element;
 import be.fedict.eid.idp.common.Attribute;
 import be.fedict.eid.idp.common.AttributeConstants;
 import be.fedict.eid.idp.common.SamlAuthenticationPolicy;
+import be.fedict.eid.idp.common.saml2.DomSerializer;
 import be.fedict.eid.idp.common.saml2.Saml2Util;
 import be.fedict.eid.idp.spi.DefaultAttribute;
 import be.fedict.eid.idp.spi.IdPIdentity;
@@ -274,10 +274,9 @@ public abstract class AbstractWSFederationProtocolService implements
 					.marshall(requestSecurityTokenResponseCollection);
 		}
 
-		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-		Saml2Util.writeDocument(element.getOwnerDocument(), outputStream);
-		String wresult = new String(outputStream.toByteArray(),
-				Charset.forName("UTF-8"));
+		StringWriter writer = new StringWriter();
+		DomSerializer.write(element.getOwnerDocument(), writer);
+		String wresult = writer.toString();
 		LOG.debug("wresult=\"" + wresult + "\"");
 		return wresult;
 	}
@@ -18,7 +18,7 @@
 
 package be.fedict.eid.idp.protocol.ws_federation.sts;
 
-import java.io.StringWriter;
+import java.security.MessageDigest;
 import java.security.cert.X509Certificate;
 import java.util.Arrays;
 import java.util.List;
@@ -29,14 +29,7 @@ import javax.jws.WebService;
 import javax.servlet.ServletContext;
 import javax.xml.bind.JAXBElement;
 import javax.xml.namespace.QName;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Result;
-import javax.xml.transform.Source;
-import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
 import javax.xml.ws.BindingType;
 import javax.xml.ws.WebServiceContext;
 import javax.xml.ws.handler.MessageContext;
@@ -45,9 +38,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.xml.security.Init;
 import org.apache.xml.security.keys.KeyInfo;
+import org.apache.xml.security.signature.SignedInfo;
 import org.apache.xml.security.signature.XMLSignature;
-import org.apache.xml.security.utils.Constants;
-import org.apache.xpath.XPathAPI;
 import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormatter;
 import org.joda.time.format.ISODateTimeFormat;
@@ -55,6 +47,8 @@ import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
 import be.fedict.eid.idp.common.SamlAuthenticationPolicy;
+import be.fedict.eid.idp.common.saml2.DomSerializer;
+import be.fedict.eid.idp.common.saml2.XPathUtil;
 import be.fedict.eid.idp.spi.IdentityProviderConfiguration;
 import be.fedict.eid.idp.spi.IdentityProviderConfigurationFactory;
 import be.fedict.eid.idp.wstrust.WSTrustConstants;
@@ -72,6 +66,10 @@ import be.fedict.eid.idp.wstrust.jaxws.SecurityTokenServicePort;
  * Implementation of WS-Trust STS token validation service. Via this web service
  * relying parties can validate the SAML assertions produced by the
  * WS-Federation web passive authentication protocol.
+ * <p/>
+ * Verified token signatures are remembered until the token expires, so
+ * relying parties validating the same token again do not trigger another RSA
+ * verification.
  * 
  * @author Frank Cornelis
  * 
@@ -84,6 +82,11 @@ public class SecurityTokenServicePortImpl implements SecurityTokenServicePort {
 	private static final Log LOG = LogFactory
 			.getLog(SecurityTokenServicePortImpl.class);
 
+	private static final int MAX_VALIDATED_TOKENS = 10000;
+
+	private static final ValidatedTokenCache validatedTokenCache = new ValidatedTokenCache(
+			MAX_VALIDATED_TOKENS);
+
 	@Resource
 	private WebServiceContext context;
 
@@ -216,45 +219,67 @@ public class SecurityTokenServicePortImpl implements SecurityTokenServicePort {
 					"no eID IdP service identity configured");
 		}
 
-		Element nsElement = tokenElement.getOwnerDocument().createElement(
-				"nsElement");
-		nsElement.setAttributeNS(Constants.NamespaceSpecNS, "xmlns:ds",
-				"http://www.w3.org/2000/09/xmldsig#");
-		nsElement.setAttributeNS(Constants.NamespaceSpecNS, "xmlns:saml2",
-				"urn:oasis:names:tc:SAML:2.0:assertion");
 		LOG.debug("token element: " + tokenElement.getLocalName());
 		LOG.debug("token element namespace: " + tokenElement.getNamespaceURI());
-		LOG.debug("token: " + toString(tokenElement));
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("token: " + toString(tokenElement));
+		}
 		
 		// fix for recent versions of Apache xmlsec.
 		tokenElement.setIdAttribute("ID", true);
 		
-		Element signatureElement = (Element) XPathAPI.selectSingleNode(
-				tokenElement, "ds:Signature", nsElement);
+		Element signatureElement = (Element) XPathUtil.find(tokenElement,
+				"ds:Signature");
 		if (null == signatureElement) {
 			throw new SecurityException("missing XML signature");
 		}
 
-		XMLSignature xmlSignature = new XMLSignature(signatureElement, "");
-		KeyInfo keyInfo = xmlSignature.getKeyInfo();
-		X509Certificate actualCertificate = keyInfo.getX509Certificate();
-		boolean signatureResult = xmlSignature
-				.checkSignatureValue(actualCertificate);
-		if (false == signatureResult) {
-			throw new SecurityException("invalid XML signature");
-		}
-		LOG.debug("XML signature OK");
+		String notBeforeStr = XPathUtil.find(tokenElement,
+				"saml2:Conditions/@NotBefore").getNodeValue();
+		String notOnOrAfterStr = XPathUtil.find(tokenElement,
+				"saml2:Conditions/@NotOnOrAfter").getNodeValue();
+		DateTimeFormatter dateTimeFormatter = ISODateTimeFormat
+				.dateTimeParser();
+		DateTime notBefore = dateTimeFormatter.parseDateTime(notBeforeStr);
+		DateTime notOnOrAfter = dateTimeFormatter
+				.parseDateTime(notOnOrAfterStr);
 
+		XMLSignature xmlSignature = new XMLSignature(signatureElement, "");
 		X509Certificate serviceCertificate = certificateChain.get(0);
-		if (false == Arrays.equals(serviceCertificate.getEncoded(),
-				actualCertificate.getEncoded())) {
-			throw new SecurityException(
-					"SAML signing certificate different from eID IdP service identity");
+		String assertionId = tokenElement.getAttribute("ID");
+		byte[] signatureDigest = getSignatureDigest(xmlSignature);
+		if (validatedTokenCache.isValidated(assertionId, signatureDigest,
+				serviceCertificate)) {
+			/*
+			 * Same SignedInfo and signature value as verified before, so only
+			 * the references still need to match the token content.
+			 */
+			if (false == xmlSignature.getSignedInfo().verify()) {
+				throw new SecurityException("invalid XML signature");
+			}
+			LOG.debug("XML signature OK (cached)");
+		} else {
+			KeyInfo keyInfo = xmlSignature.getKeyInfo();
+			X509Certificate actualCertificate = keyInfo.getX509Certificate();
+			boolean signatureResult = xmlSignature
+					.checkSignatureValue(actualCertificate);
+			if (false == signatureResult) {
+				throw new SecurityException("invalid XML signature");
+			}
+			LOG.debug("XML signature OK");
+
+			if (false == Arrays.equals(serviceCertificate.getEncoded(),
+					actualCertificate.getEncoded())) {
+				throw new SecurityException(
+						"SAML signing certificate different from eID IdP service identity");
+			}
+			LOG.debug("SAML signer OK");
+			validatedTokenCache.putValidated(assertionId, signatureDigest,
+					serviceCertificate, notOnOrAfter.getMillis());
 		}
-		LOG.debug("SAML signer OK");
 
-		String actualIssuer = XPathAPI.selectSingleNode(tokenElement,
-				"saml2:Issuer/text()", nsElement).getNodeValue();
+		String actualIssuer = XPathUtil.find(tokenElement,
+				"saml2:Issuer/text()").getNodeValue();
 		String serviceIssuer = identityProviderConfiguration.getDefaultIssuer();
 		if (false == actualIssuer.equals(serviceIssuer)) {
 			LOG.debug("actual issuer: " + actualIssuer);
@@ -264,11 +289,10 @@ public class SecurityTokenServicePortImpl implements SecurityTokenServicePort {
 		LOG.debug("SAML issuer OK");
 
 		if (null != expectedAudience) {
-			String audience = XPathAPI
-					.selectSingleNode(
-							tokenElement,
-							"saml2:Conditions/saml2:AudienceRestriction/saml2:Audience/text()",
-							nsElement).getNodeValue();
+			String audience = XPathUtil
+					.find(tokenElement,
+							"saml2:Conditions/saml2:AudienceRestriction/saml2:Audience/text()")
+					.getNodeValue();
 			if (false == expectedAudience.equals(audience)) {
 				LOG.debug("expected audience: " + expectedAudience);
 				LOG.debug("actual audience: " + audience);
@@ -279,11 +303,10 @@ public class SecurityTokenServicePortImpl implements SecurityTokenServicePort {
 			LOG.warn("SAML audience restriction not checked");
 		}
 
-		String authnContextClassRef = XPathAPI
-				.selectSingleNode(
-						tokenElement,
-						"saml2:AuthnStatement/saml2:AuthnContext/saml2:AuthnContextClassRef/text()",
-						nsElement).getNodeValue();
+		String authnContextClassRef = XPathUtil
+				.find(tokenElement,
+						"saml2:AuthnStatement/saml2:AuthnContext/saml2:AuthnContextClassRef/text()")
+				.getNodeValue();
 		LOG.debug("AuthnContextClassRef: " + authnContextClassRef);
 		SamlAuthenticationPolicy samlAuthenticationPolicy = SamlAuthenticationPolicy
 				.getAuthenticationPolicy(authnContextClassRef);
@@ -293,15 +316,6 @@ public class SecurityTokenServicePortImpl implements SecurityTokenServicePort {
 					+ samlAuthenticationPolicy);
 		}
 
-		String notBeforeStr = XPathAPI.selectSingleNode(tokenElement,
-				"saml2:Conditions/@NotBefore", nsElement).getNodeValue();
-		String notOnOrAfterStr = XPathAPI.selectSingleNode(tokenElement,
-				"saml2:Conditions/@NotOnOrAfter", nsElement).getNodeValue();
-		DateTimeFormatter dateTimeFormatter = ISODateTimeFormat
-				.dateTimeParser();
-		DateTime notBefore = dateTimeFormatter.parseDateTime(notBeforeStr);
-		DateTime notOnOrAfter = dateTimeFormatter
-				.parseDateTime(notOnOrAfterStr);
 		DateTime now = new DateTime();
 		if (now.isBefore(notBefore)) {
 			throw new SecurityException("SAML assertion in future");
@@ -312,15 +326,16 @@ public class SecurityTokenServicePortImpl implements SecurityTokenServicePort {
 		LOG.debug("SAML timestamp OK");
 	}
 
+	private static byte[] getSignatureDigest(XMLSignature xmlSignature)
+			throws Exception {
+		SignedInfo signedInfo = xmlSignature.getSignedInfo();
+		MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+		messageDigest.update(signedInfo.getCanonicalizedOctetStream());
+		messageDigest.update(xmlSignature.getSignatureValue());
+		return messageDigest.digest();
+	}
+
 	static String toString(Node dom) throws TransformerException {
-		Source source = new DOMSource(dom);
-		StringWriter stringWriter = new StringWriter();
-		Result result = new StreamResult(stringWriter);
-		TransformerFactory transformerFactory = TransformerFactory
-				.newInstance();
-		Transformer transformer = transformerFactory.newTransformer();
-		transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
-		transformer.transform(source, result);
-		return stringWriter.getBuffer().toString();
+		return DomSerializer.toString(dom, false);
 	}
 }
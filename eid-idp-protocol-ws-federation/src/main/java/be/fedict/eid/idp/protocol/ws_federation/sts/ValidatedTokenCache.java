@@ -0,0 +1,161 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.protocol.ws_federation.sts;
+
+import java.security.MessageDigest;
+import java.security.cert.X509Certificate;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Remembers which SAML assertions already passed the XML signature
+ * verification, so that repeated validations of the same token can skip the
+ * RSA operation.
+ * <p/>
+ * Entries are keyed by assertion ID and hold a digest of the canonicalized
+ * ds:SignedInfo and the signature value. An entry is only valid until the
+ * NotOnOrAfter of the assertion. A token that reuses the ID of a validated
+ * assertion with a different signature is rejected.
+ * <p/>
+ * Validating an identical token again is not a replay: relying parties may
+ * validate the same token several times, so such calls simply succeed
+ * faster.
+ */
+public class ValidatedTokenCache {
+
+	private static final Log LOG = LogFactory
+			.getLog(ValidatedTokenCache.class);
+
+	private final int maxSize;
+
+	private final ConcurrentMap<String, Entry> entries;
+
+	/**
+	 * Main constructor.
+	 * 
+	 * @param maxSize
+	 *            maximum number of cached assertions.
+	 */
+	public ValidatedTokenCache(int maxSize) {
+		this.maxSize = maxSize;
+		this.entries = new ConcurrentHashMap<String, Entry>();
+	}
+
+	/**
+	 * Checks whether the given signature has been verified before.
+	 * 
+	 * @param assertionId
+	 *            the SAML assertion ID.
+	 * @param signatureDigest
+	 *            digest of the canonicalized ds:SignedInfo and signature value.
+	 * @param signer
+	 *            the certificate the signature should be verified against.
+	 * @return <code>true</code> if the signature was already verified against
+	 *         the given signer.
+	 * @throws SecurityException
+	 *             if a different signature was validated before under the
+	 *             same assertion ID.
+	 */
+	public boolean isValidated(String assertionId, byte[] signatureDigest,
+			X509Certificate signer) throws SecurityException {
+
+		Entry entry = this.entries.get(assertionId);
+		if (null == entry) {
+			return false;
+		}
+		if (entry.notOnOrAfter <= System.currentTimeMillis()) {
+			this.entries.remove(assertionId, entry);
+			return false;
+		}
+		if (false == MessageDigest.isEqual(entry.signatureDigest,
+				signatureDigest)) {
+			LOG.warn("SAML assertion ID reused: " + assertionId);
+			throw new SecurityException(
+					"SAML assertion ID reused with a different signature");
+		}
+		return entry.signer.equals(signer);
+	}
+
+	/**
+	 * Registers a successfully verified signature.
+	 * 
+	 * @param assertionId
+	 *            the SAML assertion ID.
+	 * @param signatureDigest
+	 *            digest of the canonicalized ds:SignedInfo and signature value.
+	 * @param signer
+	 *            the certificate the signature was verified against.
+	 * @param notOnOrAfter
+	 *            end of the assertion validity, in milliseconds.
+	 */
+	public void putValidated(String assertionId, byte[] signatureDigest,
+			X509Certificate signer, long notOnOrAfter) {
+
+		long now = System.currentTimeMillis();
+		if (notOnOrAfter <= now) {
+			return;
+		}
+		if (this.entries.size() >= this.maxSize) {
+			purge(now);
+			if (this.entries.size() >= this.maxSize) {
+				LOG.debug("validated token cache full, clearing");
+				this.entries.clear();
+			}
+		}
+		this.entries.put(assertionId, new Entry(signatureDigest, signer,
+				notOnOrAfter));
+	}
+
+	/**
+	 * @return the number of cached assertions.
+	 */
+	public int size() {
+		return this.entries.size();
+	}
+
+	private void purge(long now) {
+
+		Iterator<Entry> iterator = this.entries.values().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().notOnOrAfter <= now) {
+				iterator.remove();
+			}
+		}
+	}
+
+	private static class Entry {
+
+		private final byte[] signatureDigest;
+
+		private final X509Certificate signer;
+
+		private final long notOnOrAfter;
+
+		Entry(byte[] signatureDigest, X509Certificate signer,
+				long notOnOrAfter) {
+			this.signatureDigest = signatureDigest;
+			this.signer = signer;
+			this.notOnOrAfter = notOnOrAfter;
+		}
+	}
+}
@@ -20,15 +20,24 @@ package test.unit.be.fedict.eid.idp.protocol.ws_federation.sts;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.io.StringReader;
 import java.lang.reflect.Field;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.UUID;
 
 import javax.annotation.Resource;
 import javax.servlet.ServletContext;
@@ -44,10 +53,17 @@ import javax.xml.ws.handler.MessageContext;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.xml.security.c14n.Canonicalizer;
+import org.apache.xml.security.signature.XMLSignature;
+import org.apache.xml.security.transforms.Transforms;
+import org.bouncycastle.jce.X509Principal;
+import org.bouncycastle.x509.X509V3CertificateGenerator;
 import org.easymock.EasyMock;
+import org.joda.time.DateTime;
 import org.junit.Test;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
 
 import be.fedict.eid.idp.protocol.ws_federation.sts.SecurityTokenServicePortImpl;
 import be.fedict.eid.idp.protocol.ws_federation.sts.WSSecuritySoapHandler;
@@ -188,6 +204,214 @@ public class SecurityTokenServicePortImplTest {
 		assertTrue(reason.indexOf("policy") != -1);
 	}
 
+	@Test
+	public void testRepeatedValidation() throws Exception {
+		// setup
+		KeyPair keyPair = generateKeyPair();
+		X509Certificate certificate = generateCertificate(keyPair);
+		String assertionId = "assertion-" + UUID.randomUUID().toString();
+		Element tokenElement = createToken(assertionId, "79102520991");
+		sign(tokenElement, assertionId, keyPair.getPrivate(), certificate);
+		RequestSecurityTokenType request = loadRequest();
+
+		// operate & verify: RSA verification
+		assertNull(validate(request, tokenElement, certificate));
+
+		// operate & verify: the cached outcome no longer needs the KeyInfo
+		Element signatureElement = (Element) tokenElement
+				.getElementsByTagNameNS("http://www.w3.org/2000/09/xmldsig#",
+						"Signature").item(0);
+		Element keyInfoElement = (Element) signatureElement
+				.getElementsByTagNameNS("http://www.w3.org/2000/09/xmldsig#",
+						"KeyInfo").item(0);
+		signatureElement.removeChild(keyInfoElement);
+		assertNull(validate(request, tokenElement, certificate));
+
+		// operate & verify: same SignedInfo and SignatureValue, other content
+		Element nameIdElement = (Element) tokenElement.getElementsByTagNameNS(
+				WSTrustConstants.SAML2_NAMESPACE, "NameID").item(0);
+		nameIdElement.setTextContent("12345678901");
+		assertEquals("invalid XML signature",
+				validate(request, tokenElement, certificate));
+	}
+
+	@Test
+	public void testAssertionIdReused() throws Exception {
+		// setup
+		KeyPair keyPair = generateKeyPair();
+		X509Certificate certificate = generateCertificate(keyPair);
+		String assertionId = "assertion-" + UUID.randomUUID().toString();
+		Element tokenElement = createToken(assertionId, "79102520991");
+		sign(tokenElement, assertionId, keyPair.getPrivate(), certificate);
+		Element otherTokenElement = createToken(assertionId, "12345678901");
+		sign(otherTokenElement, assertionId, keyPair.getPrivate(),
+				certificate);
+		RequestSecurityTokenType request = loadRequest();
+
+		// operate & verify
+		assertNull(validate(request, tokenElement, certificate));
+		assertEquals("SAML assertion ID reused with a different signature",
+				validate(request, otherTokenElement, certificate));
+	}
+
+	/**
+	 * @return <code>null</code> if valid, the status reason otherwise.
+	 */
+	private String validate(RequestSecurityTokenType request,
+			Element tokenElement, X509Certificate certificate)
+			throws Exception {
+		SecurityTokenServicePortImpl testedInstance = new SecurityTokenServicePortImpl();
+
+		WebServiceContext mockWebServiceContext = EasyMock
+				.createMock(WebServiceContext.class);
+		injectResource(mockWebServiceContext, testedInstance);
+		MessageContext mockMessageContext = EasyMock
+				.createMock(MessageContext.class);
+		ServletContext mockServletContext = EasyMock
+				.createMock(ServletContext.class);
+		IdentityProviderConfiguration mockIdentityProviderConfiguration = EasyMock
+				.createMock(IdentityProviderConfiguration.class);
+
+		EasyMock.expect(mockWebServiceContext.getMessageContext())
+				.andStubReturn(mockMessageContext);
+		EasyMock.expect(mockMessageContext.get(MessageContext.SERVLET_CONTEXT))
+				.andStubReturn(mockServletContext);
+		EasyMock.expect(
+				mockMessageContext.get(WSSecuritySoapHandler.class.getName()
+						+ ".samlToken")).andStubReturn(tokenElement);
+		EasyMock.expect(
+				mockServletContext
+						.getAttribute(IdentityProviderConfigurationFactory.IDENTITY_PROVIDER_CONFIGURATION_CONTEXT_ATTRIBUTE))
+				.andStubReturn(mockIdentityProviderConfiguration);
+		EasyMock.expect(
+				mockIdentityProviderConfiguration.getIdentityCertificateChain())
+				.andStubReturn(Collections.singletonList(certificate));
+		EasyMock.expect(mockIdentityProviderConfiguration.getDefaultIssuer())
+				.andStubReturn("e-contract-2012");
+
+		EasyMock.replay(mockWebServiceContext, mockMessageContext,
+				mockServletContext, mockIdentityProviderConfiguration);
+
+		RequestSecurityTokenResponseCollectionType result = testedInstance
+				.requestSecurityToken(request);
+
+		RequestSecurityTokenResponseType requestSecurityTokenResponse = result
+				.getRequestSecurityTokenResponse().get(0);
+		for (Object responseObject : requestSecurityTokenResponse.getAny()) {
+			if (responseObject instanceof JAXBElement) {
+				JAXBElement jaxbElement = (JAXBElement) responseObject;
+				if (new QName(WSTrustConstants.WS_TRUST_NAMESPACE, "Status")
+						.equals(jaxbElement.getName())) {
+					StatusType status = (StatusType) jaxbElement.getValue();
+					if (WSTrustConstants.VALID_STATUS_CODE.equals(status
+							.getCode())) {
+						return null;
+					}
+					LOG.debug("status reason: " + status.getReason());
+					return status.getReason();
+				}
+			}
+		}
+		throw new IllegalStateException("missing wst:Status");
+	}
+
+	@SuppressWarnings("unchecked")
+	private RequestSecurityTokenType loadRequest() throws Exception {
+		InputStream requestInputStream = SecurityTokenServicePortImplTest.class
+				.getResourceAsStream("/sts-validation-request.xml");
+		DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory
+				.newInstance();
+		documentBuilderFactory.setNamespaceAware(true);
+		Document document = documentBuilderFactory.newDocumentBuilder()
+				.parse(requestInputStream);
+		Element requestSecurityTokenElement = (Element) document
+				.getElementsByTagNameNS(
+						"http://docs.oasis-open.org/ws-sx/ws-trust/200512",
+						"RequestSecurityToken").item(0);
+		JAXBContext jaxbContext = JAXBContext.newInstance(ObjectFactory.class,
+				be.fedict.eid.idp.wstrust.jaxb.wspolicy.ObjectFactory.class,
+				be.fedict.eid.idp.wstrust.jaxb.wsaddr.ObjectFactory.class);
+		Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
+		JAXBElement<RequestSecurityTokenType> resultElement = (JAXBElement<RequestSecurityTokenType>) unmarshaller
+				.unmarshal(requestSecurityTokenElement);
+		return resultElement.getValue();
+	}
+
+	private Element createToken(String assertionId, String nameId)
+			throws Exception {
+		DateTime now = new DateTime();
+		String token = "<saml2:Assertion xmlns:saml2=\"urn:oasis:names:tc:SAML:2.0:assertion\" ID=\""
+				+ assertionId
+				+ "\" IssueInstant=\""
+				+ now
+				+ "\" Version=\"2.0\">"
+				+ "<saml2:Issuer>e-contract-2012</saml2:Issuer>"
+				+ "<saml2:Subject><saml2:NameID>"
+				+ nameId
+				+ "</saml2:NameID></saml2:Subject>"
+				+ "<saml2:Conditions NotBefore=\""
+				+ now.minusMinutes(1)
+				+ "\" NotOnOrAfter=\""
+				+ now.plusMinutes(5)
+				+ "\"><saml2:AudienceRestriction>"
+				+ "<saml2:Audience>https://www.e-contract.be:443/eid-idp-sp/wsfed-landing</saml2:Audience>"
+				+ "</saml2:AudienceRestriction></saml2:Conditions>"
+				+ "<saml2:AuthnStatement AuthnInstant=\""
+				+ now
+				+ "\"><saml2:AuthnContext><saml2:AuthnContextClassRef>"
+				+ "urn:be:fedict:eid:idp:AuthenticationWithIdentification"
+				+ "</saml2:AuthnContextClassRef></saml2:AuthnContext></saml2:AuthnStatement>"
+				+ "</saml2:Assertion>";
+		DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory
+				.newInstance();
+		documentBuilderFactory.setNamespaceAware(true);
+		Document document = documentBuilderFactory.newDocumentBuilder()
+				.parse(new InputSource(new StringReader(token)));
+		return document.getDocumentElement();
+	}
+
+	private void sign(Element tokenElement, String assertionId,
+			PrivateKey privateKey, X509Certificate certificate)
+			throws Exception {
+		Document document = tokenElement.getOwnerDocument();
+		tokenElement.setIdAttribute("ID", true);
+		XMLSignature xmlSignature = new XMLSignature(document, "",
+				XMLSignature.ALGO_ID_SIGNATURE_RSA_SHA1,
+				Canonicalizer.ALGO_ID_C14N_EXCL_OMIT_COMMENTS);
+		Element issuerElement = (Element) tokenElement.getElementsByTagNameNS(
+				WSTrustConstants.SAML2_NAMESPACE, "Issuer").item(0);
+		tokenElement.insertBefore(xmlSignature.getElement(),
+				issuerElement.getNextSibling());
+		Transforms transforms = new Transforms(document);
+		transforms.addTransform(Transforms.TRANSFORM_ENVELOPED_SIGNATURE);
+		transforms.addTransform(Transforms.TRANSFORM_C14N_EXCL_OMIT_COMMENTS);
+		xmlSignature.addDocument("#" + assertionId, transforms,
+				"http://www.w3.org/2000/09/xmldsig#sha1");
+		xmlSignature.addKeyInfo(certificate);
+		xmlSignature.sign(privateKey);
+	}
+
+	private KeyPair generateKeyPair() throws Exception {
+		KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+		keyPairGenerator.initialize(1024);
+		return keyPairGenerator.generateKeyPair();
+	}
+
+	private X509Certificate generateCertificate(KeyPair keyPair)
+			throws Exception {
+		X509V3CertificateGenerator certificateGenerator = new X509V3CertificateGenerator();
+		certificateGenerator.setPublicKey(keyPair.getPublic());
+		certificateGenerator.setSignatureAlgorithm("SHA1WithRSAEncryption");
+		Date now = new Date();
+		certificateGenerator.setNotBefore(now);
+		certificateGenerator.setNotAfter(new Date(now.getTime() + 3600 * 1000));
+		certificateGenerator.setIssuerDN(new X509Principal("CN=Test"));
+		certificateGenerator.setSubjectDN(new X509Principal("CN=Test"));
+		certificateGenerator.setSerialNumber(new BigInteger(128,
+				new SecureRandom()));
+		return certificateGenerator.generate(keyPair.getPrivate());
+	}
+
 	private void injectResource(WebServiceContext webServiceContext, Object bean)
 			throws IllegalArgumentException, IllegalAccessException {
 		Field[] fields = bean.getClass().getDeclaredFields();
@@ -0,0 +1,134 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package test.unit.be.fedict.eid.idp.protocol.ws_federation.sts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.apache.commons.codec.binary.Base64;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import be.fedict.eid.idp.protocol.ws_federation.sts.ValidatedTokenCache;
+
+public class ValidatedTokenCacheTest {
+
+	private X509Certificate certificate;
+
+	@Before
+	public void setUp() throws Exception {
+		InputStream requestInputStream = ValidatedTokenCacheTest.class
+				.getResourceAsStream("/sts-validation-request.xml");
+		assertNotNull(requestInputStream);
+
+		DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory
+				.newInstance();
+		documentBuilderFactory.setNamespaceAware(true);
+		DocumentBuilder documentBuilder = documentBuilderFactory
+				.newDocumentBuilder();
+		Document document = documentBuilder.parse(requestInputStream);
+
+		Element x509Certificate = (Element) document.getElementsByTagNameNS(
+				"http://www.w3.org/2000/09/xmldsig#", "X509Certificate")
+				.item(0);
+		CertificateFactory certificateFactory = CertificateFactory
+				.getInstance("X.509");
+		this.certificate = (X509Certificate) certificateFactory
+				.generateCertificate(new ByteArrayInputStream(Base64
+						.decodeBase64(x509Certificate.getFirstChild()
+								.getNodeValue())));
+	}
+
+	@Test
+	public void testValidated() throws Exception {
+		// setup
+		ValidatedTokenCache testedInstance = new ValidatedTokenCache(10);
+		byte[] digest = new byte[] { 1, 2, 3 };
+		long notOnOrAfter = System.currentTimeMillis() + 60 * 1000;
+
+		// operate & verify
+		assertFalse(testedInstance.isValidated("id", digest, this.certificate));
+		testedInstance.putValidated("id", digest, this.certificate,
+				notOnOrAfter);
+		assertTrue(testedInstance.isValidated("id", new byte[] { 1, 2, 3 },
+				this.certificate));
+	}
+
+	@Test
+	public void testIdReused() throws Exception {
+		// setup
+		ValidatedTokenCache testedInstance = new ValidatedTokenCache(10);
+		long notOnOrAfter = System.currentTimeMillis() + 60 * 1000;
+		testedInstance.putValidated("id", new byte[] { 1, 2, 3 },
+				this.certificate, notOnOrAfter);
+
+		// operate
+		try {
+			testedInstance.isValidated("id", new byte[] { 3, 2, 1 },
+					this.certificate);
+			fail();
+		} catch (SecurityException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testExpired() throws Exception {
+		// setup
+		ValidatedTokenCache testedInstance = new ValidatedTokenCache(10);
+		byte[] digest = new byte[] { 1, 2, 3 };
+
+		// operate
+		testedInstance.putValidated("id", digest, this.certificate,
+				System.currentTimeMillis() - 1);
+
+		// verify
+		assertEquals(0, testedInstance.size());
+		assertFalse(testedInstance.isValidated("id", digest, this.certificate));
+	}
+
+	@Test
+	public void testBounded() throws Exception {
+		// setup
+		ValidatedTokenCache testedInstance = new ValidatedTokenCache(10);
+		long notOnOrAfter = System.currentTimeMillis() + 60 * 1000;
+
+		// operate
+		for (int idx = 0; idx < 25; idx++) {
+			testedInstance.putValidated("id-" + idx, new byte[] { 1 },
+					this.certificate, notOnOrAfter);
+		}
+
+		// verify
+		assertTrue(testedInstance.size() <= 10);
+	}
+}
@@ -79,6 +79,9 @@ import be.fedict.eid.idp.sp.protocol.openid.spi.AuthenticationRequestService;
  * to display the eID IdP webapp in (e.g.: "en,nl,fr"). If not specified, the
  * browsers's locale will be used.</li>
  * </ul>
+ * In both cases, the optional <tt>DiscoveryCacheTTL</tt> init-param sets how
+ * long, in seconds, the OpenID discovery results are reused. Default is 300
+ * seconds, <code>0</code> disables the discovery cache.
  * 
  * @author Frank Cornelis
  */
@@ -98,6 +101,12 @@ public class AuthenticationRequestServlet extends HttpServlet {
 
 	private static final String TRUST_SERVER_PARAM = "TrustServer";
 
+	private static final String DISCOVERY_CACHE_TTL_PARAM = "DiscoveryCacheTTL";
+
+	private static final int DEFAULT_DISCOVERY_CACHE_TTL = 300;
+
+	private static final int DISCOVERY_CACHE_SIZE = 100;
+
 	public static final String CONSUMER_MANAGER_ATTRIBUTE = AuthenticationRequestServlet.class
 			.getName() + ".ConsumerManager";
 
@@ -116,6 +125,8 @@ public class AuthenticationRequestServlet extends HttpServlet {
 
 	private boolean trustServer;
 
+	private DiscoveryCache discoveryCache;
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -146,6 +157,15 @@ public class AuthenticationRequestServlet extends HttpServlet {
 					+ "(Class) init-param");
 		}
 
+		int discoveryCacheTtl = DEFAULT_DISCOVERY_CACHE_TTL;
+		String discoveryCacheTtlParam = config
+				.getInitParameter(DISCOVERY_CACHE_TTL_PARAM);
+		if (null != discoveryCacheTtlParam) {
+			discoveryCacheTtl = Integer.parseInt(discoveryCacheTtlParam);
+		}
+		this.discoveryCache = new DiscoveryCache(discoveryCacheTtl * 1000L,
+				DISCOVERY_CACHE_SIZE);
+
 		// SSL configuration
 		String trustServer = config.getInitParameter(TRUST_SERVER_PARAM);
 		if (null != trustServer) {
@@ -296,9 +316,17 @@ public class AuthenticationRequestServlet extends HttpServlet {
 		}
 
 		try {
-			LOG.debug("discovering the identity...");
 			LOG.debug("user identifier: " + userIdentifier);
-			List discoveries = this.consumerManager.discover(userIdentifier);
+			List discoveries = this.discoveryCache.get(userIdentifier);
+			if (null == discoveries) {
+				LOG.debug("discovering the identity...");
+				discoveries = this.consumerManager.discover(userIdentifier);
+				this.discoveryCache.put(userIdentifier, discoveries);
+			}
+			/*
+			 * Reuses the association with the OP endpoint as long as it is
+			 * not about to expire.
+			 */
 			LOG.debug("associating with the IdP...");
 			DiscoveryInformation discovered = this.consumerManager
 					.associate(discoveries);
@@ -363,6 +391,8 @@ public class AuthenticationRequestServlet extends HttpServlet {
 			LOG.debug("redirecting to producer with authn request...");
 			response.sendRedirect(authRequest.getDestinationUrl(true));
 		} catch (OpenIDException e) {
+			// the cached discovery results might be stale
+			this.discoveryCache.remove(userIdentifier);
 			throw new ServletException("OpenID error: " + e.getMessage(), e);
 		}
 	}
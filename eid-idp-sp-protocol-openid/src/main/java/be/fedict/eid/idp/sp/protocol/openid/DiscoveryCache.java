@@ -0,0 +1,136 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010-2013 FedICT.
+ * Copyright (C) 2014 e-Contract.be BVBA.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.sp.protocol.openid;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Keeps the OpenID discovery results per user-supplied identifier for a
+ * limited time, so that not every authentication request fetches the XRDS of
+ * the eID IdP again.
+ * <p/>
+ * Associations are not cached here: the association store of the
+ * {@link org.openid4java.consumer.ConsumerManager} already reuses them per OP
+ * endpoint until they are about to expire.
+ */
+public class DiscoveryCache {
+
+	private static final Log LOG = LogFactory.getLog(DiscoveryCache.class);
+
+	private final long ttl;
+
+	private final int maxSize;
+
+	private final ConcurrentMap<String, Entry> entries;
+
+	/**
+	 * Main constructor.
+	 * 
+	 * @param ttl
+	 *            time to live of a discovery result, in milliseconds.
+	 *            <code>0</code> disables the cache.
+	 * @param maxSize
+	 *            maximum number of cached identifiers.
+	 */
+	public DiscoveryCache(long ttl, int maxSize) {
+		this.ttl = ttl;
+		this.maxSize = maxSize;
+		this.entries = new ConcurrentHashMap<String, Entry>();
+	}
+
+	/**
+	 * @param identifier
+	 *            the user-supplied identifier
+	 * @return the cached discovery results, or <code>null</code> if none or
+	 *         expired.
+	 */
+	@SuppressWarnings("unchecked")
+	public List get(String identifier) {
+
+		if (null == identifier) {
+			return null;
+		}
+		Entry entry = this.entries.get(identifier);
+		if (null == entry) {
+			return null;
+		}
+		if (entry.expiry < System.currentTimeMillis()) {
+			this.entries.remove(identifier, entry);
+			return null;
+		}
+		return entry.discoveries;
+	}
+
+	/**
+	 * Caches the given discovery results.
+	 * 
+	 * @param identifier
+	 *            the user-supplied identifier
+	 * @param discoveries
+	 *            the discovery results
+	 */
+	@SuppressWarnings("unchecked")
+	public void put(String identifier, List discoveries) {
+
+		if (0 >= this.ttl || null == identifier || null == discoveries
+				|| discoveries.isEmpty()) {
+			return;
+		}
+		if (this.entries.size() >= this.maxSize) {
+			LOG.debug("discovery cache full, clearing");
+			this.entries.clear();
+		}
+		this.entries.put(identifier, new Entry(Collections
+				.unmodifiableList(discoveries), System.currentTimeMillis()
+				+ this.ttl));
+	}
+
+	/**
+	 * Drops the cached discovery results for the given identifier, e.g. when
+	 * they turned out to be stale.
+	 * 
+	 * @param identifier
+	 *            the user-supplied identifier
+	 */
+	public void remove(String identifier) {
+
+		if (null != identifier) {
+			this.entries.remove(identifier);
+		}
+	}
+
+	private static class Entry {
+
+		private final List discoveries;
+
+		private final long expiry;
+
+		Entry(List discoveries, long expiry) {
+			this.discoveries = discoveries;
+			this.expiry = expiry;
+		}
+	}
+}
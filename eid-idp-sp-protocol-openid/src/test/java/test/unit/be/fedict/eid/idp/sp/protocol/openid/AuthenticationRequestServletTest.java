@@ -0,0 +1,168 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010-2013 FedICT.
+ * Copyright (C) 2014 e-Contract.be BVBA.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package test.unit.be.fedict.eid.idp.sp.protocol.openid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mortbay.jetty.servlet.ServletHolder;
+import org.mortbay.jetty.testing.ServletTester;
+import org.openid4java.message.Message;
+import org.openid4java.message.ParameterList;
+import org.openid4java.server.ServerManager;
+
+import be.fedict.eid.idp.sp.protocol.openid.AuthenticationRequestServlet;
+
+public class AuthenticationRequestServletTest {
+
+	private static final Log LOG = LogFactory
+			.getLog(AuthenticationRequestServletTest.class);
+
+	private ServletTester opServletTester;
+
+	private ServletTester spServletTester;
+
+	private String spLocation;
+
+	@Before
+	public void setUp() throws Exception {
+		OPStubServlet.reset();
+
+		this.opServletTester = new ServletTester();
+		this.opServletTester.addServlet(OPStubServlet.class, "/op");
+		this.opServletTester.start();
+		String opLocation = this.opServletTester.createSocketConnector(true)
+				+ "/op";
+		OPStubServlet.location = opLocation;
+
+		this.spServletTester = new ServletTester();
+		ServletHolder servletHolder = this.spServletTester.addServlet(
+				AuthenticationRequestServlet.class, "/");
+		servletHolder.setInitParameter("UserIdentifier", opLocation);
+		servletHolder.setInitParameter("SPDestination",
+				"http://localhost/sp/landing");
+		this.spServletTester.start();
+		this.spLocation = this.spServletTester.createSocketConnector(true);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		this.spServletTester.stop();
+		this.opServletTester.stop();
+	}
+
+	@Test
+	public void testDiscoveryAndAssociationReused() throws Exception {
+		// operate
+		for (int idx = 0; idx < 3; idx++) {
+			HttpClient httpClient = new HttpClient();
+			GetMethod getMethod = new GetMethod(this.spLocation);
+			getMethod.setFollowRedirects(false);
+			int result = httpClient.executeMethod(getMethod);
+
+			// verify
+			assertEquals(HttpServletResponse.SC_MOVED_TEMPORARILY, result);
+			String redirectLocation = getMethod.getResponseHeader("Location")
+					.getValue();
+			LOG.debug("redirect: " + redirectLocation);
+			assertTrue(redirectLocation.startsWith(OPStubServlet.location));
+		}
+
+		// verify
+		assertEquals(1, OPStubServlet.discoveryCount.get());
+		assertEquals(1, OPStubServlet.associationCount.get());
+	}
+
+	/**
+	 * In-process OpenID provider answering Yadis discovery and association
+	 * requests.
+	 */
+	public static class OPStubServlet extends HttpServlet {
+
+		private static final long serialVersionUID = 1L;
+
+		static final AtomicInteger discoveryCount = new AtomicInteger();
+
+		static final AtomicInteger associationCount = new AtomicInteger();
+
+		static String location;
+
+		private final ServerManager serverManager = new ServerManager();
+
+		static void reset() {
+			discoveryCount.set(0);
+			associationCount.set(0);
+		}
+
+		@Override
+		protected void doGet(HttpServletRequest request,
+				HttpServletResponse response) throws ServletException,
+				IOException {
+			if ("GET".equals(request.getMethod())) {
+				// Yadis also sends a HEAD request first
+				discoveryCount.incrementAndGet();
+			}
+			response.setContentType("application/xrds+xml");
+			PrintWriter printWriter = response.getWriter();
+			printWriter.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+			printWriter
+					.println("<xrds:XRDS xmlns:xrds=\"xri://$xrds\" xmlns=\"xri://$xrd*($v*2.0)\">");
+			printWriter.println("<XRD>");
+			printWriter.println("<Service>");
+			printWriter
+					.println("<Type>http://specs.openid.net/auth/2.0/server</Type>");
+			printWriter.println("<URI>" + location + "</URI>");
+			printWriter.println("</Service>");
+			printWriter.println("</XRD>");
+			printWriter.println("</xrds:XRDS>");
+		}
+
+		@Override
+		protected void doPost(HttpServletRequest request,
+				HttpServletResponse response) throws ServletException,
+				IOException {
+			ParameterList parameterList = new ParameterList(
+					request.getParameterMap());
+			if ("associate".equals(parameterList.getParameterValue("openid.mode"))) {
+				associationCount.incrementAndGet();
+			}
+			Message message = this.serverManager
+					.associationResponse(parameterList);
+			response.setContentType("text/plain");
+			response.getWriter().print(message.keyValueFormEncoding());
+		}
+	}
+}
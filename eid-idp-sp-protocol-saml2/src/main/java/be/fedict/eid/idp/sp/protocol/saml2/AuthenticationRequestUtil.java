@@ -72,6 +72,10 @@ public class AuthenticationRequestUtil {
 		}
 	}
 
+	private static final String POST_BINDING_TEMPLATE = "/templates/saml2-post-binding.vm";
+
+	private static HTTPPostEncoder postEncoder;
+
 	private AuthenticationRequestUtil() {
 		// empty
 	}
@@ -181,30 +185,52 @@ public class AuthenticationRequestUtil {
 			messageContext.setOutboundSAMLMessageSigningCredential(credential);
 		}
 
+		// the encoder renders the template straight into the response stream
+		HTTPPostEncoder encoder = getPostEncoder();
+		try {
+			encoder.encode(messageContext);
+		} catch (MessageEncodingException e) {
+			throw new ServletException(
+					"SAML encoding error: " + e.getMessage(), e);
+		}
+
+		return authnRequest;
+	}
+
+	/*
+	 * The Velocity engine and the HTTP POST encoder are thread-safe, so one
+	 * instance serves all requests. The template is parsed once and kept in
+	 * the resource cache.
+	 */
+	private static synchronized HTTPPostEncoder getPostEncoder()
+			throws ServletException {
+
+		if (null != postEncoder) {
+			return postEncoder;
+		}
+
 		VelocityEngine velocityEngine = new VelocityEngine();
 		velocityEngine.setProperty(RuntimeConstants.RESOURCE_LOADER,
 				"classpath");
 		velocityEngine
 				.setProperty("classpath.resource.loader.class",
 						"org.apache.velocity.runtime.resource.loader.ClasspathResourceLoader");
+		velocityEngine.setProperty("classpath.resource.loader.cache", "true");
+		velocityEngine.setProperty(
+				"classpath.resource.loader.modificationCheckInterval", "0");
 		velocityEngine.setProperty(
 				RuntimeConstants.RUNTIME_LOG_LOGSYSTEM_CLASS,
 				Log4JLogChute.class.getName());
 		try {
 			velocityEngine.init();
+			// compile the template up front
+			velocityEngine.getTemplate(POST_BINDING_TEMPLATE, "UTF-8");
 		} catch (Exception e) {
 			throw new ServletException("velocity engine init error: "
 					+ e.getMessage(), e);
 		}
-		HTTPPostEncoder encoder = new HTTPPostEncoder(velocityEngine,
-				"/templates/saml2-post-binding.vm");
-		try {
-			encoder.encode(messageContext);
-		} catch (MessageEncodingException e) {
-			throw new ServletException(
-					"SAML encoding error: " + e.getMessage(), e);
-		}
-
-		return authnRequest;
+		postEncoder = new HTTPPostEncoder(velocityEngine,
+				POST_BINDING_TEMPLATE);
+		return postEncoder;
 	}
 }
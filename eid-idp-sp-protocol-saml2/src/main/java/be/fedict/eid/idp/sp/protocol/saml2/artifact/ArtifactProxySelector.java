@@ -27,9 +27,9 @@ import java.net.SocketAddress;
 import java.net.URI;
 import java.net.URL;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -57,7 +57,7 @@ public class ArtifactProxySelector extends ProxySelector {
 	 */
 	public ArtifactProxySelector(ProxySelector proxySelector) {
 		this.defaultProxySelector = proxySelector;
-		this.proxies = new HashMap<String, Proxy>();
+		this.proxies = new ConcurrentHashMap<String, Proxy>();
 	}
 
 	/**
@@ -29,21 +29,22 @@ import java.security.SecureRandom;
 import java.security.SignatureException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 import javax.xml.bind.JAXBElement;
 import javax.xml.ws.Binding;
 import javax.xml.ws.BindingProvider;
 import javax.xml.ws.handler.Handler;
-import javax.xml.ws.handler.soap.SOAPHandler;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -67,6 +68,9 @@ import com.sun.xml.ws.developer.JAXWSProperties;
 
 /**
  * Client for the SAML v2.0 HTTP-Artifact Binding Web Service.
+ * <p/>
+ * Instances are thread-safe. Each call borrows a configured JAX-WS port from
+ * an internal pool, so one client per IdP endpoint can be shared and reused.
  * 
  * @author Wim Vandenhaute
  */
@@ -75,13 +79,26 @@ public class ArtifactServiceClient {
 	private static final Log LOG = LogFactory
 			.getLog(ArtifactServiceClient.class);
 
-	private final ArtifactServicePortType port;
+	private static ArtifactService artifactService;
 
 	private final String location;
+	private final String sslHostname;
 	private final String issuerName;
 
 	private final ArtifactServiceClientHandler clientHandler;
 
+	private final Queue<PooledPort> idlePorts;
+
+	/*
+	 * Bumped on every configuration change so that ports created under the
+	 * previous configuration are not returned to the pool.
+	 */
+	private volatile int generation;
+
+	private volatile boolean logging;
+
+	private volatile TlsConfig tlsConfig;
+
 	private static ArtifactProxySelector proxySelector;
 
 	static {
@@ -116,17 +133,17 @@ public class ArtifactServiceClient {
 	public ArtifactServiceClient(String location, String sslHostname,
 			KeyStore.PrivateKeyEntry spIdentity, String issuer) {
 
+		LOG.debug("ws location: " + location);
+		if (null == location) {
+			throw new IllegalArgumentException("SAML Artifact "
+					+ "Service location URL cannot be null");
+		}
+
 		this.location = location;
+		this.sslHostname = sslHostname;
 		this.issuerName = issuer;
-
-		ArtifactService artifactService = ArtifactServiceFactory.getInstance();
-		this.port = artifactService.getArtifactServicePort();
-
-		setEndpointAddress(sslHostname);
-
-		// register client SOAP handler
 		this.clientHandler = new ArtifactServiceClientHandler(spIdentity);
-		registerSoapHandler(this.clientHandler);
+		this.idlePorts = new ConcurrentLinkedQueue<PooledPort>();
 	}
 
 	/**
@@ -137,10 +154,9 @@ public class ArtifactServiceClient {
 	 */
 	public void setLogging(boolean logging) {
 
-		if (logging) {
-			registerSoapHandler(new LoggingSoapHandler());
-		} else {
-			removeSoapHandler(LoggingSoapHandler.class);
+		if (this.logging != logging) {
+			this.logging = logging;
+			reconfigure();
 		}
 	}
 
@@ -195,7 +211,13 @@ public class ArtifactServiceClient {
 				artifactResolve, ArtifactResolveType.class);
 
 		// Resolve
-		ArtifactResponseType response = this.port.resolve(artifactResolveType);
+		PooledPort pooledPort = borrowPort();
+		ArtifactResponseType response = pooledPort.port
+				.resolve(artifactResolveType);
+		Response samlResponse = ArtifactServiceClientHandler
+				.getResponse(((BindingProvider) pooledPort.port)
+						.getResponseContext());
+		releasePort(pooledPort);
 
 		// Validate response
 		if (null == response) {
@@ -239,12 +261,12 @@ public class ArtifactServiceClient {
 		 * We do not get the SAML v2.0 Response from JAXB but from the client
 		 * SOAP handler as JAXB breaks any XML Signatures...
 		 */
-		if (null == this.clientHandler.getResponse()) {
+		if (null == samlResponse) {
 			throw new AuthenticationResponseProcessorException(
 					"Artifact Service SOAP handler did not return"
 							+ "a SAML v2.0 Response.");
 		}
-		return this.clientHandler.getResponse();
+		return samlResponse;
 	}
 
 	/**
@@ -256,6 +278,14 @@ public class ArtifactServiceClient {
 	 */
 	public void setServicePublicKey(final PublicKey publicKey) {
 
+		TlsConfig currentTlsConfig = this.tlsConfig;
+		if (null != currentTlsConfig
+				&& (null == publicKey ? null == currentTlsConfig.publicKey
+						: publicKey.equals(currentTlsConfig.publicKey))) {
+			// keep the SSL context, and with it the cached TLS sessions
+			return;
+		}
+
 		// Create TrustManager
 		TrustManager[] trustManager = { new X509TrustManager() {
 
@@ -307,10 +337,9 @@ public class ArtifactServiceClient {
 					+ sslContext.getProvider().getName());
 
 			// Setup TrustManager for validation
-			Map<String, Object> requestContext = ((BindingProvider) this.port)
-					.getRequestContext();
-			requestContext.put(JAXWSProperties.SSL_SOCKET_FACTORY,
+			this.tlsConfig = new TlsConfig(publicKey,
 					sslContext.getSocketFactory());
+			reconfigure();
 
 		} catch (KeyManagementException e) {
 			String msg = "key management error: " + e.getMessage();
@@ -323,56 +352,99 @@ public class ArtifactServiceClient {
 		}
 	}
 
-	private void setEndpointAddress(String sslHostname) {
+	private synchronized void reconfigure() {
 
-		LOG.debug("ws location: " + location);
-		if (null == location) {
-			throw new IllegalArgumentException("SAML Artifact "
-					+ "Service location URL cannot be null");
+		this.generation++;
+		this.idlePorts.clear();
+	}
+
+	private PooledPort borrowPort() {
+
+		PooledPort pooledPort = this.idlePorts.poll();
+		if (null != pooledPort) {
+			return pooledPort;
 		}
+		// read before creating the port, so a concurrent reconfiguration
+		// keeps this port out of the pool
+		int portGeneration = this.generation;
+		return new PooledPort(createPort(), portGeneration);
+	}
 
-		BindingProvider bindingProvider = (BindingProvider) this.port;
-		bindingProvider.getRequestContext().put(
-				BindingProvider.ENDPOINT_ADDRESS_PROPERTY, location);
-		bindingProvider.getRequestContext().put(
-				JAXWSProperties.HOSTNAME_VERIFIER,
-				new CustomHostnameVerifier(sslHostname));
+	private void releasePort(PooledPort pooledPort) {
 
+		if (pooledPort.generation == this.generation) {
+			this.idlePorts.offer(pooledPort);
+		}
 	}
 
-	/*
-	 * Registers the specifed SOAP handler on the given JAX-WS port component.
-	 */
-	protected void registerSoapHandler(SOAPHandler soapHandler) {
+	private ArtifactServicePortType createPort() {
 
-		BindingProvider bindingProvider = (BindingProvider) this.port;
+		ArtifactServicePortType port = getArtifactService()
+				.getArtifactServicePort();
+
+		BindingProvider bindingProvider = (BindingProvider) port;
+		Map<String, Object> requestContext = bindingProvider
+				.getRequestContext();
+		requestContext.put(BindingProvider.ENDPOINT_ADDRESS_PROPERTY,
+				this.location);
+		requestContext.put(JAXWSProperties.HOSTNAME_VERIFIER,
+				new CustomHostnameVerifier(this.sslHostname));
+		TlsConfig currentTlsConfig = this.tlsConfig;
+		if (null != currentTlsConfig) {
+			requestContext.put(JAXWSProperties.SSL_SOCKET_FACTORY,
+					currentTlsConfig.sslSocketFactory);
+		}
 
+		// register client SOAP handlers
 		Binding binding = bindingProvider.getBinding();
 		@SuppressWarnings("unchecked")
 		List<Handler> handlerChain = binding.getHandlerChain();
-		handlerChain.add(soapHandler);
+		handlerChain.add(this.clientHandler);
+		if (this.logging) {
+			handlerChain.add(new LoggingSoapHandler());
+		}
 		binding.setHandlerChain(handlerChain);
+
+		return port;
 	}
 
 	/*
-	 * Unregister possible SOAP handlers of specified typeon the given JAX-WS
-	 * port component.
+	 * The JAX-WS service parses the WSDL, so it is only created once.
 	 */
-	protected void removeSoapHandler(
-			Class<? extends SOAPHandler> soapHandlerClass) {
+	private static synchronized ArtifactService getArtifactService() {
 
-		BindingProvider bindingProvider = (BindingProvider) this.port;
+		if (null == ArtifactServiceClient.artifactService) {
+			ArtifactServiceClient.artifactService = ArtifactServiceFactory
+					.getInstance();
+		}
+		return ArtifactServiceClient.artifactService;
+	}
 
-		Binding binding = bindingProvider.getBinding();
-		@SuppressWarnings("unchecked")
-		List<Handler> handlerChain = binding.getHandlerChain();
-		Iterator<Handler> iter = handlerChain.iterator();
-		while (iter.hasNext()) {
-			Handler handler = iter.next();
-			if (handler.getClass().isAssignableFrom(soapHandlerClass)) {
-				iter.remove();
-			}
+	/**
+	 * Pinned service key together with the socket factory enforcing it, so
+	 * both are always swapped at once.
+	 */
+	private static class TlsConfig {
+
+		private final PublicKey publicKey;
+
+		private final SSLSocketFactory sslSocketFactory;
+
+		TlsConfig(PublicKey publicKey, SSLSocketFactory sslSocketFactory) {
+			this.publicKey = publicKey;
+			this.sslSocketFactory = sslSocketFactory;
+		}
+	}
+
+	private static class PooledPort {
+
+		private final ArtifactServicePortType port;
+
+		private final int generation;
 
+		PooledPort(ArtifactServicePortType port, int generation) {
+			this.port = port;
+			this.generation = generation;
 		}
 	}
 
@@ -23,6 +23,7 @@ import java.security.KeyStore;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import javax.xml.crypto.MarshalException;
@@ -51,7 +52,10 @@ import be.fedict.eid.idp.common.saml2.Saml2Util;
 /**
  * Client SOAP handler for the SAML v2.0 Artifact Binding Service.
  * <p/>
- * Used for optionally signing the SAML v2.0 Artifact Resolve request.
+ * Used for optionally signing the SAML v2.0 Artifact Resolve request. The
+ * handler keeps no per-request state, the returned SAML v2.0 Response is
+ * passed via the JAX-WS response context, so one instance can be shared by
+ * concurrent calls.
  * 
  * @author Wim Vandenhaute
  */
@@ -70,8 +74,12 @@ public class ArtifactServiceClientHandler implements
 	private static final String XPATH_RESPONSE = "/soap:Envelope/soap:Body/samlp:ArtifactResponse/samlp:Response";
 	private static final String XPATH_RESPONSE_ASSERTION = "/soap:Envelope/soap:Body/samlp:ArtifactResponse/samlp:Response/saml:Assertion";
 
+	private static final String RESPONSE_PROPERTY = ArtifactServiceClientHandler.class
+			.getName() + ".Response";
+
 	private final KeyStore.PrivateKeyEntry spIdentity;
-	private Response response;
+
+	private final ThreadLocal<Map<String, Object>> lastResponseContext = new ThreadLocal<Map<String, Object>>();
 
 	/**
 	 * Main constructor.
@@ -106,7 +114,13 @@ public class ArtifactServiceClientHandler implements
 
 			handleOutboundDocument(soapPart);
 		} else {
-			handleInboundDocument(soapPart);
+			Response response = handleInboundDocument(soapPart);
+			if (null != response) {
+				soapMessageContext.put(RESPONSE_PROPERTY, response);
+				soapMessageContext.setScope(RESPONSE_PROPERTY,
+						MessageContext.Scope.APPLICATION);
+			}
+			this.lastResponseContext.set(soapMessageContext);
 		}
 
 		return true;
@@ -143,7 +157,7 @@ public class ArtifactServiceClientHandler implements
 
 	}
 
-	private void handleInboundDocument(SOAPPart soapPart) {
+	private Response handleInboundDocument(SOAPPart soapPart) {
 
 		LOG.debug("handle inbound");
 
@@ -189,17 +203,17 @@ public class ArtifactServiceClientHandler implements
 		// fetch response
 		Element responseElement = (Element) Saml2Util.find(soapPart,
 				XPATH_RESPONSE);
-		if (null != responseElement) {
-			Saml2Util.unmarshall(responseElement);
+		if (null == responseElement) {
+			return null;
+		}
+		Saml2Util.unmarshall(responseElement);
 
-			// to string and back again so we do not
-			// run into problems trying to marshall
-			String responseString = Saml2Util.domToString(responseElement,
-					false);
+		// to string and back again so we do not
+		// run into problems trying to marshall
+		String responseString = Saml2Util.domToString(responseElement, false);
 
-			this.response = Saml2Util.unmarshall(Saml2Util.parseDocument(
-					responseString).getDocumentElement());
-		}
+		return Saml2Util.unmarshall(Saml2Util.parseDocument(responseString)
+				.getDocumentElement());
 	}
 
 	/**
@@ -234,9 +248,28 @@ public class ArtifactServiceClientHandler implements
 	 * We return the SAML v2.0 Response through the SOAP handler as JAXB will
 	 * break XML Signatures when unmarshalling.
 	 * 
+	 * @param responseContext
+	 *            the JAX-WS response context of the artifact resolve call.
+	 * @return the validated SAML v2.0 Response.
+	 */
+	public static Response getResponse(Map<String, Object> responseContext) {
+		return (Response) responseContext.get(RESPONSE_PROPERTY);
+	}
+
+	/**
+	 * Gives the SAML v2.0 Response of the last artifact resolve call made by
+	 * the current thread.
+	 * 
 	 * @return the validated SAML v2.0 Response.
+	 * @deprecated use {@link #getResponse(Map)} on the response context of
+	 *             the artifact resolve call.
 	 */
+	@Deprecated
 	public Response getResponse() {
-		return this.response;
+		Map<String, Object> responseContext = this.lastResponseContext.get();
+		if (null == responseContext) {
+			return null;
+		}
+		return getResponse(responseContext);
 	}
 }
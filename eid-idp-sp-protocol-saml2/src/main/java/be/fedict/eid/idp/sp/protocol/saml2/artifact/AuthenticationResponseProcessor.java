@@ -18,6 +18,13 @@
 
 package be.fedict.eid.idp.sp.protocol.saml2.artifact;
 
+import java.security.KeyStore;
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import javax.servlet.http.HttpServletRequest;
 
 import org.opensaml.saml2.core.Response;
@@ -35,6 +42,25 @@ import be.fedict.eid.idp.sp.protocol.saml2.spi.artifact.ArtifactAuthenticationRe
 public class AuthenticationResponseProcessor extends
 		AbstractAuthenticationResponseProcessor {
 
+	private static final int MAX_CLIENTS = 32;
+
+	/*
+	 * Artifact service clients are thread-safe, one client per endpoint
+	 * configuration is shared by all processors. The least recently used
+	 * client is dropped once there are more than MAX_CLIENTS configurations.
+	 */
+	private static final Map<List<Object>, ArtifactServiceClient> clients = new LinkedHashMap<List<Object>, ArtifactServiceClient>(
+			16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(
+				Map.Entry<List<Object>, ArtifactServiceClient> eldest) {
+			return size() > MAX_CLIENTS;
+		}
+	};
+
 	private final ArtifactAuthenticationResponseService service;
 
 	/**
@@ -75,15 +101,17 @@ public class AuthenticationResponseProcessor extends
 		}
 		LOG.debug("Encoded artifact: " + encodedArtifact);
 
-		// construct client
+		// lookup client
 		String location = this.service.getArtifactServiceLocation();
 		LOG.debug("SAML2 Artifact Service: " + location);
-		ArtifactServiceClient client = new ArtifactServiceClient(location,
+		PublicKey servicePublicKey = this.service.getServicePublicKey();
+		ArtifactServiceClient client = getClient(location,
 				this.service.getServiceHostname(),
-				this.service.getSPIdentity(), this.service.getIssuer());
+				this.service.getSPIdentity(), this.service.getIssuer(),
+				servicePublicKey);
 
 		// client configuration
-		client.setServicePublicKey(this.service.getServicePublicKey());
+		client.setServicePublicKey(servicePublicKey);
 		client.setLogging(this.service.logSoapMessages());
 		if (null != this.service.getProxyHost()) {
 			client.setProxy(this.service.getProxyHost(),
@@ -97,6 +125,28 @@ public class AuthenticationResponseProcessor extends
 		return client.resolve(encodedArtifact);
 	}
 
+	/*
+	 * The SP identity is keyed on its certificate only, private keys do not
+	 * necessarily implement equals, e.g. when held by a PKCS#11 provider.
+	 */
+	private static ArtifactServiceClient getClient(String location,
+			String sslHostname, KeyStore.PrivateKeyEntry spIdentity,
+			String issuer, PublicKey servicePublicKey) {
+
+		List<Object> key = Arrays.<Object> asList(location, sslHostname,
+				issuer, null != spIdentity ? spIdentity.getCertificate()
+						: null, servicePublicKey);
+		synchronized (clients) {
+			ArtifactServiceClient client = clients.get(key);
+			if (null == client) {
+				client = new ArtifactServiceClient(location, sslHostname,
+						spIdentity, issuer);
+				clients.put(key, client);
+			}
+			return client;
+		}
+	}
+
 	/**
 	 * @return the required {@link ArtifactAuthenticationResponseService}.
 	 */
@@ -0,0 +1,208 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package test.unit.be.fedict.eid.idp.sp.protocol.saml2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mortbay.jetty.testing.ServletTester;
+import org.opensaml.saml2.core.Response;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import be.fedict.eid.idp.sp.protocol.saml2.artifact.ArtifactServiceClient;
+
+public class ArtifactServiceClientTest {
+
+	private static final Log LOG = LogFactory
+			.getLog(ArtifactServiceClientTest.class);
+
+	private static final String SAML2_PROTOCOL_NAMESPACE = "urn:oasis:names:tc:SAML:2.0:protocol";
+
+	private static final int THREADS = 8;
+
+	private static final int RESOLVES_PER_THREAD = 10;
+
+	private ServletTester servletTester;
+
+	private String location;
+
+	@Before
+	public void setUp() throws Exception {
+		ArtifactServiceStubServlet.requestCount.set(0);
+		this.servletTester = new ServletTester();
+		this.servletTester.addServlet(ArtifactServiceStubServlet.class,
+				"/artifact");
+		this.servletTester.start();
+		this.location = this.servletTester.createSocketConnector(true)
+				+ "/artifact";
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		this.servletTester.stop();
+	}
+
+	@Test
+	public void testConcurrentResolve() throws Exception {
+		// setup
+		final ArtifactServiceClient client = new ArtifactServiceClient(
+				this.location, null, null, "test-issuer");
+		client.setServicePublicKey(null);
+		final CountDownLatch startLatch = new CountDownLatch(1);
+		final List<String> errors = Collections
+				.synchronizedList(new ArrayList<String>());
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < THREADS; i++) {
+			threads.add(new Thread() {
+
+				@Override
+				public void run() {
+					try {
+						startLatch.await();
+						for (int j = 0; j < RESOLVES_PER_THREAD; j++) {
+							String artifact = UUID.randomUUID().toString();
+							Response response = client.resolve(artifact);
+							assertNotNull(response);
+							if (!artifact.equals(response.getInResponseTo())) {
+								errors.add("artifact " + artifact
+										+ " resolved to response for "
+										+ response.getInResponseTo());
+							}
+						}
+					} catch (Throwable e) {
+						LOG.error("resolve error: " + e.getMessage(), e);
+						errors.add(e.toString());
+					}
+				}
+			});
+		}
+
+		// operate
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		startLatch.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		// verify
+		assertTrue(errors.toString(), errors.isEmpty());
+		assertEquals(THREADS * RESOLVES_PER_THREAD,
+				ArtifactServiceStubServlet.requestCount.get());
+	}
+
+	/**
+	 * Answers each ArtifactResolve with a SAML v2.0 Response in response to
+	 * the resolved artifact, so a caller can tell whether it got its own
+	 * response.
+	 */
+	public static class ArtifactServiceStubServlet extends HttpServlet {
+
+		private static final long serialVersionUID = 1L;
+
+		static final AtomicInteger requestCount = new AtomicInteger();
+
+		@Override
+		protected void doPost(HttpServletRequest request,
+				HttpServletResponse response) throws ServletException,
+				IOException {
+			requestCount.incrementAndGet();
+			String resolveId;
+			String artifact;
+			try {
+				DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory
+						.newInstance();
+				documentBuilderFactory.setNamespaceAware(true);
+				Document document = documentBuilderFactory
+						.newDocumentBuilder().parse(request.getInputStream());
+				Element artifactResolveElement = (Element) document
+						.getElementsByTagNameNS(SAML2_PROTOCOL_NAMESPACE,
+								"ArtifactResolve").item(0);
+				resolveId = artifactResolveElement.getAttribute("ID");
+				artifact = artifactResolveElement
+						.getElementsByTagNameNS(SAML2_PROTOCOL_NAMESPACE,
+								"Artifact").item(0).getTextContent();
+			} catch (Exception e) {
+				throw new ServletException(e);
+			}
+
+			SimpleDateFormat dateFormat = new SimpleDateFormat(
+					"yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+			dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+			String now = dateFormat.format(new Date());
+			response.setContentType("text/xml; charset=UTF-8");
+			PrintWriter printWriter = response.getWriter();
+			printWriter
+					.print("<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+							+ "<soap:Body>"
+							+ "<samlp:ArtifactResponse xmlns:samlp=\""
+							+ SAML2_PROTOCOL_NAMESPACE
+							+ "\" ID=\"artifact-response-"
+							+ UUID.randomUUID().toString()
+							+ "\" InResponseTo=\""
+							+ resolveId
+							+ "\" IssueInstant=\""
+							+ now
+							+ "\" Version=\"2.0\">"
+							+ "<samlp:Status>"
+							+ "<samlp:StatusCode Value=\"urn:oasis:names:tc:SAML:2.0:status:Success\"/>"
+							+ "</samlp:Status>"
+							+ "<samlp:Response ID=\"response-"
+							+ UUID.randomUUID().toString()
+							+ "\" InResponseTo=\""
+							+ artifact
+							+ "\" IssueInstant=\""
+							+ now
+							+ "\" Version=\"2.0\">"
+							+ "<samlp:Status>"
+							+ "<samlp:StatusCode Value=\"urn:oasis:names:tc:SAML:2.0:status:Success\"/>"
+							+ "</samlp:Status>"
+							+ "</samlp:Response>"
+							+ "</samlp:ArtifactResponse>"
+							+ "</soap:Body>"
+							+ "</soap:Envelope>");
+		}
+	}
+}
@@ -24,11 +24,11 @@ import java.security.PrivateKey;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.crypto.SecretKey;
 import javax.servlet.http.HttpServletRequest;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -45,8 +45,6 @@ import org.opensaml.xml.XMLObject;
 import org.opensaml.xml.validation.ValidationException;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 import be.fedict.eid.idp.common.saml2.AssertionValidationException;
 import be.fedict.eid.idp.common.saml2.AuthenticationResponse;
@@ -65,6 +63,14 @@ public class AuthenticationResponseProcessor {
 	protected static final Log LOG = LogFactory
 			.getLog(AuthenticationResponseProcessor.class);
 
+	/*
+	 * STS clients are thread-safe and pool their JAX-WS ports, so one client
+	 * per STS location is shared.
+	 */
+	private static final ConcurrentMap<String, SecurityTokenServiceClient> securityTokenServiceClients = new ConcurrentHashMap<String, SecurityTokenServiceClient>();
+
+	private static final int MAX_STS_LOCATIONS = 16;
+
 	private final AuthenticationResponseService service;
 
 	/**
@@ -140,7 +146,9 @@ public class AuthenticationResponseProcessor {
 
 		// get wresult
 		String wresult = request.getParameter("wresult");
-		LOG.debug("wresult=\"" + wresult + "\"");
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("wresult=\"" + wresult + "\"");
+		}
 
 		if (null == wresult) {
 			throw new AuthenticationResponseProcessorException(
@@ -199,38 +207,19 @@ public class AuthenticationResponseProcessor {
 						.validateSignature(assertion.getSignature());
 
 				if (null != validationService) {
-					// have to reparse the document here
-					NodeList assertionNodeList = Saml2Util.parseDocument(
-							wresult).getElementsByTagNameNS(
-							"urn:oasis:names:tc:SAML:2.0:assertion",
-							"Assertion");
-					LOG.debug("number of SAML2 assertions: "
-							+ assertionNodeList.getLength());
-					if (1 != assertionNodeList.getLength()) {
-						throw new AuthenticationResponseProcessorException(
-								"missing SAML2 Assertion");
-					}
-					Element assertionElement = (Element) assertionNodeList
-							.item(0);
-
-					DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory
-							.newInstance();
-					documentBuilderFactory.setNamespaceAware(true);
-					DocumentBuilder documentBuilder = documentBuilderFactory
-							.newDocumentBuilder();
-					Document tokenDocument = documentBuilder.newDocument();
-					Node assertionTokenNode = tokenDocument.importNode(
-							assertionElement, true);
-					tokenDocument.appendChild(assertionTokenNode);
+					/*
+					 * The assertion DOM is the one parsed from wresult and
+					 * verified above. The STS SOAP handler imports it into
+					 * the request, so no copy is needed here.
+					 */
+					Element assertionElement = assertion.getDOM();
 
 					String validationServiceLocation = validationService
 							.getLocation();
 					String expectedAudience = validationService
 							.getExpectedAudience();
-					SecurityTokenServiceClient securityTokenServiceClient = new SecurityTokenServiceClient(
-							validationServiceLocation);
-					securityTokenServiceClient.validateToken(
-							tokenDocument.getDocumentElement(),
+					SecurityTokenServiceClient securityTokenServiceClient = getSecurityTokenServiceClient(validationServiceLocation);
+					securityTokenServiceClient.validateToken(assertionElement,
 							expectedAudience);
 				}
 				if (null != this.service) {
@@ -273,6 +262,26 @@ public class AuthenticationResponseProcessor {
 		return authenticationResponse;
 	}
 
+	private static SecurityTokenServiceClient getSecurityTokenServiceClient(
+			String location) {
+
+		SecurityTokenServiceClient client = securityTokenServiceClients
+				.get(location);
+		if (null != client) {
+			return client;
+		}
+		client = new SecurityTokenServiceClient(location);
+		if (securityTokenServiceClients.size() >= MAX_STS_LOCATIONS) {
+			return client;
+		}
+		SecurityTokenServiceClient existingClient = securityTokenServiceClients
+				.putIfAbsent(location, client);
+		if (null != existingClient) {
+			return existingClient;
+		}
+		return client;
+	}
+
 	private Assertion validateSecurityToken(
 			RequestSecurityTokenResponse rstResponse)
 			throws AuthenticationResponseProcessorException {
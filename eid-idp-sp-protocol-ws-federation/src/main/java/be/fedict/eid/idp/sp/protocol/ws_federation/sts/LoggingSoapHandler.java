@@ -32,6 +32,9 @@ import org.apache.commons.logging.LogFactory;
 
 /**
  * JAX-WS SOAP handler that provides SOAP logging.
+ * <p/>
+ * SOAP messages are logged at trace level. Clients should only install this
+ * handler when {@link #isEnabled()} returns <code>true</code>.
  * 
  * @author Frank Cornelis
  * 
@@ -40,21 +43,28 @@ public class LoggingSoapHandler implements SOAPHandler<SOAPMessageContext> {
 
 	private static final Log LOG = LogFactory.getLog(LoggingSoapHandler.class);
 
+	/**
+	 * @return <code>true</code> if SOAP messages will actually be logged.
+	 */
+	public static boolean isEnabled() {
+		return LOG.isTraceEnabled();
+	}
+
 	public Set<QName> getHeaders() {
 		return null;
 	}
 
 	public void close(MessageContext context) {
-		LOG.debug("close");
+		LOG.trace("close");
 	}
 
 	public boolean handleFault(SOAPMessageContext context) {
-		if (false == LOG.isDebugEnabled()) {
+		if (false == LOG.isTraceEnabled()) {
 			return true;
 		}
 		Boolean outboundProperty = (Boolean) context
 				.get(MessageContext.MESSAGE_OUTBOUND_PROPERTY);
-		LOG.debug("outbound message: " + outboundProperty);
+		LOG.trace("outbound message: " + outboundProperty);
 		SOAPMessage soapMessage = context.getMessage();
 		ByteArrayOutputStream output = new ByteArrayOutputStream();
 		try {
@@ -62,18 +72,18 @@ public class LoggingSoapHandler implements SOAPHandler<SOAPMessageContext> {
 		} catch (Exception e) {
 			LOG.error("SOAP error: " + e.getMessage());
 		}
-		LOG.debug("SOAP fault: " + output.toString());
+		LOG.trace("SOAP fault: " + output.toString());
 		return true;
 	}
 
 	public boolean handleMessage(SOAPMessageContext context) {
-		if (false == LOG.isDebugEnabled()) {
+		if (false == LOG.isTraceEnabled()) {
 			return true;
 		}
-		LOG.debug("handle message");
+		LOG.trace("handle message");
 		Boolean outboundProperty = (Boolean) context
 				.get(MessageContext.MESSAGE_OUTBOUND_PROPERTY);
-		LOG.debug("outbound message: " + outboundProperty);
+		LOG.trace("outbound message: " + outboundProperty);
 		SOAPMessage soapMessage = context.getMessage();
 		ByteArrayOutputStream output = new ByteArrayOutputStream();
 		try {
@@ -81,7 +91,7 @@ public class LoggingSoapHandler implements SOAPHandler<SOAPMessageContext> {
 		} catch (Exception e) {
 			LOG.error("SOAP error: " + e.getMessage());
 		}
-		LOG.debug("SOAP message: " + output.toString());
+		LOG.trace("SOAP message: " + output.toString());
 		return true;
 	}
 }
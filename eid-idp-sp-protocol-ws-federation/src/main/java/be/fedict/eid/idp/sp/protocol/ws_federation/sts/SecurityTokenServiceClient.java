@@ -19,6 +19,9 @@
 package be.fedict.eid.idp.sp.protocol.ws_federation.sts;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import javax.xml.bind.JAXBElement;
 import javax.xml.namespace.QName;
@@ -48,6 +51,9 @@ import be.fedict.eid.idp.wstrust.jaxws.SecurityTokenServicePort;
 
 /**
  * WS-Trust STS client to validate SAML tokens via the eID IdP.
+ * <p/>
+ * Instances are thread-safe. Each call borrows a configured JAX-WS port from
+ * an internal pool, so one client per STS location can be shared and reused.
  * 
  * @author Frank Cornelis
  * 
@@ -60,7 +66,13 @@ public class SecurityTokenServiceClient {
 	public static final QName STATUS_QNAME = new QName(
 			WSTrustConstants.WS_TRUST_NAMESPACE, "Status");
 
-	private final SecurityTokenServicePort port;
+	private static SecurityTokenService securityTokenService;
+
+	private static final WSSecuritySoapHandler wsSecuritySoapHandler = new WSSecuritySoapHandler();
+
+	private final String location;
+
+	private final Queue<SecurityTokenServicePort> idlePorts;
 
 	private final ObjectFactory objectFactory;
 
@@ -77,19 +89,8 @@ public class SecurityTokenServiceClient {
 	 *            the location of the STS service.
 	 */
 	public SecurityTokenServiceClient(String location) {
-		SecurityTokenService securityTokenService = SecurityTokenServiceFactory
-				.getInstance();
-
-		this.port = securityTokenService.getSecurityTokenServicePort();
-		BindingProvider bindingProvider = (BindingProvider) this.port;
-		bindingProvider.getRequestContext().put(
-				BindingProvider.ENDPOINT_ADDRESS_PROPERTY, location);
-
-		Binding binding = bindingProvider.getBinding();
-		List<Handler> handlerChain = binding.getHandlerChain();
-		handlerChain.add(new WSSecuritySoapHandler());
-		handlerChain.add(new LoggingSoapHandler());
-		binding.setHandlerChain(handlerChain);
+		this.location = location;
+		this.idlePorts = new ConcurrentLinkedQueue<SecurityTokenServicePort>();
 
 		this.objectFactory = new ObjectFactory();
 		this.policyObjectFactory = new be.fedict.eid.idp.wstrust.jaxb.wspolicy.ObjectFactory();
@@ -136,9 +137,6 @@ public class SecurityTokenServiceClient {
 		requestContent.add(this.objectFactory
 				.createValidateTarget(validateTarget));
 
-		BindingProvider bindingProvider = (BindingProvider) this.port;
-		WSSecuritySoapHandler.setAssertion(samlAssertionElement,
-				bindingProvider);
 		SecurityTokenReferenceType securityTokenReference = this.wsseObjectFactory
 				.createSecurityTokenReferenceType();
 		validateTarget.setAny(this.wsseObjectFactory
@@ -173,8 +171,17 @@ public class SecurityTokenServiceClient {
 			address.setValue(expectedSAMLAudience);
 		}
 
-		RequestSecurityTokenResponseCollectionType response = this.port
-				.requestSecurityToken(request);
+		SecurityTokenServicePort port = borrowPort();
+		BindingProvider bindingProvider = (BindingProvider) port;
+		WSSecuritySoapHandler.setAssertion(samlAssertionElement,
+				bindingProvider);
+		RequestSecurityTokenResponseCollectionType response;
+		try {
+			response = port.requestSecurityToken(request);
+		} finally {
+			WSSecuritySoapHandler.setAssertion(null, bindingProvider);
+		}
+		releasePort(port);
 
 		if (null == response) {
 			throw new SecurityException("missing RSTRC");
@@ -216,4 +223,55 @@ public class SecurityTokenServiceClient {
 			throw new SecurityException("missing wst:Status");
 		}
 	}
+
+	private SecurityTokenServicePort borrowPort() {
+
+		SecurityTokenServicePort port = this.idlePorts.poll();
+		if (null != port) {
+			return port;
+		}
+		return createPort();
+	}
+
+	private void releasePort(SecurityTokenServicePort port) {
+
+		this.idlePorts.offer(port);
+	}
+
+	/*
+	 * Ports keep the default HTTP keep-alive behaviour, so reusing them also
+	 * reuses the underlying (TLS) connections towards the STS.
+	 */
+	private SecurityTokenServicePort createPort() {
+
+		SecurityTokenServicePort port = getSecurityTokenService()
+				.getSecurityTokenServicePort();
+		BindingProvider bindingProvider = (BindingProvider) port;
+		Map<String, Object> requestContext = bindingProvider
+				.getRequestContext();
+		requestContext.put(BindingProvider.ENDPOINT_ADDRESS_PROPERTY,
+				this.location);
+
+		Binding binding = bindingProvider.getBinding();
+		List<Handler> handlerChain = binding.getHandlerChain();
+		handlerChain.add(wsSecuritySoapHandler);
+		if (LoggingSoapHandler.isEnabled()) {
+			handlerChain.add(new LoggingSoapHandler());
+		}
+		binding.setHandlerChain(handlerChain);
+
+		return port;
+	}
+
+	/*
+	 * The JAX-WS service parses the WSDL, so it is only created once.
+	 */
+	private static synchronized SecurityTokenService getSecurityTokenService() {
+
+		if (null == SecurityTokenServiceClient.securityTokenService) {
+			SecurityTokenServiceClient.securityTokenService = SecurityTokenServiceFactory
+					.getInstance();
+		}
+		return SecurityTokenServiceClient.securityTokenService;
+	}
 }
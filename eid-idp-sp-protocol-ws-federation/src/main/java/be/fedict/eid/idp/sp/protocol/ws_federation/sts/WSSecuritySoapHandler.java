@@ -46,6 +46,9 @@ import be.fedict.eid.idp.wstrust.WSTrustConstants;
 
 /**
  * WS-Security JAX-WS SOAP handler implementing SAML Token Profile.
+ * <p/>
+ * The handler is stateless: the assertion to be sent travels via the request
+ * context of the port, so a single instance can be shared between ports.
  * 
  * @author Frank Cornelis
  * 
@@ -139,10 +142,23 @@ public class WSSecuritySoapHandler implements SOAPHandler<SOAPMessageContext> {
 		return headers;
 	}
 
+	/**
+	 * Sets the SAML assertion to be sent with the next request of the given
+	 * port. A <code>null</code> assertion clears it again.
+	 * 
+	 * @param assertionElement
+	 *            the SAML assertion DOM element, or <code>null</code>.
+	 * @param bindingProvider
+	 *            the JAX-WS port.
+	 */
 	public static void setAssertion(Element assertionElement,
 			BindingProvider bindingProvider) {
 		Map<String, Object> requestContext = bindingProvider
 				.getRequestContext();
+		if (null == assertionElement) {
+			requestContext.remove(ASSERTION_CONTEXT_ATTRIBUTE);
+			return;
+		}
 		requestContext.put(ASSERTION_CONTEXT_ATTRIBUTE, assertionElement);
 	}
 }
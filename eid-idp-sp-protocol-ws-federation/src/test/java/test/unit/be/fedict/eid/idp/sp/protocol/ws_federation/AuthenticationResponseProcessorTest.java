@@ -20,13 +20,24 @@ package test.unit.be.fedict.eid.idp.sp.protocol.ws_federation;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.security.cert.X509Certificate;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.xml.parsers.DocumentBuilderFactory;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
@@ -34,12 +45,17 @@ import org.apache.commons.logging.LogFactory;
 import org.easymock.Capture;
 import org.easymock.EasyMock;
 import org.junit.Test;
+import org.mortbay.jetty.testing.ServletTester;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 
 import be.fedict.eid.idp.common.SamlAuthenticationPolicy;
 import be.fedict.eid.idp.common.saml2.AuthenticationResponse;
 import be.fedict.eid.idp.sp.protocol.ws_federation.AuthenticationResponseProcessor;
 import be.fedict.eid.idp.sp.protocol.ws_federation.AuthenticationResponseProcessorException;
 import be.fedict.eid.idp.sp.protocol.ws_federation.spi.AuthenticationResponseService;
+import be.fedict.eid.idp.sp.protocol.ws_federation.spi.ValidationService;
+import be.fedict.eid.idp.wstrust.WSTrustConstants;
 
 public class AuthenticationResponseProcessorTest {
 
@@ -107,6 +123,109 @@ public class AuthenticationResponseProcessorTest {
 						.get("http://schemas.xmlsoap.org/ws/2005/05/identity/claims/locality"));
 	}
 
+	@Test
+	public void testResponseValidatedBySTS() throws Exception {
+		// setup
+		SecurityTokenServiceStubServlet.reset();
+		ServletTester servletTester = new ServletTester();
+		servletTester.addServlet(SecurityTokenServiceStubServlet.class, "/sts");
+		servletTester.start();
+		String stsLocation = servletTester.createSocketConnector(true)
+				+ "/sts";
+
+		try {
+			// operate
+			processWithValidationService(stsLocation);
+			processWithValidationService(stsLocation);
+
+			// verify
+			assertEquals(2, SecurityTokenServiceStubServlet.requestCount.get());
+			assertEquals("assertion-1a65d33d-6a4d-4b8e-8250-e002426211ce",
+					SecurityTokenServiceStubServlet.assertionId);
+			assertTrue(SecurityTokenServiceStubServlet.assertionSigned);
+		} finally {
+			servletTester.stop();
+		}
+	}
+
+	@Test
+	public void testResponseRejectedBySTS() throws Exception {
+		// setup
+		SecurityTokenServiceStubServlet.reset();
+		SecurityTokenServiceStubServlet.statusCode = WSTrustConstants.INVALID_STATUS_CODE;
+		ServletTester servletTester = new ServletTester();
+		servletTester.addServlet(SecurityTokenServiceStubServlet.class, "/sts");
+		servletTester.start();
+		String stsLocation = servletTester.createSocketConnector(true)
+				+ "/sts";
+
+		try {
+			// operate
+			processWithValidationService(stsLocation);
+			fail();
+		} catch (AuthenticationResponseProcessorException e) {
+			// verify
+			LOG.debug("expected exception message: " + e.getMessage());
+			assertEquals(1, SecurityTokenServiceStubServlet.requestCount.get());
+		} finally {
+			servletTester.stop();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void processWithValidationService(String stsLocation)
+			throws Exception {
+		String wsFederationResponse = IOUtils
+				.toString(AuthenticationResponseProcessorTest.class
+						.getResourceAsStream("/ws-federation-response.xml"));
+		AuthenticationResponseService mockService = EasyMock
+				.createMock(AuthenticationResponseService.class);
+		ValidationService mockValidationService = EasyMock
+				.createMock(ValidationService.class);
+		AuthenticationResponseProcessor testedInstance = new AuthenticationResponseProcessor(
+				mockService);
+		HttpServletRequest mockRequest = EasyMock
+				.createMock(HttpServletRequest.class);
+
+		EasyMock.expect(mockService.requiresResponseSignature())
+				.andReturn(true);
+		EasyMock.expect(mockService.getAttributeSecretKey())
+				.andStubReturn(null);
+		EasyMock.expect(mockService.getAttributePrivateKey()).andStubReturn(
+				null);
+		EasyMock.expect(mockService.getMaximumTimeOffset()).andStubReturn(-1);
+		EasyMock.expect(mockService.getValidationService()).andStubReturn(
+				mockValidationService);
+		EasyMock.expect(mockValidationService.getLocation()).andStubReturn(
+				stsLocation);
+		EasyMock.expect(mockValidationService.getExpectedAudience())
+				.andStubReturn(
+						"https://www.e-contract.be:443/eid-idp-sp/wsfed-landing");
+		mockService.validateServiceCertificate(
+				(SamlAuthenticationPolicy) EasyMock.anyObject(),
+				(List<X509Certificate>) EasyMock.anyObject());
+		EasyMock.expectLastCall().anyTimes();
+
+		mockRequest.setCharacterEncoding("UTF8");
+		EasyMock.expect(mockRequest.getParameter("wa")).andStubReturn(
+				"wsignin1.0");
+		EasyMock.expect(mockRequest.getParameter("wctx")).andStubReturn(null);
+		EasyMock.expect(mockRequest.getParameter("wresult")).andStubReturn(
+				wsFederationResponse);
+
+		// prepare
+		EasyMock.replay(mockService, mockValidationService, mockRequest);
+
+		// operate
+		AuthenticationResponse response = testedInstance.process(
+				"https://www.e-contract.be:443/eid-idp-sp/wsfed-landing", null,
+				true, mockRequest);
+
+		// verify
+		EasyMock.verify(mockService, mockValidationService, mockRequest);
+		assertEquals("79102520991", response.getIdentifier());
+	}
+
 	@Test
 	public void testBrokenSignature() throws Exception {
 		// setup
@@ -152,4 +271,91 @@ public class AuthenticationResponseProcessorTest {
 			LOG.debug("expected exception message: " + ex.getMessage());
 		}
 	}
+
+	/**
+	 * In-process eID IdP STS answering WS-Trust validation requests.
+	 */
+	public static class SecurityTokenServiceStubServlet extends HttpServlet {
+
+		private static final long serialVersionUID = 1L;
+
+		static final AtomicInteger requestCount = new AtomicInteger();
+
+		static String statusCode;
+
+		static String assertionId;
+
+		static boolean assertionSigned;
+
+		static void reset() {
+			requestCount.set(0);
+			statusCode = WSTrustConstants.VALID_STATUS_CODE;
+			assertionId = null;
+			assertionSigned = false;
+		}
+
+		@Override
+		protected void doPost(HttpServletRequest request,
+				HttpServletResponse response) throws ServletException,
+				IOException {
+			requestCount.incrementAndGet();
+			try {
+				DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory
+						.newInstance();
+				documentBuilderFactory.setNamespaceAware(true);
+				Document document = documentBuilderFactory
+						.newDocumentBuilder().parse(request.getInputStream());
+				Element assertionElement = (Element) document
+						.getElementsByTagNameNS(
+								WSTrustConstants.SAML2_NAMESPACE, "Assertion")
+						.item(0);
+				if (null != assertionElement) {
+					assertionId = assertionElement.getAttribute("ID");
+					assertionSigned = 0 != assertionElement
+							.getElementsByTagNameNS(
+									WSTrustConstants.XMLDSIG_NAMESPACE,
+									"SignatureValue").getLength();
+				}
+			} catch (Exception e) {
+				throw new ServletException(e);
+			}
+
+			SimpleDateFormat dateFormat = new SimpleDateFormat(
+					"yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+			dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+			Date now = new Date();
+			response.setContentType("application/soap+xml; charset=UTF-8");
+			PrintWriter printWriter = response.getWriter();
+			printWriter
+					.print("<soap:Envelope xmlns:soap=\"http://www.w3.org/2003/05/soap-envelope\">"
+							+ "<soap:Header>"
+							+ "<wsse:Security xmlns:wsse=\""
+							+ WSTrustConstants.WS_SECURITY_NAMESPACE
+							+ "\" xmlns:wsu=\"http://docs.oasis-open.org/wss/2004/01/oasis-200401-wss-wssecurity-utility-1.0.xsd\">"
+							+ "<wsu:Timestamp wsu:Id=\"TS-1\">"
+							+ "<wsu:Created>"
+							+ dateFormat.format(now)
+							+ "</wsu:Created>"
+							+ "<wsu:Expires>"
+							+ dateFormat.format(new Date(now.getTime() + 5 * 60 * 1000))
+							+ "</wsu:Expires>"
+							+ "</wsu:Timestamp>"
+							+ "</wsse:Security>"
+							+ "</soap:Header>"
+							+ "<soap:Body>"
+							+ "<wst:RequestSecurityTokenResponseCollection xmlns:wst=\""
+							+ WSTrustConstants.WS_TRUST_NAMESPACE
+							+ "\">"
+							+ "<wst:RequestSecurityTokenResponse>"
+							+ "<wst:TokenType>"
+							+ WSTrustConstants.STATUS_TOKEN_TYPE
+							+ "</wst:TokenType>"
+							+ "<wst:Status><wst:Code>"
+							+ statusCode
+							+ "</wst:Code></wst:Status>"
+							+ "</wst:RequestSecurityTokenResponse>"
+							+ "</wst:RequestSecurityTokenResponseCollection>"
+							+ "</soap:Body>" + "</soap:Envelope>");
+		}
+	}
 }
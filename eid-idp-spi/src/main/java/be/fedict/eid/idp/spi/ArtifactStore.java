@@ -0,0 +1,53 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.spi;
+
+/**
+ * Storage for issued SAML2 artifacts. Implementations that share their state
+ * between nodes allow artifact resolution on any node of an eID IdP cluster.
+ */
+public interface ArtifactStore {
+
+	/**
+	 * Stores the given entry.
+	 * 
+	 * @param artifact
+	 *            the encoded artifact
+	 * @param entry
+	 *            the artifact store entry
+	 */
+	void put(String artifact, ArtifactStoreEntry entry);
+
+	/**
+	 * @param artifact
+	 *            the encoded artifact
+	 * @return the entry or <code>null</code> if not found or expired.
+	 */
+	ArtifactStoreEntry get(String artifact);
+
+	/**
+	 * Removes the entry of the given artifact.
+	 * 
+	 * @param artifact
+	 *            the encoded artifact
+	 * @return <code>true</code> if this call removed the entry. Only one
+	 *         concurrent caller can remove a given entry.
+	 */
+	boolean remove(String artifact);
+}
@@ -0,0 +1,75 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.spi;
+
+import java.io.Serializable;
+
+/**
+ * Entry of an {@link ArtifactStore}. The SAML message is kept in its
+ * serialized form so it can be stored outside of the JVM.
+ */
+public class ArtifactStoreEntry implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String issuerId;
+	private final String relyingPartyId;
+	private final String message;
+	private final long expirationTime;
+
+	/**
+	 * Main constructor
+	 * 
+	 * @param issuerId
+	 *            ID of the artifact issuer
+	 * @param relyingPartyId
+	 *            ID of the relying party the artifact was issued to
+	 * @param message
+	 *            the serialized SAML message
+	 * @param expirationTime
+	 *            expiration time in milliseconds since the epoch
+	 */
+	public ArtifactStoreEntry(String issuerId, String relyingPartyId,
+			String message, long expirationTime) {
+		this.issuerId = issuerId;
+		this.relyingPartyId = relyingPartyId;
+		this.message = message;
+		this.expirationTime = expirationTime;
+	}
+
+	public String getIssuerId() {
+		return this.issuerId;
+	}
+
+	public String getRelyingPartyId() {
+		return this.relyingPartyId;
+	}
+
+	public String getMessage() {
+		return this.message;
+	}
+
+	public long getExpirationTime() {
+		return this.expirationTime;
+	}
+
+	public boolean isExpired() {
+		return System.currentTimeMillis() >= this.expirationTime;
+	}
+}
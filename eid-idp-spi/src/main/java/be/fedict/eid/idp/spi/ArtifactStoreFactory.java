@@ -0,0 +1,42 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.spi;
+
+import javax.servlet.ServletContext;
+
+public class ArtifactStoreFactory {
+
+	public static final String ARTIFACT_STORE_CONTEXT_ATTRIBUTE = ArtifactStoreFactory.class
+			.getName() + ".ArtifactStore";
+
+	private ArtifactStoreFactory() {
+		super();
+	}
+
+	/**
+	 * @param servletContext
+	 *            the servlet context
+	 * @return the configured artifact store or <code>null</code> if none was
+	 *         registered.
+	 */
+	public static ArtifactStore getInstance(ServletContext servletContext) {
+		return (ArtifactStore) servletContext
+				.getAttribute(ARTIFACT_STORE_CONTEXT_ATTRIBUTE);
+	}
+}
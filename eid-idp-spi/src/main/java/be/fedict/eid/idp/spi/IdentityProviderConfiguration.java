@@ -63,4 +63,14 @@ public interface IdentityProviderConfiguration {
 	 *         token.
 	 */
 	Integer getResponseTokenValidity();
+
+	/**
+	 * Gives back the secret used to protect stateless OpenID association
+	 * handles. When set, all eID IdP nodes sharing this secret can handle each
+	 * other's OpenID associations.
+	 * 
+	 * @return secret, or <code>null</code> if OpenID associations should be
+	 *         kept in memory.
+	 */
+	byte[] getOpenIDAssociationSecret();
 }
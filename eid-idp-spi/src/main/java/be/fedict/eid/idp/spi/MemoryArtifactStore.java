@@ -0,0 +1,137 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.spi;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Bounded in-memory {@link ArtifactStore}. Expired entries are swept by a
+ * background timer. This store is local to a single node, so artifact
+ * resolution requires sticky sessions in a cluster.
+ */
+public class MemoryArtifactStore implements ArtifactStore {
+
+	private static final Log LOG = LogFactory.getLog(MemoryArtifactStore.class);
+
+	public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+	public static final long DEFAULT_SWEEP_INTERVAL = 60 * 1000;
+
+	private final ConcurrentMap<String, ArtifactStoreEntry> entries;
+
+	private final int maxEntries;
+
+	private final Timer sweepTimer;
+
+	public MemoryArtifactStore() {
+		this(DEFAULT_MAX_ENTRIES, DEFAULT_SWEEP_INTERVAL);
+	}
+
+	/**
+	 * Main constructor
+	 * 
+	 * @param maxEntries
+	 *            the maximum number of entries held
+	 * @param sweepInterval
+	 *            interval in milliseconds between sweeps of expired entries,
+	 *            or <code>0</code> to only sweep when the store is full.
+	 */
+	public MemoryArtifactStore(int maxEntries, long sweepInterval) {
+		this.entries = new ConcurrentHashMap<String, ArtifactStoreEntry>();
+		this.maxEntries = maxEntries;
+		if (sweepInterval <= 0) {
+			this.sweepTimer = null;
+			return;
+		}
+		this.sweepTimer = new Timer("eid-idp-artifact-sweeper", true);
+		this.sweepTimer.schedule(new TimerTask() {
+
+			@Override
+			public void run() {
+				sweep();
+			}
+		}, sweepInterval, sweepInterval);
+	}
+
+	public void put(String artifact, ArtifactStoreEntry entry) {
+
+		if (this.entries.size() >= this.maxEntries) {
+			sweep();
+			if (this.entries.size() >= this.maxEntries) {
+				throw new IllegalStateException("artifact store full: "
+						+ this.maxEntries + " entries");
+			}
+		}
+		this.entries.put(artifact, entry);
+	}
+
+	public ArtifactStoreEntry get(String artifact) {
+
+		ArtifactStoreEntry entry = this.entries.get(artifact);
+		if (null == entry) {
+			return null;
+		}
+		if (entry.isExpired()) {
+			this.entries.remove(artifact, entry);
+			return null;
+		}
+		return entry;
+	}
+
+	public boolean remove(String artifact) {
+		return null != this.entries.remove(artifact);
+	}
+
+	/**
+	 * Removes all expired entries.
+	 */
+	public void sweep() {
+
+		int removed = 0;
+		Iterator<Map.Entry<String, ArtifactStoreEntry>> iterator = this.entries
+				.entrySet().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().getValue().isExpired()) {
+				iterator.remove();
+				removed++;
+			}
+		}
+		if (removed > 0) {
+			LOG.debug("expired artifacts removed: " + removed);
+		}
+	}
+
+	/**
+	 * Stops the background sweeping.
+	 */
+	public void destroy() {
+		if (null != this.sweepTimer) {
+			this.sweepTimer.cancel();
+		}
+		this.entries.clear();
+	}
+}
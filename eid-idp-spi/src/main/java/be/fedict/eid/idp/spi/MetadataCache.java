@@ -0,0 +1,240 @@
+/*
+ * eID Identity Provider Project.
+ * Copyright (C) 2010 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.idp.spi;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Cache for serialized, signed metadata documents. Entries are keyed per
+ * metadata servlet and virtual host. Each entry carries a version string
+ * derived from everything that ends up in the document (IdP identity,
+ * issuer, ...). An entry whose version no longer matches is treated as a
+ * miss, so reloading the identity or changing the issuer invalidates the
+ * cached document.
+ * <p/>
+ * The host is client controlled, so the number of entries is bounded.
+ */
+public class MetadataCache {
+
+	public static final int DEFAULT_MAX_ENTRIES = 64;
+
+	private final Map<String, Entry> entries;
+
+	public MetadataCache() {
+		this(DEFAULT_MAX_ENTRIES);
+	}
+
+	/**
+	 * Main constructor
+	 * 
+	 * @param maxEntries
+	 *            the maximum number of cached documents
+	 */
+	@SuppressWarnings("serial")
+	public MetadataCache(final int maxEntries) {
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * @param key
+	 *            the cache key, see {@link #getKey(HttpServletRequest, String)}
+	 * @param version
+	 *            the current version of the metadata content
+	 * @return the cached entry, or <code>null</code> if absent or outdated.
+	 */
+	public Entry find(String key, String version) {
+
+		Entry entry;
+		synchronized (this.entries) {
+			entry = this.entries.get(key);
+		}
+		if (null == entry || !entry.version.equals(version)) {
+			return null;
+		}
+		return entry;
+	}
+
+	public Entry put(String key, String version, byte[] document) {
+
+		Entry entry = new Entry(version, document);
+		synchronized (this.entries) {
+			this.entries.put(key, entry);
+		}
+		return entry;
+	}
+
+	/**
+	 * @return the cache key for the given metadata path, as served to the
+	 *         host and port of the request.
+	 */
+	public static String getKey(HttpServletRequest request, String path) {
+
+		return path + "|" + request.getServerName() + ":"
+				+ request.getServerPort() + request.getContextPath();
+	}
+
+	/**
+	 * Gives back a version string for the metadata content.
+	 * 
+	 * @param identity
+	 *            the active IdP identity, can be <code>null</code>.
+	 * @param parts
+	 *            other values that end up in the metadata document.
+	 * @return the version.
+	 */
+	public static String getVersion(IdPIdentity identity, Object... parts) {
+
+		MessageDigest messageDigest = getMessageDigest();
+		if (null != identity) {
+			Certificate certificate = identity.getPrivateKeyEntry()
+					.getCertificate();
+			try {
+				messageDigest.update(certificate.getEncoded());
+			} catch (CertificateEncodingException e) {
+				throw new RuntimeException("certificate encoding error: "
+						+ e.getMessage(), e);
+			}
+		}
+		for (Object part : parts) {
+			messageDigest.update((byte) 0);
+			try {
+				messageDigest.update(String.valueOf(part).getBytes("UTF-8"));
+			} catch (UnsupportedEncodingException e) {
+				throw new RuntimeException("UTF-8 not supported", e);
+			}
+		}
+		return toHex(messageDigest.digest());
+	}
+
+	private static MessageDigest getMessageDigest() {
+
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("SHA-1 not available", e);
+		}
+	}
+
+	private static String toHex(byte[] data) {
+
+		StringBuilder result = new StringBuilder(data.length * 2);
+		for (byte b : data) {
+			result.append(Character.forDigit((b >> 4) & 0xf, 16));
+			result.append(Character.forDigit(b & 0xf, 16));
+		}
+		return result.toString();
+	}
+
+	/**
+	 * A cached metadata document.
+	 */
+	public static class Entry {
+
+		private final String version;
+
+		private final byte[] document;
+
+		private final String etag;
+
+		private final long lastModified;
+
+		Entry(String version, byte[] document) {
+
+			this.version = version;
+			this.document = document;
+			this.etag = "\"" + toHex(getMessageDigest().digest(document))
+					+ "\"";
+			// HTTP dates have a resolution of seconds
+			this.lastModified = System.currentTimeMillis() / 1000 * 1000;
+		}
+
+		public byte[] getDocument() {
+			return this.document;
+		}
+
+		public String getETag() {
+			return this.etag;
+		}
+
+		public long getLastModified() {
+			return this.lastModified;
+		}
+
+		/**
+		 * @return <code>true</code> if the conditional headers of the request
+		 *         show that the client already has this document.
+		 */
+		public boolean isNotModified(HttpServletRequest request) {
+
+			String ifNoneMatch = request.getHeader("If-None-Match");
+			if (null != ifNoneMatch) {
+				for (String tag : ifNoneMatch.split(",")) {
+					tag = tag.trim();
+					if (tag.equals("*") || tag.equals(this.etag)) {
+						return true;
+					}
+				}
+				return false;
+			}
+			long ifModifiedSince;
+			try {
+				ifModifiedSince = request.getDateHeader("If-Modified-Since");
+			} catch (IllegalArgumentException e) {
+				return false;
+			}
+			return -1 != ifModifiedSince
+					&& this.lastModified <= ifModifiedSince;
+		}
+
+		/**
+		 * Writes this document to the response, or a 304 in case of a
+		 * matching conditional GET.
+		 */
+		public void write(HttpServletRequest request,
+				HttpServletResponse response) throws IOException {
+
+			response.setHeader("ETag", this.etag);
+			response.setDateHeader("Last-Modified", this.lastModified);
+			if (isNotModified(request)) {
+				response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				return;
+			}
+			response.setContentLength(this.document.length);
+			OutputStream outputStream = response.getOutputStream();
+			outputStream.write(this.document);
+		}
+	}
+}
@@ -18,11 +18,37 @@
 
 package test.integ.be.fedict.eid.idp;
 
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.security.cert.X509Certificate;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.easymock.EasyMock;
 import org.junit.Test;
+import org.mortbay.jetty.testing.ServletTester;
+
+import be.fedict.eid.idp.common.SamlAuthenticationPolicy;
+import be.fedict.eid.idp.common.saml2.AuthenticationResponse;
+import be.fedict.eid.idp.sp.protocol.ws_federation.AuthenticationResponseProcessor;
+import be.fedict.eid.idp.sp.protocol.ws_federation.spi.AuthenticationResponseService;
+import be.fedict.eid.idp.sp.protocol.ws_federation.spi.ValidationService;
+import be.fedict.eid.idp.wstrust.WSTrustConstants;
 
 public class PerformanceTest {
 
@@ -41,4 +67,145 @@ public class PerformanceTest {
 			httpClient.executeMethod(getMethod);
 		}
 	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testWSFederationResponseProcessing() throws Exception {
+		// setup
+		SecurityTokenServiceStubServlet.requestCount.set(0);
+		ServletTester servletTester = new ServletTester();
+		servletTester.addServlet(SecurityTokenServiceStubServlet.class, "/sts");
+		servletTester.start();
+		String stsLocation = servletTester.createSocketConnector(true)
+				+ "/sts";
+
+		String wsFederationResponse = IOUtils.toString(PerformanceTest.class
+				.getResourceAsStream("/ws-federation-response.xml"));
+		AuthenticationResponseService mockService = EasyMock
+				.createMock(AuthenticationResponseService.class);
+		ValidationService mockValidationService = EasyMock
+				.createMock(ValidationService.class);
+		AuthenticationResponseProcessor testedInstance = new AuthenticationResponseProcessor(
+				mockService);
+		HttpServletRequest mockRequest = EasyMock
+				.createMock(HttpServletRequest.class);
+
+		EasyMock.expect(mockService.requiresResponseSignature())
+				.andStubReturn(true);
+		EasyMock.expect(mockService.getAttributeSecretKey())
+				.andStubReturn(null);
+		EasyMock.expect(mockService.getAttributePrivateKey()).andStubReturn(
+				null);
+		EasyMock.expect(mockService.getMaximumTimeOffset()).andStubReturn(-1);
+		EasyMock.expect(mockService.getValidationService()).andStubReturn(
+				mockValidationService);
+		EasyMock.expect(mockValidationService.getLocation()).andStubReturn(
+				stsLocation);
+		EasyMock.expect(mockValidationService.getExpectedAudience())
+				.andStubReturn(
+						"https://www.e-contract.be:443/eid-idp-sp/wsfed-landing");
+		mockService.validateServiceCertificate(
+				(SamlAuthenticationPolicy) EasyMock.anyObject(),
+				(List<X509Certificate>) EasyMock.anyObject());
+		EasyMock.expectLastCall().anyTimes();
+
+		mockRequest.setCharacterEncoding("UTF8");
+		EasyMock.expectLastCall().anyTimes();
+		EasyMock.expect(mockRequest.getParameter("wa")).andStubReturn(
+				"wsignin1.0");
+		EasyMock.expect(mockRequest.getParameter("wctx")).andStubReturn(null);
+		EasyMock.expect(mockRequest.getParameter("wresult")).andStubReturn(
+				wsFederationResponse);
+
+		// prepare
+		EasyMock.replay(mockService, mockValidationService, mockRequest);
+
+		int count = 100;
+		long duration;
+		try {
+			// warm up
+			for (int idx = 0; idx < count; idx++) {
+				testedInstance
+						.process(
+								"https://www.e-contract.be:443/eid-idp-sp/wsfed-landing",
+								null, true, mockRequest);
+			}
+
+			// operate
+			long t0 = System.currentTimeMillis();
+			for (int idx = 0; idx < count; idx++) {
+				AuthenticationResponse response = testedInstance
+						.process(
+								"https://www.e-contract.be:443/eid-idp-sp/wsfed-landing",
+								null, true, mockRequest);
+				assertEquals("79102520991", response.getIdentifier());
+			}
+			duration = System.currentTimeMillis() - t0;
+		} finally {
+			servletTester.stop();
+		}
+
+		// verify
+		EasyMock.verify(mockService, mockValidationService, mockRequest);
+		assertEquals(2 * count,
+				SecurityTokenServiceStubServlet.requestCount.get());
+		LOG.debug("average processing time: " + ((double) duration / count)
+				+ " ms per response (" + wsFederationResponse.length()
+				+ " characters), including STS validation");
+	}
+
+	/**
+	 * In-process eID IdP STS accepting every WS-Trust validation request.
+	 */
+	public static class SecurityTokenServiceStubServlet extends HttpServlet {
+
+		private static final long serialVersionUID = 1L;
+
+		static final AtomicInteger requestCount = new AtomicInteger();
+
+		@Override
+		protected void doPost(HttpServletRequest request,
+				HttpServletResponse response) throws ServletException,
+				IOException {
+			requestCount.incrementAndGet();
+			IOUtils.toByteArray(request.getInputStream());
+
+			SimpleDateFormat dateFormat = new SimpleDateFormat(
+					"yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+			dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+			Date now = new Date();
+			response.setContentType("application/soap+xml; charset=UTF-8");
+			PrintWriter printWriter = response.getWriter();
+			printWriter
+					.print("<soap:Envelope xmlns:soap=\"http://www.w3.org/2003/05/soap-envelope\">"
+							+ "<soap:Header>"
+							+ "<wsse:Security xmlns:wsse=\""
+							+ WSTrustConstants.WS_SECURITY_NAMESPACE
+							+ "\" xmlns:wsu=\"http://docs.oasis-open.org/wss/2004/01/oasis-200401-wss-wssecurity-utility-1.0.xsd\">"
+							+ "<wsu:Timestamp wsu:Id=\"TS-1\">"
+							+ "<wsu:Created>"
+							+ dateFormat.format(now)
+							+ "</wsu:Created>"
+							+ "<wsu:Expires>"
+							+ dateFormat.format(new Date(now.getTime() + 5 * 60 * 1000))
+							+ "</wsu:Expires>"
+							+ "</wsu:Timestamp>"
+							+ "</wsse:Security>"
+							+ "</soap:Header>"
+							+ "<soap:Body>"
+							+ "<wst:RequestSecurityTokenResponseCollection xmlns:wst=\""
+							+ WSTrustConstants.WS_TRUST_NAMESPACE
+							+ "\">"
+							+ "<wst:RequestSecurityTokenResponse>"
+							+ "<wst:TokenType>"
+							+ WSTrustConstants.STATUS_TOKEN_TYPE
+							+ "</wst:TokenType>"
+							+ "<wst:Status><wst:Code>"
+							+ WSTrustConstants.VALID_STATUS_CODE
+							+ "</wst:Code></wst:Status>"
+							+ "</wst:RequestSecurityTokenResponse>"
+							+ "</wst:RequestSecurityTokenResponseCollection>"
+							+ "</soap:Body>" + "</soap:Envelope>");
+		}
+	}
 }
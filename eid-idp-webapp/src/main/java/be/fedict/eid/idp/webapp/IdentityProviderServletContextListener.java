@@ -30,6 +30,7 @@ import javax.servlet.Servlet;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
+import javax.servlet.ServletException;
 import javax.servlet.ServletRegistration.Dynamic;
 import javax.xml.namespace.QName;
 import javax.xml.ws.WebServiceException;
@@ -39,14 +40,20 @@ import org.apache.commons.logging.LogFactory;
 import org.xml.sax.EntityResolver;
 
 import be.fedict.eid.idp.entity.AttributeEntity;
+import be.fedict.eid.idp.model.ArtifactService;
 import be.fedict.eid.idp.model.AttributeService;
 import be.fedict.eid.idp.model.AttributeServiceManager;
+import be.fedict.eid.idp.model.ConfigProperty;
+import be.fedict.eid.idp.model.Configuration;
 import be.fedict.eid.idp.model.IdentityService;
 import be.fedict.eid.idp.model.ProtocolServiceManager;
 import be.fedict.eid.idp.model.exception.KeyStoreLoadException;
+import be.fedict.eid.idp.spi.ArtifactStore;
+import be.fedict.eid.idp.spi.ArtifactStoreFactory;
 import be.fedict.eid.idp.spi.DefaultAttribute;
 import be.fedict.eid.idp.spi.IdentityProviderConfigurationFactory;
 import be.fedict.eid.idp.spi.IdentityProviderProtocolService;
+import be.fedict.eid.idp.spi.MemoryArtifactStore;
 import be.fedict.eid.idp.spi.attribute.IdentityProviderAttributeType;
 import be.fedict.eid.idp.spi.protocol.EndpointType;
 import be.fedict.eid.idp.spi.protocol.EndpointsType;
@@ -90,6 +97,12 @@ public class IdentityProviderServletContextListener implements
 	@EJB
 	private AttributeService attributeService;
 
+	@EJB
+	private ArtifactService artifactService;
+
+	@EJB
+	private Configuration configuration;
+
 	// WS Endpoints
 	private WSServletDelegate delegate;
 	private List<ServletAdapter> adapters;
@@ -110,12 +123,14 @@ public class IdentityProviderServletContextListener implements
 
 		initAttributes();
 
-		initAttributeServices();
+		initAttributeServices(event);
 
 		initProtocolServices(event);
 
 		initIdentityProviderConfiguration(event);
 
+		initArtifactStore(event);
+
 	}
 
 	@Override
@@ -124,6 +139,12 @@ public class IdentityProviderServletContextListener implements
 		LOG.debug("contextDestroy");
 
 		destroyWsEndpoints();
+
+		ArtifactStore artifactStore = ArtifactStoreFactory.getInstance(event
+				.getServletContext());
+		if (artifactStore instanceof MemoryArtifactStore) {
+			((MemoryArtifactStore) artifactStore).destroy();
+		}
 	}
 
 	/**
@@ -159,7 +180,29 @@ public class IdentityProviderServletContextListener implements
 						this.identityService);
 	}
 
-	private void initAttributeServices() {
+	/**
+	 * Initialize the SAML2 artifact store. The database backed store allows
+	 * artifact resolution on any node of a cluster.
+	 */
+	private void initArtifactStore(ServletContextEvent event) {
+
+		ServletContext servletContext = event.getServletContext();
+		Boolean sharedArtifactStore = this.configuration.getValue(
+				ConfigProperty.SHARED_ARTIFACT_STORE, Boolean.class);
+		if (null != sharedArtifactStore && sharedArtifactStore) {
+			LOG.debug("shared artifact store");
+			servletContext.setAttribute(
+					ArtifactStoreFactory.ARTIFACT_STORE_CONTEXT_ATTRIBUTE,
+					this.artifactService);
+		} else {
+			LOG.debug("in-memory artifact store");
+			servletContext.setAttribute(
+					ArtifactStoreFactory.ARTIFACT_STORE_CONTEXT_ATTRIBUTE,
+					new MemoryArtifactStore());
+		}
+	}
+
+	private void initAttributeServices(ServletContextEvent event) {
 
 		List<IdentityProviderAttributeType> identityProviderAttributeTypes = this.attributeServiceManager
 				.getAttributeServiceTypes();
@@ -173,6 +216,13 @@ public class IdentityProviderServletContextListener implements
 			LOG.debug("initializating attribute service for: " + name);
 			this.attributeService.saveAttribute(name, description, uri);
 		}
+
+		try {
+			ProtocolEntryServlet.reloadAttributeServices(
+					event.getServletContext(), this.attributeServiceManager);
+		} catch (ServletException e) {
+			throw new RuntimeException(e);
+		}
 	}
 
 	private void initProtocolServices(ServletContextEvent event) {
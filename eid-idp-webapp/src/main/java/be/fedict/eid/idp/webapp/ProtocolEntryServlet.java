@@ -20,7 +20,9 @@ package be.fedict.eid.idp.webapp;
 
 import java.io.IOException;
 import java.security.cert.CertificateEncodingException;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -38,7 +40,6 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import be.fedict.eid.idp.entity.AttributeEntity;
-import be.fedict.eid.idp.entity.RPAttributeEntity;
 import be.fedict.eid.idp.entity.RPEntity;
 import be.fedict.eid.idp.model.AccountingService;
 import be.fedict.eid.idp.model.AttributeService;
@@ -46,7 +47,10 @@ import be.fedict.eid.idp.model.AttributeServiceManager;
 import be.fedict.eid.idp.model.Constants;
 import be.fedict.eid.idp.model.IdentityService;
 import be.fedict.eid.idp.model.ProtocolServiceManager;
-import be.fedict.eid.idp.model.RPService;
+import be.fedict.eid.idp.model.RPRegistry;
+import be.fedict.eid.idp.model.RPRegistryEntry;
+import be.fedict.eid.idp.model.Statistics;
+import be.fedict.eid.idp.model.StatisticsStage;
 import be.fedict.eid.idp.spi.IdentityProviderAttributeService;
 import be.fedict.eid.idp.spi.IdentityProviderProtocolService;
 import be.fedict.eid.idp.spi.IncomingRequest;
@@ -89,11 +93,14 @@ public class ProtocolEntryServlet extends HttpServlet {
 	AccountingService accountingService;
 
 	@EJB
-	RPService rpService;
+	RPRegistry rpRegistry;
 
 	@EJB
 	AttributeService attributeService;
 
+	@EJB
+	Statistics statistics;
+
 	private String unknownProtocolPageInitParam;
 
 	private String unsupportedBrowserPageInitParam;
@@ -148,6 +155,51 @@ public class ProtocolEntryServlet extends HttpServlet {
 				attributeServices);
 	}
 
+	/**
+	 * (Re)builds the attribute service registry. Every attribute service
+	 * descriptor is loaded, instantiated and initialized exactly once. The
+	 * resulting registry is immutable and replaces any previous one in a
+	 * single step, so concurrent authentications either see the old or the
+	 * new registry.
+	 * 
+	 * @param servletContext
+	 *            servlet context holding the registry
+	 * @param attributeServiceManager
+	 *            attribute service manager
+	 * @return the new attribute service registry, keyed by attribute URI.
+	 * @throws ServletException
+	 *             in case an attribute service URI is registered twice
+	 */
+	public static Map<String, IdentityProviderAttributeService> reloadAttributeServices(
+			ServletContext servletContext,
+			AttributeServiceManager attributeServiceManager)
+			throws ServletException {
+
+		Map<String, IdentityProviderAttributeService> attributeServices = new LinkedHashMap<String, IdentityProviderAttributeService>();
+		List<IdentityProviderAttributeType> identityProviderAttributes = attributeServiceManager
+				.getAttributeServiceTypes();
+		for (IdentityProviderAttributeType identityProviderAttribute : identityProviderAttributes) {
+			String uri = identityProviderAttribute.getURI();
+			LOG.debug("attribute URI: " + uri);
+			if (attributeServices.containsKey(uri)) {
+				throw new ServletException(
+						"attribute service for URI already registered: " + uri);
+			}
+			IdentityProviderAttributeService attributeService = attributeServiceManager
+					.getAttributeService(identityProviderAttribute);
+			if (null == attributeService) {
+				LOG.error("skipping attribute service for URI: " + uri);
+				continue;
+			}
+			attributeService.init(servletContext);
+			attributeServices.put(uri, attributeService);
+		}
+
+		attributeServices = Collections.unmodifiableMap(attributeServices);
+		setAttributeServices(attributeServices, servletContext);
+		return attributeServices;
+	}
+
 	@Override
 	public void init(ServletConfig config) throws ServletException {
 		/*
@@ -197,26 +249,11 @@ public class ProtocolEntryServlet extends HttpServlet {
 		}
 
 		/*
-		 * Initialize the attribute services.
+		 * Initialize the attribute services, if not yet done at startup.
 		 */
 		if (null == findAttributeServices(servletContext)) {
-			Map<String, IdentityProviderAttributeService> attributeServices = new HashMap<String, IdentityProviderAttributeService>();
-			setAttributeServices(attributeServices, servletContext);
-			List<IdentityProviderAttributeType> identityProviderAttributes = this.attributeServiceManager
-					.getAttributeServiceTypes();
-			for (IdentityProviderAttributeType identityProviderAttribute : identityProviderAttributes) {
-				String uri = identityProviderAttribute.getURI();
-				LOG.debug("attribute URI: " + uri);
-				IdentityProviderAttributeService attributeService = this.attributeServiceManager
-						.getAttributeService(identityProviderAttribute);
-				if (attributeServices.containsKey(uri)) {
-					throw new ServletException(
-							"attribute service for URI already registered: "
-									+ uri);
-				}
-				attributeService.init(servletContext);
-				attributeServices.put(uri, attributeService);
-			}
+			reloadAttributeServices(servletContext,
+					this.attributeServiceManager);
 		}
 	}
 
@@ -281,6 +318,7 @@ public class ProtocolEntryServlet extends HttpServlet {
 	private void handleRequest(HttpServletRequest request,
 			HttpServletResponse response) throws IOException, ServletException {
 
+		long startTime = System.currentTimeMillis();
 		LOG.debug("handle request");
 		LOG.debug("request URI: " + request.getRequestURI());
 		LOG.debug("request method: " + request.getMethod());
@@ -325,7 +363,8 @@ public class ProtocolEntryServlet extends HttpServlet {
 			request.getSession().setAttribute(
 					Constants.RP_DOMAIN_SESSION_ATTRIBUTE,
 					incomingRequest.getSpDomain());
-			RPEntity rp = this.rpService.find(incomingRequest.getSpDomain());
+			RPRegistryEntry rp = this.rpRegistry.find(incomingRequest
+					.getSpDomain());
 			if (null != rp) {
 
 				if (!isValid(rp, incomingRequest, request, response)) {
@@ -363,15 +402,7 @@ public class ProtocolEntryServlet extends HttpServlet {
 
 					// check RP's config if necessary
 					if (null != rp) {
-						boolean found = false;
-						for (RPAttributeEntity rpAttribute : rp.getAttributes()) {
-							if (rpAttribute.getAttribute().equals(attribute)) {
-								found = true;
-								break;
-							}
-						}
-
-						if (!found) {
+						if (!rp.hasAttribute(attribute.getUri())) {
 							redirectToErrorPage("Required attribute \""
 									+ attributeProtocolUri
 									+ "\" not available.", request, response);
@@ -403,6 +434,13 @@ public class ProtocolEntryServlet extends HttpServlet {
 
 			// accounting
 			this.accountingService.addRequest(incomingRequest.getSpDomain());
+			long entryTime = System.currentTimeMillis();
+			request.getSession().setAttribute(
+					Constants.ENTRY_TIME_SESSION_ATTRIBUTE, entryTime);
+			this.statistics.recordLatency(StatisticsStage.ENTRY,
+					protocolService.getId(),
+					null != rp ? rp.getRp().getDomain() : null,
+					entryTime - startTime);
 
 		} catch (Exception e) {
 			LOG.error("protocol error: " + e.getMessage(), e);
@@ -422,10 +460,11 @@ public class ProtocolEntryServlet extends HttpServlet {
 				+ this.protocolErrorPageInitParam);
 	}
 
-	private boolean isValid(RPEntity rp, IncomingRequest incomingRequest,
-			HttpServletRequest request, HttpServletResponse response)
-			throws IOException {
+	private boolean isValid(RPRegistryEntry rpEntry,
+			IncomingRequest incomingRequest, HttpServletRequest request,
+			HttpServletResponse response) throws IOException {
 
+		RPEntity rp = rpEntry.getRp();
 		LOG.debug("found RP: " + rp.getName());
 
 		if (rp.isRequestSigningRequired()) {
@@ -441,12 +480,11 @@ public class ProtocolEntryServlet extends HttpServlet {
 		}
 
 		if (null != incomingRequest.getSpCertificate()
-				&& null != rp.getEncodedCertificate()) {
+				&& null != rpEntry.getCertificateFingerprint()) {
 
 			// verify fingerprint
 			try {
-				String rpFingerprint = DigestUtils.shaHex(rp
-						.getEncodedCertificate());
+				String rpFingerprint = rpEntry.getCertificateFingerprint();
 				String requestFingerPrint = DigestUtils.shaHex(incomingRequest
 						.getSpCertificate().getEncoded());
 
@@ -466,22 +504,19 @@ public class ProtocolEntryServlet extends HttpServlet {
 		}
 
 		// check whether relying party has been blocked
-		Boolean blocked = this.rpService.getBlocked(rp);
-		if (null != blocked) {
-			if (blocked) {
-				LOG.warn("blocked relying party: " + rp.getName());
-				String blockedMessage = this.rpService.getBlockedMessage(rp);
-				if (null == blockedMessage) {
-					blockedMessage = "Unknown reason.";
-				}
-				HttpSession httpSession = request.getSession();
-				httpSession.setAttribute(
-						this.blockedMessageSessionAttributeInitParam,
-						blockedMessage);
-				response.sendRedirect(request.getContextPath()
-						+ this.blockedPageInitParam);
-				return false;
+		if (rpEntry.isBlocked()) {
+			LOG.warn("blocked relying party: " + rp.getName());
+			String blockedMessage = rpEntry.getBlockedMessage();
+			if (null == blockedMessage) {
+				blockedMessage = "Unknown reason.";
 			}
+			HttpSession httpSession = request.getSession();
+			httpSession.setAttribute(
+					this.blockedMessageSessionAttributeInitParam,
+					blockedMessage);
+			response.sendRedirect(request.getContextPath()
+					+ this.blockedPageInitParam);
+			return false;
 		}
 
 		request.getSession().setAttribute(Constants.RP_SESSION_ATTRIBUTE, rp);
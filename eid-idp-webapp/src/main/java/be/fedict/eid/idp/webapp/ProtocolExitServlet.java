@@ -20,18 +20,18 @@
 package be.fedict.eid.idp.webapp;
 
 import java.io.IOException;
-import java.security.InvalidKeyException;
 import java.security.PublicKey;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
-import javax.crypto.Mac;
 import javax.crypto.SecretKey;
 import javax.ejb.EJB;
 import javax.security.auth.x500.X500Principal;
 import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -39,7 +39,6 @@ import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 
 import org.apache.commons.codec.DecoderException;
-import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -53,9 +52,13 @@ import be.fedict.eid.idp.entity.RPEntity;
 import be.fedict.eid.idp.model.AttributeService;
 import be.fedict.eid.idp.model.AttributeServiceManager;
 import be.fedict.eid.idp.model.Constants;
-import be.fedict.eid.idp.model.CryptoUtil;
 import be.fedict.eid.idp.model.IdentityService;
+import be.fedict.eid.idp.model.RPCryptoContext;
+import be.fedict.eid.idp.model.RPRegistry;
+import be.fedict.eid.idp.model.RPRegistryEntry;
 import be.fedict.eid.idp.model.Statistics;
+import be.fedict.eid.idp.model.StatisticsStage;
+import be.fedict.eid.idp.model.exception.KeyLoadException;
 import be.fedict.eid.idp.spi.DefaultAttribute;
 import be.fedict.eid.idp.spi.IdentityProviderAttributeService;
 import be.fedict.eid.idp.spi.IdentityProviderProtocolService;
@@ -95,6 +98,11 @@ public class ProtocolExitServlet extends HttpServlet {
 	@EJB
 	private Statistics statistics;
 
+	@EJB
+	private RPRegistry rpRegistry;
+
+	private transient volatile RPCryptoContext defaultCryptoContext;
+
 	@Override
 	public void init(ServletConfig config) throws ServletException {
 		this.protocolErrorPageInitParam = getRequiredInitParameter(config,
@@ -109,6 +117,18 @@ public class ProtocolExitServlet extends HttpServlet {
 				config, "ResponseAttributesSessionAttribute");
 	}
 
+	private Collection<IdentityProviderAttributeService> getAttributeServices(
+			ServletContext servletContext) throws ServletException {
+
+		Map<String, IdentityProviderAttributeService> attributeServices = ProtocolEntryServlet
+				.findAttributeServices(servletContext);
+		if (null == attributeServices) {
+			attributeServices = ProtocolEntryServlet.reloadAttributeServices(
+					servletContext, this.attributeServiceManager);
+		}
+		return attributeServices.values();
+	}
+
 	private String getRequiredInitParameter(ServletConfig config,
 			String initParamName) throws ServletException {
 		String value = config.getInitParameter(initParamName);
@@ -121,6 +141,7 @@ public class ProtocolExitServlet extends HttpServlet {
 	@Override
 	protected void doGet(HttpServletRequest request,
 			HttpServletResponse response) throws ServletException, IOException {
+		long startTime = System.currentTimeMillis();
 		LOG.debug("doGet");
 		HttpSession httpSession = request.getSession();
 		IdentityProviderProtocolService protocolService;
@@ -141,6 +162,14 @@ public class ProtocolExitServlet extends HttpServlet {
 		// get optional RP from Http Session
 		RPEntity rp = (RPEntity) request.getSession().getAttribute(
 				Constants.RP_SESSION_ATTRIBUTE);
+		String rpDomain = null != rp ? rp.getDomain() : null;
+
+		Long entryTime = (Long) httpSession
+				.getAttribute(Constants.ENTRY_TIME_SESSION_ATTRIBUTE);
+		if (null != entryTime) {
+			this.statistics.recordLatency(StatisticsStage.IDENTIFICATION,
+					protocolId, rpDomain, startTime - entryTime);
+		}
 
 		// get eID data from Http Session
 		Identity identity = (Identity) httpSession
@@ -154,19 +183,35 @@ public class ProtocolExitServlet extends HttpServlet {
 		byte[] photo = (byte[]) httpSession
 				.getAttribute(IdentityDataMessageHandler.PHOTO_SESSION_ATTRIBUTE);
 
+		// get RP key material
+		RPCryptoContext rpCryptoContext = null;
+		if (null != rp) {
+			try {
+				rpCryptoContext = getCryptoContext(rp);
+			} catch (Exception e) {
+				LOG.error("protocol error: " + e.getMessage(), e);
+				httpSession.setAttribute(
+						this.protocolErrorMessageSessionAttributeInitParam,
+						e.getMessage());
+				response.sendRedirect(request.getContextPath()
+						+ this.protocolErrorPageInitParam);
+				return;
+			}
+		}
+
 		// get userID + attributes
 		String userId;
 		if (null != identity) {
-			userId = getUniqueId(identity.getNationalNumber(), rp);
+			userId = getUniqueId(identity.getNationalNumber(), rpCryptoContext);
 		} else {
-			userId = getUniqueId(authenticatedIdentifier, rp);
+			userId = getUniqueId(authenticatedIdentifier, rpCryptoContext);
 		}
 		Map<String, Attribute> attributes = getAttributes(userId, identity,
 				address, authnCertificate, photo);
 
 		// add derived attributes
-		for (IdentityProviderAttributeService attributeService : this.attributeServiceManager
-				.getAttributeServices()) {
+		for (IdentityProviderAttributeService attributeService : getAttributeServices(request
+				.getServletContext())) {
 
 			attributeService.addAttribute(attributes);
 		}
@@ -179,28 +224,9 @@ public class ProtocolExitServlet extends HttpServlet {
 		// get RP SecretKey and/or PublicKey
 		SecretKey secretKey = null;
 		PublicKey publicKey = null;
-		if (null != rp) {
-
-			try {
-				if (null != rp.getAttributeSecretKey()) {
-					secretKey = CryptoUtil.getSecretKey(
-							rp.getAttributeSecretAlgorithm(),
-							rp.getAttributeSecretKey());
-				}
-
-				if (null != rp.getAttributePublicKey()) {
-					publicKey = CryptoUtil.getPublicKey(rp
-							.getAttributePublicKey());
-				}
-			} catch (Exception e) {
-				LOG.error("protocol error: " + e.getMessage(), e);
-				httpSession.setAttribute(
-						this.protocolErrorMessageSessionAttributeInitParam,
-						e.getMessage());
-				response.sendRedirect(request.getContextPath()
-						+ this.protocolErrorPageInitParam);
-				return;
-			}
+		if (null != rpCryptoContext) {
+			secretKey = rpCryptoContext.getAttributeSecretKey();
+			publicKey = rpCryptoContext.getAttributePublicKey();
 		}
 
 		// set encryption info if needed
@@ -221,10 +247,13 @@ public class ProtocolExitServlet extends HttpServlet {
 
 		// return protocol specific response
 		ReturnResponse returnResponse;
+		long signingStartTime = System.currentTimeMillis();
 		try {
 			returnResponse = protocolService.handleReturnResponse(httpSession,
 					userId, attributes, secretKey, publicKey, targetURL,
 					request, response);
+			this.statistics.recordLatency(StatisticsStage.SIGNING, protocolId,
+					rpDomain, System.currentTimeMillis() - signingStartTime);
 		} catch (Exception e) {
 			LOG.error("protocol error: " + e.getMessage(), e);
 			httpSession.setAttribute(
@@ -259,6 +288,8 @@ public class ProtocolExitServlet extends HttpServlet {
 					returnResponse.getAttributes());
 			response.sendRedirect(request.getContextPath()
 					+ this.protocolResponsePostPageInitParam);
+			this.statistics.recordLatency(StatisticsStage.EXIT, protocolId,
+					rpDomain, System.currentTimeMillis() - startTime);
 			return;
 		}
 
@@ -266,6 +297,8 @@ public class ProtocolExitServlet extends HttpServlet {
 		 * Clean-up the session here as it is no longer used after this point.
 		 */
 		httpSession.invalidate();
+		this.statistics.recordLatency(StatisticsStage.EXIT, protocolId,
+				rpDomain, System.currentTimeMillis() - startTime);
 	}
 
 	/*
@@ -308,46 +341,48 @@ public class ProtocolExitServlet extends HttpServlet {
 	 * 
 	 * @param userId
 	 *            user ID to encrypt ( or not )
-	 * @param rp
-	 *            rp, can be null
+	 * @param rpCryptoContext
+	 *            key material of the RP, can be null
 	 * @return (encrypted) user ID
 	 */
-	private String getUniqueId(String userId, RPEntity rp) {
+	private String getUniqueId(String userId, RPCryptoContext rpCryptoContext) {
 
-		String uniqueId = userId;
-
-		byte[] hmacSecret = getIdentifierSecret(rp);
-
-		if (null != hmacSecret) {
-
-			Mac mac;
-			try {
-				mac = CryptoUtil.getMac(hmacSecret);
-			} catch (InvalidKeyException e) {
-				throw new RuntimeException("Invalid key", e);
+		RPCryptoContext identifierContext = rpCryptoContext;
+		if (null == identifierContext
+				|| !identifierContext.hasIdentifierSecret()) {
+			// RP dont have one, go to IdP default
+			identifierContext = getDefaultCryptoContext();
+			if (null == identifierContext) {
+				return userId;
 			}
-			mac.update(uniqueId.getBytes());
-			byte[] resultHMac = mac.doFinal();
-			uniqueId = new String(Hex.encodeHex(resultHMac)).toUpperCase();
 		}
-		return uniqueId;
+		return identifierContext.getUniqueId(userId);
 	}
 
-	private byte[] getIdentifierSecret(RPEntity rp) {
+	private RPCryptoContext getDefaultCryptoContext() {
 
-		if (null == rp || null == rp.getIdentifierSecretKey()
-				|| rp.getIdentifierSecretKey().trim().isEmpty()) {
-			// RP dont have one, go to IdP default
-			return this.identityService.getHmacSecret();
+		byte[] hmacSecret = this.identityService.getHmacSecret();
+		if (null == hmacSecret) {
+			return null;
 		}
-
-		try {
-			return Hex.decodeHex(rp.getIdentifierSecretKey().toCharArray());
-		} catch (DecoderException e) {
-			throw new RuntimeException("HEX decoder error: " + e.getMessage(),
-					e);
+		RPCryptoContext cryptoContext = this.defaultCryptoContext;
+		if (null == cryptoContext
+				|| !cryptoContext.hasIdentifierSecret(hmacSecret)) {
+			cryptoContext = new RPCryptoContext(hmacSecret);
+			this.defaultCryptoContext = cryptoContext;
 		}
+		return cryptoContext;
+	}
 
+	private RPCryptoContext getCryptoContext(RPEntity rp)
+			throws DecoderException, KeyLoadException {
+
+		RPRegistryEntry rpEntry = this.rpRegistry.find(rp.getDomain());
+		if (null != rpEntry && rpEntry.getRp().getId().equals(rp.getId())) {
+			return rpEntry.getCryptoContext();
+		}
+		// RP got removed or moved since the authentication started
+		return new RPCryptoContext(rp);
 	}
 
 	/**